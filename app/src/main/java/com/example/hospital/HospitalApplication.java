@@ -0,0 +1,162 @@
+package com.example.hospital;
+
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.os.StrictMode;
+
+import com.example.hospital.data.repository.AgendaRepository;
+import com.example.hospital.data.repository.CitaRepository;
+import com.example.hospital.data.repository.MedicoRepository;
+import com.example.hospital.data.repository.PacienteRepository;
+import com.example.hospital.data.repository.ReporteRepository;
+import com.example.hospital.data.repository.TratamientoPacienteRepository;
+import com.example.hospital.data.repository.TratamientoRepository;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Aplicación del hospital. Mantiene una única instancia de cada repositorio para todo el
+ * proceso: cada archivo se carga una sola vez y todos los ViewModels y actividades
+ * comparten el mismo caché.
+ */
+public class HospitalApplication extends Application {
+    // Hilos para el trabajo de datos en segundo plano; el resto de las tareas espera en la cola
+    private static final int HILOS_SEGUNDO_PLANO = 2;
+
+    // Volátiles para que escribirPendientes() los lea desde el hilo principal sin tomar el lock
+    // de la aplicación, que un getter puede tener tomado mientras carga un archivo
+    private volatile PacienteRepository pacienteRepository;
+    private volatile MedicoRepository medicoRepository;
+    private volatile CitaRepository citaRepository;
+    private volatile TratamientoRepository tratamientoRepository;
+    private volatile TratamientoPacienteRepository tratamientoPacienteRepository;
+    private AgendaRepository agendaRepository;
+    private ReporteRepository reporteRepository;
+    private ExecutorService executor;
+    // El executor tiene su propio lock: un getter de repositorio puede tener tomado el de la
+    // aplicación mientras carga archivos, y el hilo principal no debe esperarlo
+    private final Object executorLock = new Object();
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        // En compilaciones de depuración se registra cualquier acceso a disco desde el hilo principal
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyLog()
+                    .build());
+        }
+    }
+
+    /**
+     * Al pasar a segundo plano se escriben ya los cambios pendientes de los repositorios, sin
+     * esperar la ventana de escritura: después el proceso puede morir en cualquier momento.
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            escribirPendientes();
+        }
+    }
+
+    /**
+     * Escribe sin bloquear los cambios pendientes de los repositorios ya creados
+     */
+    public void escribirPendientes() {
+        PacienteRepository pacientes = pacienteRepository;
+        MedicoRepository medicos = medicoRepository;
+        CitaRepository citas = citaRepository;
+        TratamientoRepository tratamientos = tratamientoRepository;
+        TratamientoPacienteRepository asignaciones = tratamientoPacienteRepository;
+        if (pacientes != null) pacientes.flush(null);
+        if (medicos != null) medicos.flush(null);
+        if (citas != null) citas.flush(null);
+        if (tratamientos != null) tratamientos.flush(null);
+        if (asignaciones != null) asignaciones.flush(null);
+    }
+
+    /**
+     * Obtiene la aplicación desde cualquier contexto (actividad, Application del ViewModel, etc.)
+     */
+    public static HospitalApplication from(Context context) {
+        return (HospitalApplication) context.getApplicationContext();
+    }
+
+    // Los repositorios se crean al primer uso para no cargar archivos que la pantalla actual no necesita
+
+    public synchronized PacienteRepository getPacienteRepository() {
+        if (pacienteRepository == null) {
+            pacienteRepository = new PacienteRepository(this, getTratamientoRepository());
+        }
+        return pacienteRepository;
+    }
+
+    public synchronized MedicoRepository getMedicoRepository() {
+        if (medicoRepository == null) {
+            medicoRepository = new MedicoRepository(this);
+        }
+        return medicoRepository;
+    }
+
+    public synchronized CitaRepository getCitaRepository() {
+        if (citaRepository == null) {
+            citaRepository = new CitaRepository(this, getMedicoRepository());
+        }
+        return citaRepository;
+    }
+
+    public synchronized TratamientoRepository getTratamientoRepository() {
+        if (tratamientoRepository == null) {
+            tratamientoRepository = new TratamientoRepository(this);
+        }
+        return tratamientoRepository;
+    }
+
+    public synchronized TratamientoPacienteRepository getTratamientoPacienteRepository() {
+        if (tratamientoPacienteRepository == null) {
+            tratamientoPacienteRepository = new TratamientoPacienteRepository(this,
+                    getPacienteRepository(), getTratamientoRepository());
+        }
+        return tratamientoPacienteRepository;
+    }
+
+    public synchronized AgendaRepository getAgendaRepository() {
+        if (agendaRepository == null) {
+            agendaRepository = new AgendaRepository(getMedicoRepository(), getCitaRepository());
+        }
+        return agendaRepository;
+    }
+
+    public synchronized ReporteRepository getReporteRepository() {
+        if (reporteRepository == null) {
+            reporteRepository = new ReporteRepository(getCitaRepository(), getMedicoRepository(),
+                    getTratamientoRepository(), getTratamientoPacienteRepository());
+        }
+        return reporteRepository;
+    }
+
+    /**
+     * Executor compartido y acotado para las lecturas y escrituras de los repositorios
+     */
+    public ExecutorService getExecutor() {
+        synchronized (executorLock) {
+            if (executor == null) {
+                AtomicInteger contador = new AtomicInteger();
+                executor = Executors.newFixedThreadPool(HILOS_SEGUNDO_PLANO, tarea -> {
+                    Thread hilo = new Thread(tarea, "hospital-datos-" + contador.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                });
+            }
+            return executor;
+        }
+    }
+}
@@ -13,7 +13,7 @@ public class Cirugia extends Tratamiento {
     }
 
     @Override
-    public double calcularCosto() {
+    protected double calcularCostoSegunTarifa() {
         double costoBase = getCostoBase();
         double recargo = 1.25 * getPrecio(); // Recargo del 25% para cirugías
         return costoBase + recargo;
@@ -0,0 +1,65 @@
+package com.example.hospital.data.models;
+
+/**
+ * Resumen general del sistema que se muestra en la pantalla de reportes
+ */
+public class EstadisticasGenerales {
+    private final int totalCitas;
+    private final int citasAtendidas;
+    private final int citasProgramadas;
+    private final int citasCanceladas;
+    private final int totalTratamientosAsignados;
+    private final double ingresosTotales;
+    private final int totalMedicos;
+    private final int totalPacientes;
+
+    public EstadisticasGenerales(int totalCitas, int citasAtendidas, int citasProgramadas, int citasCanceladas,
+                                 int totalTratamientosAsignados, double ingresosTotales,
+                                 int totalMedicos, int totalPacientes) {
+        this.totalCitas = totalCitas;
+        this.citasAtendidas = citasAtendidas;
+        this.citasProgramadas = citasProgramadas;
+        this.citasCanceladas = citasCanceladas;
+        this.totalTratamientosAsignados = totalTratamientosAsignados;
+        this.ingresosTotales = ingresosTotales;
+        this.totalMedicos = totalMedicos;
+        this.totalPacientes = totalPacientes;
+    }
+
+    public static EstadisticasGenerales vacias() {
+        return new EstadisticasGenerales(0, 0, 0, 0, 0, 0.0, 0, 0);
+    }
+
+    // Getters
+    public int getTotalCitas() {
+        return totalCitas;
+    }
+
+    public int getCitasAtendidas() {
+        return citasAtendidas;
+    }
+
+    public int getCitasProgramadas() {
+        return citasProgramadas;
+    }
+
+    public int getCitasCanceladas() {
+        return citasCanceladas;
+    }
+
+    public int getTotalTratamientosAsignados() {
+        return totalTratamientosAsignados;
+    }
+
+    public double getIngresosTotales() {
+        return ingresosTotales;
+    }
+
+    public int getTotalMedicos() {
+        return totalMedicos;
+    }
+
+    public int getTotalPacientes() {
+        return totalPacientes;
+    }
+}
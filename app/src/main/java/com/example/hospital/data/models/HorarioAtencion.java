@@ -1,48 +1,60 @@
 package com.example.hospital.data.models;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.time.DayOfWeek;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class HorarioAtencion implements Serializable {
     private static final long serialVersionUID = 1L;
-    
+
+    // Se mantiene el esquema serializado original (horas ocupadas como Set<LocalTime> por día);
+    // writeObject/readObject lo convierten desde y hacia los BitSet de ocupación
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("horaInicio", LocalTime.class),
+            new ObjectStreamField("horaFin", LocalTime.class),
+            new ObjectStreamField("dias", EnumSet.class),
+            new ObjectStreamField("duracionCita", int.class),
+            new ObjectStreamField("horasOcupadasPorDia", Map.class)
+    };
+
     private LocalTime horaInicio;
     private LocalTime horaFin;
     private EnumSet<DayOfWeek> dias;
     private int duracionCita;
-    private Map<DayOfWeek, Set<LocalTime>> horasOcupadasPorDia;
-    
+    // Un bit por turno del día: el turno i empieza en horaInicio + i * duracionCita
+    private transient EnumMap<DayOfWeek, BitSet> ocupacionPorDia;
+
     public HorarioAtencion(LocalTime horaInicio, LocalTime horaFin, EnumSet<DayOfWeek> dias) {
+        this(horaInicio, horaFin, dias, 60);
+    }
+
+    public HorarioAtencion(LocalTime horaInicio, LocalTime horaFin, EnumSet<DayOfWeek> dias, int duracionCita) {
         this.horaInicio = horaInicio;
         this.horaFin = horaFin;
         this.dias = dias;
-        this.duracionCita = 60;
-        this.horasOcupadasPorDia = new HashMap<>();
-        for (DayOfWeek dia : dias) {
-            horasOcupadasPorDia.put(dia, new HashSet<>());
-        }
+        this.duracionCita = duracionCita;
+        inicializarOcupacion();
     }
 
     public boolean isDisponible(LocalTime hora, DayOfWeek dia) {
-        if (!dias.contains(dia)) return false;
-        if (hora.isBefore(horaInicio) || hora.plusMinutes(duracionCita).isAfter(horaFin)) return false;
-
-        Set<LocalTime> ocupadas = horasOcupadasPorDia.get(dia);
-        return !ocupadas.contains(hora);
+        int turno = getTurno(dia, hora);
+        return turno >= 0 && !turnosDe(dia).get(turno);
     }
 
     public boolean registrarCita(DayOfWeek dia, LocalTime hora) {
-        if (!dias.contains(dia)) return false;
-        if (hora.isBefore(horaInicio) || hora.plusMinutes(duracionCita).isAfter(horaFin)) return false;
+        int turno = getTurno(dia, hora);
+        if (turno < 0) return false;
 
-        Set<LocalTime> ocupadas = horasOcupadasPorDia.get(dia);
-        if (ocupadas.contains(hora)) return false;
+        BitSet ocupados = turnosDe(dia);
+        if (ocupados.get(turno)) return false;
 
-        ocupadas.add(hora);
+        ocupados.set(turno);
         return true;
     }
 
@@ -54,10 +66,84 @@ public class HorarioAtencion implements Serializable {
     }
 
     public boolean cancelarCita(DayOfWeek dia, LocalTime hora) {
-        if (!dias.contains(dia)) return false;
+        int turno = getTurno(dia, hora);
+        if (turno < 0) return false;
+
+        BitSet ocupados = turnosDe(dia);
+        boolean estabaOcupado = ocupados.get(turno);
+        ocupados.clear(turno);
+        return estabaOcupado;
+    }
+
+    /**
+     * Cantidad de turnos que entran en la jornada
+     */
+    public int getCantidadTurnos() {
+        if (duracionCita <= 0 || horaInicio == null || horaFin == null || horaFin.isBefore(horaInicio)) {
+            return 0;
+        }
+        int minutos = (horaFin.toSecondOfDay() - horaInicio.toSecondOfDay()) / 60;
+        return minutos / duracionCita;
+    }
+
+    /**
+     * Turnos libres del día, calculados con el conteo de bits ocupados
+     */
+    public int contarTurnosLibres(DayOfWeek dia) {
+        if (!dias.contains(dia)) return 0;
+        return getCantidadTurnos() - turnosDe(dia).cardinality();
+    }
+
+    public LocalTime getPrimerTurnoLibre(DayOfWeek dia) {
+        return getPrimerTurnoLibre(dia, horaInicio);
+    }
+
+    /**
+     * Primer turno libre del día a partir de {@code desde} (inclusive), o null si no queda ninguno
+     */
+    public LocalTime getPrimerTurnoLibre(DayOfWeek dia, LocalTime desde) {
+        if (!dias.contains(dia) || desde == null) return null;
+
+        int turno = turnosDe(dia).nextClearBit(getTurnoDesde(desde));
+        return turno < getCantidadTurnos() ? getHoraDeTurno(turno) : null;
+    }
+
+    /**
+     * Primer turno que empieza en {@code desde} o después; un turno que ya empezó no cuenta
+     */
+    public int getTurnoDesde(LocalTime desde) {
+        if (!desde.isAfter(horaInicio)) return 0;
+        int minutos = (desde.toSecondOfDay() - horaInicio.toSecondOfDay()) / 60;
+        return (minutos + duracionCita - 1) / duracionCita;
+    }
+
+    public LocalTime getHoraDeTurno(int turno) {
+        return horaInicio.plusMinutes((long) turno * duracionCita);
+    }
+
+    /**
+     * Turno que corresponde a la hora (una hora dentro de un turno cuenta como ese turno),
+     * o -1 si el día no es de atención o el turno no entra en la jornada
+     */
+    private int getTurno(DayOfWeek dia, LocalTime hora) {
+        if (hora == null || !dias.contains(dia)) return -1;
+        if (hora.isBefore(horaInicio) || hora.plusMinutes(duracionCita).isAfter(horaFin)) return -1;
 
-        Set<LocalTime> ocupadas = horasOcupadasPorDia.get(dia);
-        return ocupadas.remove(hora);
+        int minutos = (hora.toSecondOfDay() - horaInicio.toSecondOfDay()) / 60;
+        int turno = minutos / duracionCita;
+        return turno < getCantidadTurnos() ? turno : -1;
+    }
+
+    private BitSet turnosDe(DayOfWeek dia) {
+        // getDias() expone el EnumSet, así que puede aparecer un día sin BitSet todavía
+        return ocupacionPorDia.computeIfAbsent(dia, d -> new BitSet(getCantidadTurnos()));
+    }
+
+    private void inicializarOcupacion() {
+        ocupacionPorDia = new EnumMap<>(DayOfWeek.class);
+        for (DayOfWeek dia : dias) {
+            ocupacionPorDia.put(dia, new BitSet(getCantidadTurnos()));
+        }
     }
 
     // Getters y setters
@@ -65,7 +151,105 @@ public class HorarioAtencion implements Serializable {
     public LocalTime getHoraFin() { return horaFin; }
     public EnumSet<DayOfWeek> getDias() { return dias; }
     public int getDuracionCita() { return duracionCita; }
-    public Map<DayOfWeek, Set<LocalTime>> getHorasOcupadasPorDia() { return horasOcupadasPorDia; }
+
+    /**
+     * Copia de los turnos ocupados del día como bits
+     */
+    public BitSet getTurnosOcupados(DayOfWeek dia) { return (BitSet) turnosDe(dia).clone(); }
+
+    /**
+     * Marca como ocupados los turnos del día indicados en {@code turnos}
+     */
+    public void marcarTurnosOcupados(DayOfWeek dia, BitSet turnos) {
+        turnosDe(dia).or(turnos);
+    }
+
+    /**
+     * Inicio del turno que contiene la hora, o null si el día no es de atención o la hora queda
+     * fuera de la jornada. Es la división en turnos que usan la agenda y la reserva de citas.
+     */
+    public LocalTime getInicioDeTurno(DayOfWeek dia, LocalTime hora) {
+        int turno = getTurno(dia, hora);
+        return turno >= 0 ? getHoraDeTurno(turno) : null;
+    }
+
+    /**
+     * Copia independiente del horario, incluida la ocupación de cada día
+     */
+    public HorarioAtencion copiar() {
+        HorarioAtencion copia = new HorarioAtencion(horaInicio, horaFin, EnumSet.copyOf(dias), duracionCita);
+        for (Map.Entry<DayOfWeek, BitSet> entry : ocupacionPorDia.entrySet()) {
+            copia.ocupacionPorDia.put(entry.getKey(), (BitSet) entry.getValue().clone());
+        }
+        return copia;
+    }
+
+    /**
+     * Copia de los turnos ocupados del día marcando además las horas indicadas
+     * (por ejemplo, las citas registradas en CitaRepository)
+     */
+    public BitSet getTurnosOcupados(DayOfWeek dia, Collection<LocalTime> horasOcupadas) {
+        BitSet ocupados = (BitSet) turnosDe(dia).clone();
+        if (horasOcupadas != null) {
+            for (LocalTime hora : horasOcupadas) {
+                int turno = getTurno(dia, hora);
+                if (turno >= 0) {
+                    ocupados.set(turno);
+                }
+            }
+        }
+        return ocupados;
+    }
+
+    /**
+     * Horas ocupadas por día. Se arma a partir de los bits; modificar el mapa devuelto
+     * no cambia el horario (usar registrarCita y cancelarCita).
+     */
+    public Map<DayOfWeek, Set<LocalTime>> getHorasOcupadasPorDia() {
+        Map<DayOfWeek, Set<LocalTime>> horas = new HashMap<>();
+        for (Map.Entry<DayOfWeek, BitSet> entry : ocupacionPorDia.entrySet()) {
+            Set<LocalTime> ocupadas = new HashSet<>();
+            BitSet ocupados = entry.getValue();
+            for (int turno = ocupados.nextSetBit(0); turno >= 0; turno = ocupados.nextSetBit(turno + 1)) {
+                ocupadas.add(getHoraDeTurno(turno));
+            }
+            horas.put(entry.getKey(), ocupadas);
+        }
+        return horas;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("horaInicio", horaInicio);
+        fields.put("horaFin", horaFin);
+        fields.put("dias", dias);
+        fields.put("duracionCita", duracionCita);
+        fields.put("horasOcupadasPorDia", getHorasOcupadasPorDia());
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        horaInicio = (LocalTime) fields.get("horaInicio", null);
+        horaFin = (LocalTime) fields.get("horaFin", null);
+        dias = (EnumSet<DayOfWeek>) fields.get("dias", null);
+        duracionCita = fields.get("duracionCita", 60);
+        if (dias == null) {
+            dias = EnumSet.noneOf(DayOfWeek.class);
+        }
+        inicializarOcupacion();
+
+        Map<DayOfWeek, Set<LocalTime>> horasOcupadas =
+                (Map<DayOfWeek, Set<LocalTime>>) fields.get("horasOcupadasPorDia", null);
+        if (horasOcupadas != null) {
+            for (Map.Entry<DayOfWeek, Set<LocalTime>> entry : horasOcupadas.entrySet()) {
+                for (LocalTime hora : entry.getValue()) {
+                    registrarCita(entry.getKey(), hora);
+                }
+            }
+        }
+    }
 
     @Override
     public String toString() {
@@ -73,16 +257,15 @@ public class HorarioAtencion implements Serializable {
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm");
 
         sb.append("📅 Horario del médico:\n");
+        int turnos = getCantidadTurnos();
         for (DayOfWeek dia : dias) {
             sb.append(dia).append(":\n");
-            LocalTime actual = horaInicio;
-            while (!actual.isAfter(horaFin.minusMinutes(duracionCita))) {
-                boolean ocupada = horasOcupadasPorDia.get(dia).contains(actual);
-                sb.append("  ").append(actual.format(formatter))
-                  .append(" - ").append(ocupada ? "❌ No disponible" : "Disponible").append("\n");
-                actual = actual.plusMinutes(duracionCita);
+            BitSet ocupados = turnosDe(dia);
+            for (int turno = 0; turno < turnos; turno++) {
+                sb.append("  ").append(getHoraDeTurno(turno).format(formatter))
+                  .append(" - ").append(ocupados.get(turno) ? "❌ No disponible" : "Disponible").append("\n");
             }
         }
         return sb.toString();
     }
-}
\ No newline at end of file
+}
@@ -13,7 +13,7 @@ public class Medicacion extends Tratamiento {
     }
     
     @Override
-    public double calcularCosto() {
+    protected double calcularCostoSegunTarifa() {
         double suma = getCostoBase();
         if(getDuracion() > 5) {
             suma += getPrecio() * getDuracion() * 0.9;
@@ -82,15 +82,16 @@ public class Paciente extends Persona implements Serializable {
     }
 
     public double getCostoTotalTratamientos() {
-        double total = 0;
+        // Se suma en centavos para que el total sea exacto
+        long total = 0;
         if (historialTratamientos != null) {
             for (TratamientoPaciente tp : historialTratamientos) {
                 if ("ACTIVO".equals(tp.getEstado())) {
-                    total += tp.getCostoTotal();
+                    total += tp.getCostoTotalCentavos();
                 }
             }
         }
-        return total;
+        return total / 100.0;
     }
 
     public int getCantidadTratamientosActivos() {
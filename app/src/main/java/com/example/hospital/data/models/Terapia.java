@@ -13,7 +13,7 @@ public class Terapia extends Tratamiento {
     }
 
     @Override
-    public double calcularCosto() {
+    protected double calcularCostoSegunTarifa() {
         double costoBase = getCostoBase();
         double recargo = 0.15 * getPrecio(); // Recargo del 15% para terapias
         double precioTotal = getPrecio() * getDuracion(); // Precio multiplicado por número de sesiones
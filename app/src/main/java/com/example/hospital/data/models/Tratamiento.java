@@ -10,13 +10,22 @@ public abstract class Tratamiento implements Serializable {
     private int duracion;
     private double precio;
     private int id;
+    // Costo total en centavos; depende solo de nombre, duración y precio, que no cambian
+    // después de construir el tratamiento, así que se calcula una sola vez. Se calcula en el
+    // primer uso y no en el constructor, donde la subclase todavía no terminó de inicializarse
+    private transient long costoCentavos;
+    private transient volatile boolean costoCalculado;
 
     public Tratamiento(String nombre, int duracion, double precio) {
         this.nombre = nombre;
         this.duracion = duracion;
         this.precio = precio;
         this.id = 0; // Se asignará después
-    }   
+    }
+
+    public static long aCentavos(double monto) {
+        return Math.round(monto * 100);
+    }
 
     public static double getCostoBase() {
         return COSTO_BASE;
@@ -53,6 +62,25 @@ public abstract class Tratamiento implements Serializable {
                "Precio por hora: $" + precio;
     }
 
-    public abstract double calcularCosto();
+    /**
+     * Costo total del tratamiento, redondeado a centavos
+     */
+    public final double calcularCosto() {
+        return getCostoCentavos() / 100.0;
+    }
+
+    public final long getCostoCentavos() {
+        if (!costoCalculado) {
+            // Dos hilos pueden calcularlo a la vez; ambos obtienen el mismo valor
+            costoCentavos = aCentavos(calcularCostoSegunTarifa());
+            costoCalculado = true;
+        }
+        return costoCentavos;
+    }
+
+    /**
+     * Fórmula de costo de cada tipo de tratamiento; solo se evalúa la primera vez que se pide el costo
+     */
+    protected abstract double calcularCostoSegunTarifa();
     public abstract String getTipo();
 }
\ No newline at end of file
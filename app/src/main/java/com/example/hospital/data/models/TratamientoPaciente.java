@@ -85,6 +85,10 @@ public class TratamientoPaciente implements Serializable {
         return tratamiento.calcularCosto();
     }
 
+    public long getCostoTotalCentavos() {
+        return tratamiento.getCostoCentavos();
+    }
+
     public String getFechaFormateada() {
         if (fechaAsignacion != null) {
             return fechaAsignacion.getDayOfMonth() + "/" + 
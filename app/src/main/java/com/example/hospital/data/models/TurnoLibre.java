@@ -0,0 +1,46 @@
+package com.example.hospital.data.models;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+
+public class TurnoLibre {
+    private final String correoMedico;
+    private final String nombreMedico;
+    private final String especialidad;
+    private final DayOfWeek dia;
+    private final LocalTime hora;
+
+    public TurnoLibre(String correoMedico, String nombreMedico, String especialidad, DayOfWeek dia, LocalTime hora) {
+        this.correoMedico = correoMedico;
+        this.nombreMedico = nombreMedico;
+        this.especialidad = especialidad;
+        this.dia = dia;
+        this.hora = hora;
+    }
+
+    @Override
+    public String toString() {
+        return dia + " " + hora + " - Dr. " + nombreMedico + " (" + especialidad + ")";
+    }
+
+    // Getters
+    public String getCorreoMedico() {
+        return correoMedico;
+    }
+
+    public String getNombreMedico() {
+        return nombreMedico;
+    }
+
+    public String getEspecialidad() {
+        return especialidad;
+    }
+
+    public DayOfWeek getDia() {
+        return dia;
+    }
+
+    public LocalTime getHora() {
+        return hora;
+    }
+}
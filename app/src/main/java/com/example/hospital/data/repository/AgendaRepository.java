@@ -0,0 +1,132 @@
+package com.example.hospital.data.repository;
+
+import com.example.hospital.data.models.HorarioAtencion;
+import com.example.hospital.data.models.Medico;
+import com.example.hospital.data.models.TurnoLibre;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Búsqueda de turnos libres combinando el horario de atención de cada médico
+ * con las citas ya registradas.
+ */
+public class AgendaRepository {
+    private static final int MINUTOS_POR_DIA = 24 * 60;
+    private static final int DIAS_SEMANA = 7;
+
+    private final MedicoRepository medicoRepository;
+    private final CitaRepository citaRepository;
+
+    public AgendaRepository(MedicoRepository medicoRepository, CitaRepository citaRepository) {
+        this.medicoRepository = medicoRepository;
+        this.citaRepository = citaRepository;
+    }
+
+    /**
+     * Devuelve los {@code cantidad} turnos libres más próximos entre todos los médicos activos
+     * de la especialidad, contando desde {@code desdeDia} a las {@code desdeHora} y dando
+     * la vuelta a la semana. Cada médico se recorre en paralelo sobre una copia de sus BitSet de
+     * ocupación y los resultados, ya ordenados por médico, se combinan con un heap.
+     */
+    public List<TurnoLibre> buscarTurnosLibres(String especialidad, DayOfWeek desdeDia, LocalTime desdeHora,
+                                               int cantidad) {
+        List<TurnoLibre> resultado = new ArrayList<>();
+        if (cantidad <= 0) {
+            return resultado;
+        }
+
+        // Los horarios se copian con el lock de MedicoRepository: la etapa paralela no toca
+        // los BitSet que se modifican al registrar o editar médicos
+        List<Medico> medicos = new ArrayList<>();
+        List<HorarioAtencion> horarios = new ArrayList<>();
+        for (Medico medico : medicoRepository.getMedicosPorEspecialidad(especialidad)) {
+            HorarioAtencion horario = medico.isActivo() ? medicoRepository.getCopiaHorario(medico) : null;
+            if (horario != null) {
+                medicos.add(medico);
+                horarios.add(horario);
+            }
+        }
+
+        // Las citas se leen antes de la etapa paralela para no competir por el lock del repositorio
+        List<Map<DayOfWeek, List<LocalTime>>> ocupadas = new ArrayList<>(medicos.size());
+        for (Medico medico : medicos) {
+            ocupadas.add(citaRepository.getHorasOcupadasPorMedico(medico.getCorreo()));
+        }
+
+        List<List<TurnoLibre>> porMedico = IntStream.range(0, medicos.size())
+                .parallel()
+                .mapToObj(i -> turnosLibresDe(medicos.get(i), horarios.get(i), ocupadas.get(i),
+                        desdeDia, desdeHora, cantidad))
+                .collect(Collectors.toList());
+
+        // Combinación k-way: el heap guarda la posición actual dentro de la lista de cada médico
+        PriorityQueue<int[]> heap = new PriorityQueue<>(Math.max(1, porMedico.size()),
+                (a, b) -> Integer.compare(
+                        orden(porMedico.get(a[0]).get(a[1]), desdeDia, desdeHora),
+                        orden(porMedico.get(b[0]).get(b[1]), desdeDia, desdeHora)));
+        for (int i = 0; i < porMedico.size(); i++) {
+            if (!porMedico.get(i).isEmpty()) {
+                heap.add(new int[]{i, 0});
+            }
+        }
+
+        while (!heap.isEmpty() && resultado.size() < cantidad) {
+            int[] actual = heap.poll();
+            List<TurnoLibre> lista = porMedico.get(actual[0]);
+            resultado.add(lista.get(actual[1]));
+            if (actual[1] + 1 < lista.size()) {
+                heap.add(new int[]{actual[0], actual[1] + 1});
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Hasta {@code cantidad} turnos libres del médico en orden cronológico desde el día y hora dados
+     */
+    private List<TurnoLibre> turnosLibresDe(Medico medico, HorarioAtencion horario,
+                                            Map<DayOfWeek, List<LocalTime>> ocupadas,
+                                            DayOfWeek desdeDia, LocalTime desdeHora, int cantidad) {
+        List<TurnoLibre> turnos = new ArrayList<>();
+        int total = horario.getCantidadTurnos();
+        String nombre = medico.getNombre() + " " + medico.getApellido();
+
+        // El día de inicio se recorre dos veces: desde la hora pedida y, al final de la
+        // semana, los turnos anteriores a esa hora
+        for (int offset = 0; offset <= DIAS_SEMANA && turnos.size() < cantidad; offset++) {
+            DayOfWeek dia = desdeDia.plus(offset);
+            if (!horario.getDias().contains(dia)) {
+                continue;
+            }
+
+            int desde = offset == 0 ? horario.getTurnoDesde(desdeHora) : 0;
+            int hasta = offset == DIAS_SEMANA ? Math.min(total, horario.getTurnoDesde(desdeHora)) : total;
+            BitSet ocupados = horario.getTurnosOcupados(dia, ocupadas.get(dia));
+
+            for (int turno = ocupados.nextClearBit(desde); turno < hasta && turnos.size() < cantidad;
+                 turno = ocupados.nextClearBit(turno + 1)) {
+                turnos.add(new TurnoLibre(medico.getCorreo(), nombre, medico.getEspecialidad(), dia,
+                        horario.getHoraDeTurno(turno)));
+            }
+        }
+        return turnos;
+    }
+
+    /**
+     * Minutos desde el punto de partida hasta el turno, dando la vuelta a la semana
+     */
+    private static int orden(TurnoLibre turno, DayOfWeek desdeDia, LocalTime desdeHora) {
+        int dias = (turno.getDia().getValue() - desdeDia.getValue() + DIAS_SEMANA) % DIAS_SEMANA;
+        int minutos = dias * MINUTOS_POR_DIA + turno.getHora().toSecondOfDay() / 60;
+        int inicio = desdeHora.toSecondOfDay() / 60;
+        return minutos < inicio ? minutos + DIAS_SEMANA * MINUTOS_POR_DIA : minutos;
+    }
+}
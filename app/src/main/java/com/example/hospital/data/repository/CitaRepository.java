@@ -1,79 +1,151 @@
 package com.example.hospital.data.repository;
 
 import android.content.Context;
+import android.util.Log;
 
 import com.example.hospital.data.models.Cita;
 import com.example.hospital.data.models.EstadoCita;
+import com.example.hospital.data.storage.BinaryCodecs;
 import com.example.hospital.data.storage.FileStorageManager;
+import com.example.hospital.data.storage.FileStorageManager.JournalOp;
+import com.example.hospital.data.storage.SecuenciaIds;
+import com.example.hospital.data.storage.WriteBehindQueue;
 
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
 
 public class CitaRepository {
+    private static final String TAG = "CitaRepository";
     private static final String CITAS_FILE = "citas.dat";
+
+    /**
+     * Resultado de reservar o reprogramar una cita
+     */
+    public enum ResultadoReserva {
+        RESERVADA,
+        OCUPADA,
+        NO_ENCONTRADA,
+        ERROR
+    }
+
     private final FileStorageManager storageManager;
+    // Define los turnos de cada médico con los que se detectan los horarios tomados
+    private final MedicoRepository medicoRepository;
+    private final SecuenciaIds secuencia;
+    // Los cambios se escriben en lotes en segundo plano
+    private final WriteBehindQueue<byte[]> escrituras;
     private List<Cita> citasCache;
 
-    public CitaRepository(Context context) {
+    // Índices secundarios; cada grupo se ordena por id para devolver las citas en el
+    // mismo orden en que se crearon
+    private final TreeMap<Integer, Cita> citasPorId;
+    private final Map<String, TreeMap<Integer, Cita>> citasPorMedico;
+    private final Map<String, TreeMap<Integer, Cita>> citasPorPaciente;
+    private final Map<DayOfWeek, TreeMap<Integer, Cita>> citasPorDia;
+    private final Map<EstadoCita, TreeMap<Integer, Cita>> citasPorEstado;
+    // Claves con las que se indexó cada cita; la UI modifica las instancias del cache
+    // antes de llamar a actualizarCita, así que no se pueden recalcular desde la cita
+    private final Map<Integer, ClavesCita> clavesIndexadas;
+    // Horas tomadas por médico y día ("medico|dia"), como (minuto del día << 32) | id de la cita.
+    // Se guarda la hora exacta y el turno se resuelve al consultar con el horario vigente del
+    // médico, así editar su horario no deja el índice desactualizado; las canceladas no ocupan
+    private final Map<String, TreeSet<Long>> horasOcupadas;
+    // Citas atendidas por médico (correo en minúsculas), para los reportes por especialidad
+    private final Map<String, Integer> atendidasPorMedico;
+
+    /**
+     * Lee el horario de los médicos para saber a qué turno corresponde cada cita; toma el lock
+     * de {@code medicoRepository} mientras tiene el propio, nunca al revés
+     */
+    public CitaRepository(Context context, MedicoRepository medicoRepository) {
         this.storageManager = new FileStorageManager(context);
+        this.medicoRepository = medicoRepository;
         this.citasCache = new ArrayList<>();
+        this.citasPorId = new TreeMap<>();
+        this.citasPorMedico = new HashMap<>();
+        this.citasPorPaciente = new HashMap<>();
+        this.citasPorDia = new EnumMap<>(DayOfWeek.class);
+        this.citasPorEstado = new EnumMap<>(EstadoCita.class);
+        this.clavesIndexadas = new HashMap<>();
+        this.horasOcupadas = new HashMap<>();
+        this.atendidasPorMedico = new HashMap<>();
+        this.escrituras = storageManager.createJournalQueue(CITAS_FILE, BinaryCodecs.CITA, this,
+                () -> citasCache);
         cargarCitas();
+        this.secuencia = new SecuenciaIds(context, "citas", this::mayorId);
+        renumerarIdsRepetidos();
+        for (Cita cita : citasCache) {
+            indexar(cita);
+        }
     }
 
-    public List<Cita> getAllCitas() {
+    public synchronized List<Cita> getAllCitas() {
         return new ArrayList<>(citasCache);
     }
 
-    public List<Cita> getCitasPorEstado(EstadoCita estado) {
-        List<Cita> resultado = new ArrayList<>();
-        for (Cita cita : citasCache) {
-            if (cita.getEstadoCita() == estado) {
-                resultado.add(cita);
+    /**
+     * Página de citas ordenadas por id: hasta {@code cantidad} citas con id mayor a {@code despuesDeId}.
+     * La primera página se pide con 0 y las siguientes con el id de la última cita recibida,
+     * así una cita creada o eliminada entre páginas no desplaza a las demás. Recorre las mismas
+     * citas que {@link #getAllCitas()} porque los ids repetidos se renumeran al cargar.
+     */
+    public synchronized List<Cita> getCitasDespuesDe(int despuesDeId, int cantidad) {
+        List<Cita> pagina = new ArrayList<>(Math.max(0, Math.min(cantidad, citasPorId.size())));
+        for (Cita cita : citasPorId.tailMap(despuesDeId, false).values()) {
+            if (pagina.size() >= cantidad) {
+                break;
             }
+            pagina.add(cita);
         }
-        return resultado;
+        return pagina;
     }
 
-    public List<Cita> getCitasPorPaciente(String correoPaciente) {
-        List<Cita> resultado = new ArrayList<>();
-        for (Cita cita : citasCache) {
-            if (cita.getPaciente().equalsIgnoreCase(correoPaciente)) {
-                resultado.add(cita);
-            }
-        }
-        return resultado;
+    public synchronized List<Cita> getCitasPorEstado(EstadoCita estado) {
+        return estado == null ? new ArrayList<>() : valores(citasPorEstado.get(estado));
     }
 
-    public List<Cita> getCitasPorMedico(String correoMedico) {
-        List<Cita> resultado = new ArrayList<>();
-        for (Cita cita : citasCache) {
-            if (cita.getMedico().equalsIgnoreCase(correoMedico)) {
-                resultado.add(cita);
-            }
-        }
-        return resultado;
+    public synchronized List<Cita> getCitasPorPaciente(String correoPaciente) {
+        return valores(citasPorPaciente.get(claveCorreo(correoPaciente)));
     }
 
-    public List<Cita> getCitasPorDia(String dia) {
-        List<Cita> resultado = new ArrayList<>();
-        for (Cita cita : citasCache) {
-            if (cita.getDia().name().equalsIgnoreCase(dia)) {
-                resultado.add(cita);
-            }
+    public synchronized List<Cita> getCitasPorMedico(String correoMedico) {
+        return valores(citasPorMedico.get(claveCorreo(correoMedico)));
+    }
+
+    public synchronized List<Cita> getCitasPorDia(String dia) {
+        try {
+            return valores(citasPorDia.get(DayOfWeek.valueOf(dia.toUpperCase(Locale.ROOT))));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return new ArrayList<>();
         }
-        return resultado;
     }
 
-    public Optional<Cita> getCitaPorId(int id) {
-        return citasCache.stream()
-                .filter(c -> c.getIdCita() == id)
-                .findFirst();
+    public synchronized Optional<Cita> getCitaPorId(int id) {
+        return Optional.ofNullable(citasPorId.get(id));
     }
 
-    public boolean guardarCita(Cita cita) {
-        // Asignar ID automático
-        int nuevoId = citasCache.size() + 1;
+    public synchronized boolean guardarCita(Cita cita) {
+        // Asignar ID automático; la secuencia nunca repite un id porque los índices se
+        // ordenan por id y un id repetido pisaría otra cita
+        int nuevoId;
+        try {
+            nuevoId = secuencia.siguiente();
+        } catch (IOException e) {
+            return false;
+        }
         Cita nuevaCita = new Cita(
                 nuevoId,
                 cita.getHora(),
@@ -84,67 +156,368 @@ public class CitaRepository {
         nuevaCita.setEstadoCita(cita.getEstadoCita());
 
         citasCache.add(nuevaCita);
-        return guardarCambios();
+        indexar(nuevaCita);
+        return guardarCambios(JournalOp.UPSERT, nuevaCita);
     }
 
-    public boolean actualizarCita(Cita cita) {
+    /**
+     * Verifica que el horario del médico esté libre y guarda la cita en la misma operación,
+     * de modo que dos reservas simultáneas no pueden tomar el mismo horario.
+     */
+    public synchronized ResultadoReserva reservarCita(Cita cita) {
+        if (cita.getEstadoCita() != EstadoCita.CANCELADA
+                && horarioOcupado(cita.getMedico(), cita.getDia(), cita.getHora(), 0)) {
+            return ResultadoReserva.OCUPADA;
+        }
+        return guardarCita(cita) ? ResultadoReserva.RESERVADA : ResultadoReserva.ERROR;
+    }
+
+    /**
+     * Cambia los datos de una cita existente sólo si el nuevo horario está libre
+     * (sin contar el que ya ocupa la propia cita).
+     */
+    public synchronized ResultadoReserva reprogramarCita(int id, LocalTime hora, DayOfWeek dia,
+                                                         String correoPaciente, String correoMedico,
+                                                         EstadoCita estado) {
+        Cita cita = citasPorId.get(id);
+        if (cita == null) {
+            return ResultadoReserva.NO_ENCONTRADA;
+        }
+        if (estado != EstadoCita.CANCELADA && horarioOcupado(correoMedico, dia, hora, id)) {
+            return ResultadoReserva.OCUPADA;
+        }
+
+        desindexar(id);
+        cita.setHora(hora);
+        cita.setDia(dia);
+        cita.setPaciente(correoPaciente);
+        cita.setMedico(correoMedico);
+        cita.setEstadoCita(estado);
+        indexar(cita);
+        return guardarCambios(JournalOp.UPSERT, cita) ? ResultadoReserva.RESERVADA : ResultadoReserva.ERROR;
+    }
+
+    /**
+     * Indica si el médico ya tiene una cita no cancelada en ese día y hora, ignorando
+     * la cita con id {@code excluirId}. Con la misma división en turnos que la agenda, dos
+     * citas dentro del mismo turno ocupan el mismo horario; si el médico no existe o la hora
+     * queda fuera de su jornada se compara la hora exacta.
+     */
+    public synchronized boolean horarioOcupado(String correoMedico, DayOfWeek dia, LocalTime hora, int excluirId) {
+        String medico = claveCorreo(correoMedico);
+        TreeSet<Long> horas = horasOcupadas.get(claveHorario(medico, dia));
+        if (horas == null || hora == null) {
+            return false;
+        }
+        int desde = minutoDelDia(hora);
+        int hasta = desde + 1;
+        LocalTime inicioTurno = medicoRepository.getInicioDeTurno(medico, dia, hora);
+        if (inicioTurno != null) {
+            desde = minutoDelDia(inicioTurno);
+            hasta = desde + Math.max(1, medicoRepository.getDuracionCita(medico));
+        }
+        for (long ocupacion : horas.subSet((long) desde << 32, true, (long) hasta << 32, false)) {
+            if ((int) ocupacion != excluirId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Horas tomadas por citas no canceladas del médico, agrupadas por día
+     */
+    public synchronized Map<DayOfWeek, List<LocalTime>> getHorasOcupadasPorMedico(String correoMedico) {
+        Map<DayOfWeek, List<LocalTime>> resultado = new EnumMap<>(DayOfWeek.class);
+        TreeMap<Integer, Cita> grupo = citasPorMedico.get(claveCorreo(correoMedico));
+        if (grupo == null) {
+            return resultado;
+        }
+        for (Cita cita : grupo.values()) {
+            if (cita.getEstadoCita() != EstadoCita.CANCELADA && cita.getDia() != null && cita.getHora() != null) {
+                List<LocalTime> horas = resultado.get(cita.getDia());
+                if (horas == null) {
+                    horas = new ArrayList<>();
+                    resultado.put(cita.getDia(), horas);
+                }
+                horas.add(cita.getHora());
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Cantidad de citas en cada estado, tomada del tamaño de cada grupo del índice
+     */
+    public synchronized Map<EstadoCita, Integer> getConteoPorEstado() {
+        Map<EstadoCita, Integer> conteo = new EnumMap<>(EstadoCita.class);
+        for (EstadoCita estado : EstadoCita.values()) {
+            TreeMap<Integer, Cita> grupo = citasPorEstado.get(estado);
+            conteo.put(estado, grupo == null ? 0 : grupo.size());
+        }
+        return conteo;
+    }
+
+    public synchronized int getTotalCitas() {
+        return citasCache.size();
+    }
+
+    /**
+     * Cantidad de citas atendidas por cada médico, indexada por correo en minúsculas
+     */
+    public synchronized Map<String, Integer> getAtendidasPorMedico() {
+        return new HashMap<>(atendidasPorMedico);
+    }
+
+    public synchronized boolean actualizarCita(Cita cita) {
         Optional<Cita> existente = getCitaPorId(cita.getIdCita());
         if (!existente.isPresent()) {
             return false;
         }
 
-        int index = citasCache.indexOf(existente.get());
-        if (index != -1) {
+        if (existente.get() != cita) {
+            int index = citasCache.indexOf(existente.get());
+            if (index == -1) {
+                return false;
+            }
             citasCache.set(index, cita);
-            return guardarCambios();
         }
-        return false;
+        desindexar(cita.getIdCita());
+        indexar(cita);
+        return guardarCambios(JournalOp.UPSERT, cita);
     }
 
-    public boolean cancelarCita(int id) {
-        Optional<Cita> cita = getCitaPorId(id);
-        if (cita.isPresent()) {
-            Cita citaExistente = cita.get();
-            citaExistente.setEstadoCita(EstadoCita.CANCELADA);
-            return guardarCambios();
-        }
-        return false;
+    public synchronized boolean cancelarCita(int id) {
+        return cambiarEstado(id, EstadoCita.CANCELADA);
     }
 
-    public boolean marcarComoAtendida(int id) {
-        Optional<Cita> cita = getCitaPorId(id);
-        if (cita.isPresent()) {
-            Cita citaExistente = cita.get();
-            citaExistente.setEstadoCita(EstadoCita.ATENDIDA);
-            return guardarCambios();
-        }
-        return false;
+    public synchronized boolean marcarComoAtendida(int id) {
+        return cambiarEstado(id, EstadoCita.ATENDIDA);
     }
 
-    public boolean eliminarCita(int id) {
+    public synchronized boolean eliminarCita(int id) {
         Optional<Cita> cita = getCitaPorId(id);
         if (cita.isPresent()) {
             citasCache.remove(cita.get());
-            return guardarCambios();
+            desindexar(id);
+            return guardarCambios(JournalOp.DELETE, cita.get());
         }
         return false;
     }
 
-    public boolean citaExiste(int id) {
+    public synchronized boolean citaExiste(int id) {
         return getCitaPorId(id).isPresent();
     }
 
+    private boolean cambiarEstado(int id, EstadoCita estado) {
+        Optional<Cita> cita = getCitaPorId(id);
+        if (cita.isPresent()) {
+            Cita citaExistente = cita.get();
+            desindexar(id);
+            citaExistente.setEstadoCita(estado);
+            indexar(citaExistente);
+            return guardarCambios(JournalOp.UPSERT, citaExistente);
+        }
+        return false;
+    }
+
     private void cargarCitas() {
         try {
-            citasCache = storageManager.loadList(CITAS_FILE);
+            citasCache = storageManager.loadJournaled(CITAS_FILE, Cita::getIdCita, BinaryCodecs.CITA);
         } catch (Exception e) {
+            // Se sigue sin las citas guardadas; el archivo no se compacta hasta repararlo
+            Log.e(TAG, "No se pudieron cargar las citas", e);
             citasCache = new ArrayList<>();
         }
     }
 
-    private boolean guardarCambios() {
+    /**
+     * La asignación anterior (tamaño + 1) pudo guardar varias citas con el mismo id. Cada
+     * repetida recibe un id de la secuencia, que no choca con ningún otro, y el archivo se
+     * reescribe con los ids definitivos: un registro en el journal no alcanza, porque el
+     * snapshot seguiría teniendo la copia con el id anterior.
+     */
+    private void renumerarIdsRepetidos() {
+        List<Cita> originales = new ArrayList<>(citasCache);
+        Set<Integer> vistos = new HashSet<>();
+        boolean renumeradas = false;
+        for (int i = 0; i < citasCache.size(); i++) {
+            Cita cita = citasCache.get(i);
+            if (vistos.add(cita.getIdCita())) {
+                continue;
+            }
+            int nuevoId;
+            try {
+                nuevoId = secuencia.siguiente();
+            } catch (IOException e) {
+                Log.e(TAG, "No se pudo asignar un id nuevo a la cita repetida " + cita.getIdCita(), e);
+                citasCache = originales;
+                return;
+            }
+            Cita renumerada = new Cita(nuevoId, cita.getHora(), cita.getDia(), cita.getPaciente(), cita.getMedico());
+            renumerada.setEstadoCita(cita.getEstadoCita());
+            citasCache.set(i, renumerada);
+            vistos.add(nuevoId);
+            renumeradas = true;
+        }
+        if (renumeradas) {
+            try {
+                storageManager.compact(CITAS_FILE, citasCache, BinaryCodecs.CITA);
+            } catch (IOException e) {
+                // Con los ids nuevos solo en memoria, el journal los agregaría como citas aparte de
+                // las del snapshot; se vuelve a los ids guardados y se renumera en el próximo arranque
+                Log.e(TAG, "No se pudieron guardar los ids renumerados", e);
+                citasCache = originales;
+            }
+        }
+    }
+
+    private int mayorId() {
+        int mayor = 0;
+        for (Cita cita : citasCache) {
+            mayor = Math.max(mayor, cita.getIdCita());
+        }
+        return mayor;
+    }
+
+    private void indexar(Cita cita) {
+        if (citasPorId.putIfAbsent(cita.getIdCita(), cita) != null) {
+            // Solo si no se pudo renumerar al cargar: se conserva la primera coincidencia
+            Log.w(TAG, "Cita con id repetido fuera de los índices: " + cita.getIdCita());
+            return;
+        }
+        ClavesCita claves = new ClavesCita(cita);
+        clavesIndexadas.put(cita.getIdCita(), claves);
+        agregar(citasPorMedico, claves.medico, cita);
+        agregar(citasPorPaciente, claves.paciente, cita);
+        if (claves.dia != null) {
+            agregar(citasPorDia, claves.dia, cita);
+        }
+        if (claves.estado != null) {
+            agregar(citasPorEstado, claves.estado, cita);
+        }
+        if (claves.estado == EstadoCita.ATENDIDA) {
+            atendidasPorMedico.merge(claves.medico == null ? "" : claves.medico, 1, Integer::sum);
+        }
+        if (claves.horario != null) {
+            // Con datos anteriores puede haber dos citas en el mismo horario; ambas lo ocupan
+            TreeSet<Long> horas = horasOcupadas.get(claves.horario);
+            if (horas == null) {
+                horas = new TreeSet<>();
+                horasOcupadas.put(claves.horario, horas);
+            }
+            horas.add(ocupacion(claves.minuto, cita.getIdCita()));
+        }
+    }
+
+    private void desindexar(int id) {
+        citasPorId.remove(id);
+        ClavesCita claves = clavesIndexadas.remove(id);
+        if (claves == null) {
+            return;
+        }
+        quitar(citasPorMedico, claves.medico, id);
+        quitar(citasPorPaciente, claves.paciente, id);
+        quitar(citasPorDia, claves.dia, id);
+        quitar(citasPorEstado, claves.estado, id);
+        if (claves.horario != null) {
+            TreeSet<Long> horas = horasOcupadas.get(claves.horario);
+            if (horas != null && horas.remove(ocupacion(claves.minuto, id)) && horas.isEmpty()) {
+                horasOcupadas.remove(claves.horario);
+            }
+        }
+        if (claves.estado == EstadoCita.ATENDIDA) {
+            String medico = claves.medico == null ? "" : claves.medico;
+            atendidasPorMedico.computeIfPresent(medico, (k, v) -> v > 1 ? v - 1 : null);
+        }
+    }
+
+    private static <K> void agregar(Map<K, TreeMap<Integer, Cita>> indice, K clave, Cita cita) {
+        TreeMap<Integer, Cita> grupo = indice.get(clave);
+        if (grupo == null) {
+            grupo = new TreeMap<>();
+            indice.put(clave, grupo);
+        }
+        grupo.put(cita.getIdCita(), cita);
+    }
+
+    private static <K> void quitar(Map<K, TreeMap<Integer, Cita>> indice, K clave, int id) {
+        TreeMap<Integer, Cita> grupo = indice.get(clave);
+        if (grupo != null) {
+            grupo.remove(id);
+            if (grupo.isEmpty()) {
+                indice.remove(clave);
+            }
+        }
+    }
+
+    private static List<Cita> valores(TreeMap<Integer, Cita> grupo) {
+        return grupo == null ? new ArrayList<>() : new ArrayList<>(grupo.values());
+    }
+
+    private static String claveCorreo(String correo) {
+        return correo == null ? null : correo.toLowerCase(Locale.ROOT);
+    }
+
+    private static String claveHorario(String medico, DayOfWeek dia) {
+        return medico == null || dia == null ? null : medico + "|" + dia.ordinal();
+    }
+
+    private static int minutoDelDia(LocalTime hora) {
+        return hora.getHour() * 60 + hora.getMinute();
+    }
+
+    private static long ocupacion(int minuto, int id) {
+        return ((long) minuto << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Valores con los que una cita quedó registrada en los índices
+     */
+    private static final class ClavesCita {
+        final String medico;
+        final String paciente;
+        final DayOfWeek dia;
+        final EstadoCita estado;
+        // "medico|dia" de la hora ocupada; null si la cita está cancelada o no tiene hora
+        final String horario;
+        final int minuto;
+
+        ClavesCita(Cita cita) {
+            this.medico = claveCorreo(cita.getMedico());
+            this.paciente = claveCorreo(cita.getPaciente());
+            this.dia = cita.getDia();
+            this.estado = cita.getEstadoCita();
+            boolean ocupa = estado != EstadoCita.CANCELADA && cita.getHora() != null;
+            this.horario = ocupa ? claveHorario(medico, dia) : null;
+            this.minuto = ocupa ? minutoDelDia(cita.getHora()) : 0;
+        }
+    }
+
+    /**
+     * Espera a que todos los cambios hechos hasta ahora estén en disco. Bloquea, así que no
+     * debe llamarse desde el hilo principal. Devuelve false si la escritura falló.
+     * No es synchronized: el hilo de escritura necesita el lock del repositorio.
+     *
+     * Los métodos que modifican datos devuelven true cuando el cambio quedó en memoria y
+     * encolado; se escribe después en segundo plano y una falla de disco solo se informa aquí
+     * o en {@link #flush(Consumer)}. Mientras tanto el cambio se sigue reintentando.
+     */
+    public boolean flush() {
+        return escrituras.flush();
+    }
+
+    /**
+     * Escribe ya los cambios pendientes sin esperar; {@code alTerminar} recibe si quedaron en disco
+     */
+    public void flush(Consumer<Boolean> alTerminar) {
+        escrituras.flush(alTerminar);
+    }
+
+    private boolean guardarCambios(JournalOp op, Cita cita) {
         try {
-            storageManager.saveList(CITAS_FILE, citasCache);
+            byte[] registro = storageManager.encodeJournalRecord(op, cita.getIdCita(), cita, BinaryCodecs.CITA);
+            escrituras.enqueue(cita.getIdCita(), registro);
             return true;
         } catch (Exception e) {
             return false;
@@ -152,11 +525,10 @@ public class CitaRepository {
     }
 
     // Métodos útiles para filtros combinados
-    public List<Cita> getCitasActivasPorMedico(String correoMedico) {
+    public synchronized List<Cita> getCitasActivasPorMedico(String correoMedico) {
         List<Cita> resultado = new ArrayList<>();
-        for (Cita cita : citasCache) {
-            if (cita.getMedico().equalsIgnoreCase(correoMedico) && 
-                (cita.getEstadoCita() == EstadoCita.PROGRAMADA || 
+        for (Cita cita : getCitasPorMedico(correoMedico)) {
+            if ((cita.getEstadoCita() == EstadoCita.PROGRAMADA || 
                  cita.getEstadoCita() == EstadoCita.ATENDIDA)) {
                 resultado.add(cita);
             }
@@ -164,15 +536,15 @@ public class CitaRepository {
         return resultado;
     }
 
-    public List<Cita> getCitasProgramadas() {
+    public synchronized List<Cita> getCitasProgramadas() {
         return getCitasPorEstado(EstadoCita.PROGRAMADA);
     }
 
-    public List<Cita> getCitasCanceladas() {
+    public synchronized List<Cita> getCitasCanceladas() {
         return getCitasPorEstado(EstadoCita.CANCELADA);
     }
 
-    public List<Cita> getCitasAtendidas() {
+    public synchronized List<Cita> getCitasAtendidas() {
         return getCitasPorEstado(EstadoCita.ATENDIDA);
     }
 }
\ No newline at end of file
@@ -0,0 +1,250 @@
+package com.example.hospital.data.repository;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Índice de trigramas para búsquedas por subcadena sobre un campo de texto.
+ *
+ * Cada texto se guarda normalizado (sin tildes y en minúsculas) y por cada trigrama se mantiene
+ * la lista ordenada de documentos que lo contienen. Una búsqueda intersecta las listas de los
+ * trigramas del término y solo verifica los candidatos que quedan. Los documentos se identifican
+ * por instancia, y el texto indexado se conserva para poder quitarlos aunque el objeto haya
+ * cambiado después.
+ */
+class IndiceTrigramas<T> {
+    // Con más documentos eliminados que vivos se reconstruye para no arrastrar huecos
+    private static final int MINIMO_PARA_RECONSTRUIR = 1024;
+
+    private final List<T> documentos = new ArrayList<>();
+    private final List<String> textos = new ArrayList<>();
+    private final Map<T, Integer> numeros = new IdentityHashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private int eliminados;
+
+    void agregar(T documento, String texto) {
+        if (numeros.containsKey(documento)) {
+            quitar(documento);
+        }
+
+        String normalizado = normalizar(texto);
+        int numero = documentos.size();
+        documentos.add(documento);
+        textos.add(normalizado);
+        numeros.put(documento, numero);
+
+        // Los números crecen, así que agregar al final mantiene cada lista ordenada
+        for (int i = 0; i + 3 <= normalizado.length(); i++) {
+            long clave = trigrama(normalizado, i);
+            Postings lista = postings.get(clave);
+            if (lista == null) {
+                lista = new Postings();
+                postings.put(clave, lista);
+            }
+            lista.agregarAlFinal(numero);
+        }
+    }
+
+    void quitar(T documento) {
+        Integer numero = numeros.remove(documento);
+        if (numero == null) {
+            return;
+        }
+
+        String normalizado = textos.get(numero);
+        for (int i = 0; i + 3 <= normalizado.length(); i++) {
+            long clave = trigrama(normalizado, i);
+            Postings lista = postings.get(clave);
+            if (lista != null && lista.quitar(numero) && lista.tamanio == 0) {
+                postings.remove(clave);
+            }
+        }
+        documentos.set(numero, null);
+        textos.set(numero, null);
+        eliminados++;
+
+        if (eliminados >= MINIMO_PARA_RECONSTRUIR && eliminados > numeros.size()) {
+            reconstruir();
+        }
+    }
+
+    void limpiar() {
+        documentos.clear();
+        textos.clear();
+        numeros.clear();
+        postings.clear();
+        eliminados = 0;
+    }
+
+    /**
+     * Documentos cuyo texto contiene el término, ordenados por relevancia: coincidencia exacta,
+     * luego al inicio del texto, luego al inicio de una palabra y por último en cualquier parte.
+     * A igual relevancia se ordena por posición de la coincidencia y por orden de indexación.
+     */
+    List<T> buscar(String termino) {
+        String buscado = normalizar(termino);
+        long[] coincidencias;
+        int cantidad = 0;
+
+        if (buscado.length() < 3) {
+            // Sin trigramas completos se recorren los textos ya normalizados
+            coincidencias = new long[numeros.size()];
+            for (int numero = 0; numero < textos.size(); numero++) {
+                String texto = textos.get(numero);
+                if (texto != null) {
+                    long clave = clasificar(texto, buscado, numero);
+                    if (clave >= 0) {
+                        coincidencias[cantidad++] = clave;
+                    }
+                }
+            }
+        } else {
+            int[] candidatos = candidatos(buscado);
+            coincidencias = new long[candidatos.length];
+            for (int numero : candidatos) {
+                long clave = clasificar(textos.get(numero), buscado, numero);
+                if (clave >= 0) {
+                    coincidencias[cantidad++] = clave;
+                }
+            }
+        }
+
+        Arrays.sort(coincidencias, 0, cantidad);
+        List<T> resultado = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            resultado.add(documentos.get((int) coincidencias[i]));
+        }
+        return resultado;
+    }
+
+    /**
+     * Intersección de las listas de todos los trigramas del término, empezando por la más corta
+     */
+    private int[] candidatos(String buscado) {
+        List<Postings> listas = new ArrayList<>();
+        for (int i = 0; i + 3 <= buscado.length(); i++) {
+            Postings lista = postings.get(trigrama(buscado, i));
+            if (lista == null) {
+                return new int[0];
+            }
+            if (!listas.contains(lista)) {
+                listas.add(lista);
+            }
+        }
+        listas.sort((a, b) -> Integer.compare(a.tamanio, b.tamanio));
+
+        Postings menor = listas.get(0);
+        int[] candidatos = Arrays.copyOf(menor.numeros, menor.tamanio);
+        int cantidad = candidatos.length;
+        for (int l = 1; l < listas.size() && cantidad > 0; l++) {
+            Postings lista = listas.get(l);
+            int quedan = 0;
+            for (int i = 0; i < cantidad; i++) {
+                if (lista.contiene(candidatos[i])) {
+                    candidatos[quedan++] = candidatos[i];
+                }
+            }
+            cantidad = quedan;
+        }
+        return Arrays.copyOf(candidatos, cantidad);
+    }
+
+    /**
+     * Clave de orden (relevancia, posición, número) o -1 si el texto no contiene el término
+     */
+    private static long clasificar(String texto, String buscado, int numero) {
+        int posicion = texto.indexOf(buscado);
+        if (posicion < 0) {
+            return -1;
+        }
+
+        long relevancia;
+        if (posicion == 0 && texto.length() == buscado.length()) {
+            relevancia = 0;
+        } else if (posicion == 0) {
+            relevancia = 1;
+        } else if (!Character.isLetterOrDigit(texto.charAt(posicion - 1))) {
+            relevancia = 2;
+        } else {
+            relevancia = 3;
+        }
+        return (relevancia << 56) | ((long) Math.min(posicion, 0xFFFFFF) << 32) | numero;
+    }
+
+    private void reconstruir() {
+        List<T> vivos = new ArrayList<>(numeros.size());
+        List<String> textosVivos = new ArrayList<>(numeros.size());
+        for (int numero = 0; numero < documentos.size(); numero++) {
+            if (documentos.get(numero) != null) {
+                vivos.add(documentos.get(numero));
+                textosVivos.add(textos.get(numero));
+            }
+        }
+        limpiar();
+        // Los textos ya están normalizados; normalizar de nuevo no los cambia
+        for (int i = 0; i < vivos.size(); i++) {
+            agregar(vivos.get(i), textosVivos.get(i));
+        }
+    }
+
+    private static long trigrama(String texto, int i) {
+        return ((long) texto.charAt(i) << 32) | ((long) texto.charAt(i + 1) << 16) | texto.charAt(i + 2);
+    }
+
+    /**
+     * Quita tildes y diacríticos (descomposición NFD) y pasa a minúsculas
+     */
+    static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String descompuesto = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(descompuesto.length());
+        for (int i = 0; i < descompuesto.length(); i++) {
+            char c = descompuesto.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                sb.append(c);
+            }
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Lista ordenada de números de documento
+     */
+    private static final class Postings {
+        int[] numeros = new int[4];
+        int tamanio;
+
+        void agregarAlFinal(int numero) {
+            // Un trigrama repetido en el mismo texto se registra una sola vez
+            if (tamanio > 0 && numeros[tamanio - 1] == numero) {
+                return;
+            }
+            if (tamanio == numeros.length) {
+                numeros = Arrays.copyOf(numeros, tamanio * 2);
+            }
+            numeros[tamanio++] = numero;
+        }
+
+        boolean quitar(int numero) {
+            int i = Arrays.binarySearch(numeros, 0, tamanio, numero);
+            if (i < 0) {
+                return false;
+            }
+            System.arraycopy(numeros, i + 1, numeros, i, tamanio - i - 1);
+            tamanio--;
+            return true;
+        }
+
+        boolean contiene(int numero) {
+            return Arrays.binarySearch(numeros, 0, tamanio, numero) >= 0;
+        }
+    }
+}
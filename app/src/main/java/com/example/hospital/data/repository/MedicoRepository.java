@@ -1,30 +1,60 @@
 package com.example.hospital.data.repository;
 
 import android.content.Context;
+import android.util.Log;
 
+import com.example.hospital.data.models.HorarioAtencion;
 import com.example.hospital.data.models.Medico;
+import com.example.hospital.data.storage.BinaryCodecs;
 import com.example.hospital.data.storage.FileStorageManager;
+import com.example.hospital.data.storage.FileStorageManager.JournalOp;
+import com.example.hospital.data.storage.SecuenciaIds;
+import com.example.hospital.data.storage.WriteBehindQueue;
 
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public class MedicoRepository {
+    private static final String TAG = "MedicoRepository";
     private static final String MEDICOS_FILE = "medicos.dat";
     private final FileStorageManager storageManager;
+    private final SecuenciaIds secuencia;
+    // Los cambios se escriben en lotes en segundo plano
+    private final WriteBehindQueue<byte[]> escrituras;
     private List<Medico> medicosCache;
 
+    // Índices en memoria; se actualizan junto con el cache en cada escritura
+    private final Map<Integer, Medico> medicosPorId;
+    private final Map<String, Medico> medicosPorCorreo;
+
     public MedicoRepository(Context context) {
         this.storageManager = new FileStorageManager(context);
         this.medicosCache = new ArrayList<>();
+        this.medicosPorId = new HashMap<>();
+        this.medicosPorCorreo = new HashMap<>();
+        this.escrituras = storageManager.createJournalQueue(MEDICOS_FILE, BinaryCodecs.MEDICO, this,
+                () -> medicosCache);
         cargarMedicos();
+        this.secuencia = new SecuenciaIds(context, "medicos", this::mayorId);
     }
 
-    public List<Medico> getAllMedicos() {
+    public synchronized List<Medico> getAllMedicos() {
         return new ArrayList<>(medicosCache);
     }
 
-    public List<Medico> getMedicosActivos() {
+    public synchronized int getTotalMedicos() {
+        return medicosCache.size();
+    }
+
+    public synchronized List<Medico> getMedicosActivos() {
         List<Medico> activos = new ArrayList<>();
         for (Medico medico : medicosCache) {
             if (medico.isActivo()) {
@@ -34,7 +64,7 @@ public class MedicoRepository {
         return activos;
     }
 
-    public List<Medico> getMedicosPorEspecialidad(String especialidad) {
+    public synchronized List<Medico> getMedicosPorEspecialidad(String especialidad) {
         List<Medico> resultado = new ArrayList<>();
         for (Medico medico : medicosCache) {
             if (medico.getEspecialidad().equalsIgnoreCase(especialidad)) {
@@ -44,7 +74,7 @@ public class MedicoRepository {
         return resultado;
     }
 
-    public List<Medico> getMedicosPorGenero(String genero) {
+    public synchronized List<Medico> getMedicosPorGenero(String genero) {
         List<Medico> resultado = new ArrayList<>();
         for (Medico medico : medicosCache) {
             if (medico.getGenero().equalsIgnoreCase(genero)) {
@@ -54,26 +84,71 @@ public class MedicoRepository {
         return resultado;
     }
 
-    public Optional<Medico> getMedicoPorCorreo(String correo) {
-        return medicosCache.stream()
-                .filter(m -> m.getCorreo().equalsIgnoreCase(correo))
-                .findFirst();
+    public synchronized Optional<Medico> getMedicoPorCorreo(String correo) {
+        return Optional.ofNullable(medicosPorCorreo.get(claveCorreo(correo)));
+    }
+
+    /**
+     * Especialidad de cada médico indexada por correo (en minúsculas), armada desde el
+     * índice de correos en una sola pasada; pensada para cruzar citas con médicos.
+     */
+    public synchronized Map<String, String> getEspecialidadesPorCorreo() {
+        Map<String, String> especialidades = new HashMap<>(medicosPorCorreo.size() * 2);
+        for (Map.Entry<String, Medico> entry : medicosPorCorreo.entrySet()) {
+            especialidades.put(entry.getKey(), entry.getValue().getEspecialidad());
+        }
+        return especialidades;
+    }
+
+    /**
+     * Copia del horario de atención del médico tomada con el lock del repositorio, para
+     * recorrerla desde otro hilo mientras se registran o editan médicos
+     */
+    public synchronized HorarioAtencion getCopiaHorario(Medico medico) {
+        HorarioAtencion horario = medico.getHorarioAtencion();
+        return horario != null ? horario.copiar() : null;
+    }
+
+    /**
+     * Inicio del turno del médico que contiene la hora, o null si el médico no existe, no
+     * tiene horario o la hora queda fuera de su jornada
+     */
+    public synchronized LocalTime getInicioDeTurno(String correo, DayOfWeek dia, LocalTime hora) {
+        Medico medico = medicosPorCorreo.get(claveCorreo(correo));
+        if (medico == null || medico.getHorarioAtencion() == null) {
+            return null;
+        }
+        return medico.getHorarioAtencion().getInicioDeTurno(dia, hora);
+    }
+
+    /**
+     * Duración en minutos de los turnos del médico, o 0 si no existe o no tiene horario
+     */
+    public synchronized int getDuracionCita(String correo) {
+        Medico medico = medicosPorCorreo.get(claveCorreo(correo));
+        if (medico == null || medico.getHorarioAtencion() == null) {
+            return 0;
+        }
+        return medico.getHorarioAtencion().getDuracionCita();
     }
 
-    public Optional<Medico> getMedicoPorId(int id) {
-        return medicosCache.stream()
-                .filter(m -> m.getId() == id)
-                .findFirst();
+    public synchronized Optional<Medico> getMedicoPorId(int id) {
+        return Optional.ofNullable(medicosPorId.get(id));
     }
 
-    public boolean guardarMedico(Medico medico) {
+    public synchronized boolean guardarMedico(Medico medico) {
         // Verificar si ya existe
         if (getMedicoPorCorreo(medico.getCorreo()).isPresent()) {
             return false;
         }
 
         // Asignar ID
-        int nuevoId = medicosCache.size() + 1;
+        int nuevoId;
+        try {
+            nuevoId = secuencia.siguiente();
+        } catch (IOException e) {
+            return false;
+        }
         Medico nuevoMedico = new Medico(
                 nuevoId,
                 medico.getNombre(),
@@ -87,50 +162,110 @@ public class MedicoRepository {
         );
 
         medicosCache.add(nuevoMedico);
-        return guardarCambios();
+        indexar(nuevoMedico);
+        return guardarCambios(JournalOp.UPSERT, nuevoMedico);
     }
 
-    public boolean actualizarMedico(Medico medico) {
+    public synchronized boolean actualizarMedico(Medico medico) {
         Optional<Medico> existente = getMedicoPorId(medico.getId());
         if (!existente.isPresent()) {
             return false;
         }
 
-        int index = medicosCache.indexOf(existente.get());
-        if (index != -1) {
+        // La instancia puede venir del propio cache con el correo ya modificado
+        desindexar(existente.get());
+        if (existente.get() != medico) {
+            int index = medicosCache.indexOf(existente.get());
+            if (index == -1) {
+                indexar(existente.get());
+                return false;
+            }
             medicosCache.set(index, medico);
-            return guardarCambios();
         }
-        return false;
+        indexar(medico);
+        return guardarCambios(JournalOp.UPSERT, medico);
     }
 
-    public boolean eliminarMedico(int id) {
+    public synchronized boolean eliminarMedico(int id) {
         Optional<Medico> medico = getMedicoPorId(id);
         if (medico.isPresent()) {
             medicosCache.remove(medico.get());
-            return guardarCambios();
+            desindexar(medico.get());
+            return guardarCambios(JournalOp.DELETE, medico.get());
         }
         return false;
     }
 
     private void cargarMedicos() {
         try {
-            medicosCache = storageManager.loadList(MEDICOS_FILE);
+            medicosCache = storageManager.loadJournaled(MEDICOS_FILE, Medico::getId, BinaryCodecs.MEDICO);
         } catch (Exception e) {
+            // Se sigue sin los médicos guardados; el archivo no se compacta hasta repararlo
+            Log.e(TAG, "No se pudieron cargar los médicos", e);
             medicosCache = new ArrayList<>();
         }
+        for (Medico medico : medicosCache) {
+            indexar(medico);
+        }
+    }
+
+    private int mayorId() {
+        int mayor = 0;
+        for (Medico medico : medicosCache) {
+            mayor = Math.max(mayor, medico.getId());
+        }
+        return mayor;
+    }
+
+    /**
+     * Espera a que todos los cambios hechos hasta ahora estén en disco. Bloquea, así que no
+     * debe llamarse desde el hilo principal. Devuelve false si la escritura falló.
+     * No es synchronized: el hilo de escritura necesita el lock del repositorio.
+     *
+     * Los métodos que modifican datos devuelven true cuando el cambio quedó en memoria y
+     * encolado; se escribe después en segundo plano y una falla de disco solo se informa aquí
+     * o en {@link #flush(Consumer)}. Mientras tanto el cambio se sigue reintentando.
+     */
+    public boolean flush() {
+        return escrituras.flush();
     }
 
-    private boolean guardarCambios() {
+    /**
+     * Escribe ya los cambios pendientes sin esperar; {@code alTerminar} recibe si quedaron en disco
+     */
+    public void flush(Consumer<Boolean> alTerminar) {
+        escrituras.flush(alTerminar);
+    }
+
+    private boolean guardarCambios(JournalOp op, Medico medico) {
         try {
-            storageManager.saveList(MEDICOS_FILE, medicosCache);
+            byte[] registro = storageManager.encodeJournalRecord(op, medico.getId(), medico, BinaryCodecs.MEDICO);
+            escrituras.enqueue(medico.getId(), registro);
             return true;
         } catch (Exception e) {
             return false;
         }
     }
 
-    public boolean medicoExiste(String correo) {
+    private void indexar(Medico medico) {
+        // putIfAbsent conserva la semántica anterior de devolver la primera coincidencia
+        medicosPorId.putIfAbsent(medico.getId(), medico);
+        medicosPorCorreo.putIfAbsent(claveCorreo(medico.getCorreo()), medico);
+    }
+
+    private void desindexar(Medico medico) {
+        medicosPorId.remove(medico.getId(), medico);
+        if (!medicosPorCorreo.remove(claveCorreo(medico.getCorreo()), medico)) {
+            // El correo cambió sobre la misma instancia: se busca la entrada anterior
+            medicosPorCorreo.values().removeIf(m -> m == medico);
+        }
+    }
+
+    private static String claveCorreo(String correo) {
+        return correo == null ? null : correo.toLowerCase(Locale.ROOT);
+    }
+
+    public synchronized boolean medicoExiste(String correo) {
         return getMedicoPorCorreo(correo).isPresent();
     }
 }
\ No newline at end of file
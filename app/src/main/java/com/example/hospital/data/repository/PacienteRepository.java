@@ -1,49 +1,100 @@
 package com.example.hospital.data.repository;
 
 import android.content.Context;
+import android.util.Log;
 
 import com.example.hospital.data.models.Paciente;
+import com.example.hospital.data.models.TratamientoPaciente;
+import com.example.hospital.data.storage.BinaryCodecs;
 import com.example.hospital.data.storage.FileStorageManager;
+import com.example.hospital.data.storage.FileStorageManager.JournalOp;
+import com.example.hospital.data.storage.RecordCodec;
+import com.example.hospital.data.storage.SecuenciaIds;
+import com.example.hospital.data.storage.WriteBehindQueue;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 public class PacienteRepository {
+    private static final String TAG = "PacienteRepository";
     private static final String PACIENTES_FILE = "pacientes.dat";
     private final FileStorageManager storageManager;
+    // El historial de tratamientos se guarda como referencias al catálogo
+    private final RecordCodec<Paciente> codec;
+    private final SecuenciaIds secuencia;
+    // Los cambios se escriben en lotes en segundo plano
+    private final WriteBehindQueue<byte[]> escrituras;
     private List<Paciente> pacientesCache;
 
-    public PacienteRepository(Context context) {
+    // Índices en memoria; se actualizan junto con el cache en cada escritura
+    private final Map<Integer, Paciente> pacientesPorId;
+    private final Map<String, Paciente> pacientesPorCorreo;
+    private final Map<String, Paciente> pacientesPorCedula;
+    // Índices de búsqueda por subcadena, uno por campo de buscarPacientes
+    private final IndiceTrigramas<Paciente> busquedaPorNombre;
+    private final IndiceTrigramas<Paciente> busquedaPorApellido;
+    private final IndiceTrigramas<Paciente> busquedaPorCedula;
+    private final IndiceTrigramas<Paciente> busquedaPorCorreo;
+
+    /**
+     * Resuelve contra {@code tratamientoRepository} los tratamientos del historial al cargar
+     */
+    public PacienteRepository(Context context, TratamientoRepository tratamientoRepository) {
         this.storageManager = new FileStorageManager(context);
+        this.codec = BinaryCodecs.paciente(tratamientoRepository::getTratamientoPorId);
         this.pacientesCache = new ArrayList<>();
+        this.pacientesPorId = new HashMap<>();
+        this.pacientesPorCorreo = new HashMap<>();
+        this.pacientesPorCedula = new HashMap<>();
+        this.busquedaPorNombre = new IndiceTrigramas<>();
+        this.busquedaPorApellido = new IndiceTrigramas<>();
+        this.busquedaPorCedula = new IndiceTrigramas<>();
+        this.busquedaPorCorreo = new IndiceTrigramas<>();
+        this.escrituras = storageManager.createJournalQueue(PACIENTES_FILE, codec, this,
+                () -> pacientesCache);
         cargarPacientes();
+        this.secuencia = new SecuenciaIds(context, "pacientes", this::mayorId);
     }
 
-    public List<Paciente> getAllPacientes() {
+    public synchronized List<Paciente> getAllPacientes() {
         return new ArrayList<>(pacientesCache);
     }
 
-    public Optional<Paciente> getPacientePorCorreo(String correo) {
-        return pacientesCache.stream()
-                .filter(p -> p.getCorreo().equalsIgnoreCase(correo))
-                .findFirst();
+    /**
+     * Página de pacientes en el orden en que fueron registrados: hasta {@code cantidad}
+     * pacientes a partir de la posición {@code desde}
+     */
+    public synchronized List<Paciente> getPacientesPagina(int desde, int cantidad) {
+        if (desde < 0 || desde >= pacientesCache.size() || cantidad <= 0) {
+            return new ArrayList<>();
+        }
+        int hasta = Math.min(pacientesCache.size(), desde + cantidad);
+        return new ArrayList<>(pacientesCache.subList(desde, hasta));
+    }
+
+    public synchronized int getTotalPacientes() {
+        return pacientesCache.size();
     }
 
-    public Optional<Paciente> getPacientePorId(int id) {
-        return pacientesCache.stream()
-                .filter(p -> p.getId() == id)
-                .findFirst();
+    public synchronized Optional<Paciente> getPacientePorCorreo(String correo) {
+        return Optional.ofNullable(pacientesPorCorreo.get(claveCorreo(correo)));
     }
 
-    public Optional<Paciente> getPacientePorCedula(String cedula) {
-        return pacientesCache.stream()
-                .filter(p -> p.getCedulaString().equals(cedula))
-                .findFirst();
+    public synchronized Optional<Paciente> getPacientePorId(int id) {
+        return Optional.ofNullable(pacientesPorId.get(id));
     }
 
-    public List<Paciente> getPacientesPorTipoSeguro(com.example.hospital.data.models.TipoSeguro tipoSeguro) {
+    public synchronized Optional<Paciente> getPacientePorCedula(String cedula) {
+        return Optional.ofNullable(pacientesPorCedula.get(cedula));
+    }
+
+    public synchronized List<Paciente> getPacientesPorTipoSeguro(com.example.hospital.data.models.TipoSeguro tipoSeguro) {
         List<Paciente> resultado = new ArrayList<>();
         for (Paciente paciente : pacientesCache) {
             if (paciente.getTipoSeguro() == tipoSeguro) {
@@ -53,35 +104,47 @@ public class PacienteRepository {
         return resultado;
     }
 
-    public List<Paciente> buscarPacientes(String campo, String termino) {
-        String terminoLower = termino.toLowerCase();
-        
-        return pacientesCache.stream()
-                .filter(p -> {
-                    switch (campo.toLowerCase()) {
-                        case "nombre":
-                            return p.getNombre().toLowerCase().contains(terminoLower);
-                        case "apellido":
-                            return p.getApellido().toLowerCase().contains(terminoLower);
-                        case "cedula":
-                            return p.getCedulaString().contains(terminoLower);
-                        case "correo":
-                            return p.getCorreo().toLowerCase().contains(terminoLower);
-                        default:
-                            return false;
-                    }
-                })
-                .collect(Collectors.toList());
-    }
-
-    public boolean guardarPaciente(Paciente paciente) {
+    /**
+     * Pacientes cuyo campo contiene el término, sin distinguir tildes ni mayúsculas.
+     * Los resultados vienen ordenados por relevancia (coincidencia exacta, al inicio, al inicio
+     * de una palabra, en cualquier parte).
+     */
+    public synchronized List<Paciente> buscarPacientes(String campo, String termino) {
+        IndiceTrigramas<Paciente> indice = indiceDeBusqueda(campo);
+        if (indice == null) {
+            return new ArrayList<>();
+        }
+        return indice.buscar(termino);
+    }
+
+    private IndiceTrigramas<Paciente> indiceDeBusqueda(String campo) {
+        switch (campo.toLowerCase(Locale.ROOT)) {
+            case "nombre":
+                return busquedaPorNombre;
+            case "apellido":
+                return busquedaPorApellido;
+            case "cedula":
+                return busquedaPorCedula;
+            case "correo":
+                return busquedaPorCorreo;
+            default:
+                return null;
+        }
+    }
+
+    public synchronized boolean guardarPaciente(Paciente paciente) {
         // Verificar si ya existe
         if (getPacientePorCorreo(paciente.getCorreo()).isPresent()) {
             return false;
         }
 
         // Asignar ID
-        int nuevoId = pacientesCache.size() + 1;
+        int nuevoId;
+        try {
+            nuevoId = secuencia.siguiente();
+        } catch (IOException e) {
+            return false;
+        }
         // Creamos uno nuevo con el ID asignado
         Paciente nuevoPaciente = new Paciente(
                 nuevoId,
@@ -93,58 +156,168 @@ public class PacienteRepository {
         );
 
         pacientesCache.add(nuevoPaciente);
-        return guardarCambios();
+        indexar(nuevoPaciente);
+        return guardarCambios(JournalOp.UPSERT, nuevoPaciente);
     }
 
-    public boolean actualizarPaciente(Paciente paciente) {
+    public synchronized boolean actualizarPaciente(Paciente paciente) {
         Optional<Paciente> existente = getPacientePorId(paciente.getId());
         if (!existente.isPresent()) {
             return false;
         }
 
-        int index = pacientesCache.indexOf(existente.get());
-        if (index != -1) {
+        // La instancia puede venir del propio cache con correo o cédula ya modificados
+        desindexar(existente.get());
+        if (existente.get() != paciente) {
+            int index = pacientesCache.indexOf(existente.get());
+            if (index == -1) {
+                indexar(existente.get());
+                return false;
+            }
             pacientesCache.set(index, paciente);
-            return guardarCambios();
         }
-        return false;
+        indexar(paciente);
+        return guardarCambios(JournalOp.UPSERT, paciente);
     }
 
-    public boolean eliminarPaciente(int id) {
+    /**
+     * Cambia los datos del paciente con el lock del repositorio. Falla si no existe o si el
+     * nuevo correo ya es de otro paciente.
+     */
+    public synchronized boolean editarPaciente(int id, String nombre, String apellido, String correo,
+                                               com.example.hospital.data.models.TipoSeguro tipoSeguro) {
+        Optional<Paciente> existente = getPacientePorId(id);
+        if (!existente.isPresent()) {
+            return false;
+        }
+        Optional<Paciente> mismoCorreo = getPacientePorCorreo(correo);
+        if (mismoCorreo.isPresent() && mismoCorreo.get() != existente.get()) {
+            return false;
+        }
+
+        Paciente paciente = existente.get();
+        desindexar(paciente);
+        paciente.setNombre(nombre);
+        paciente.setApellido(apellido);
+        paciente.setCorreo(correo);
+        paciente.setTipoSeguro(tipoSeguro);
+        indexar(paciente);
+        return guardarCambios(JournalOp.UPSERT, paciente);
+    }
+
+    /**
+     * Agrega el tratamiento al historial del paciente con el lock del repositorio
+     */
+    public synchronized boolean agregarTratamiento(int idPaciente, TratamientoPaciente tratamiento) {
+        Optional<Paciente> paciente = getPacientePorId(idPaciente);
+        if (!paciente.isPresent()) {
+            return false;
+        }
+        paciente.get().agregarTratamiento(tratamiento);
+        return guardarCambios(JournalOp.UPSERT, paciente.get());
+    }
+
+    public synchronized boolean eliminarPaciente(int id) {
         Optional<Paciente> paciente = getPacientePorId(id);
         if (paciente.isPresent()) {
             pacientesCache.remove(paciente.get());
-            return guardarCambios();
+            desindexar(paciente.get());
+            return guardarCambios(JournalOp.DELETE, paciente.get());
         }
         return false;
     }
 
     private void cargarPacientes() {
         try {
-            pacientesCache = storageManager.loadList(PACIENTES_FILE);
+            pacientesCache = storageManager.loadJournaled(PACIENTES_FILE, Paciente::getId, codec);
         } catch (Exception e) {
+            // Se sigue sin los pacientes guardados; el archivo no se compacta hasta repararlo
+            Log.e(TAG, "No se pudieron cargar los pacientes", e);
             pacientesCache = new ArrayList<>();
         }
+        for (Paciente paciente : pacientesCache) {
+            indexar(paciente);
+        }
+    }
+
+    private int mayorId() {
+        int mayor = 0;
+        for (Paciente paciente : pacientesCache) {
+            mayor = Math.max(mayor, paciente.getId());
+        }
+        return mayor;
+    }
+
+    /**
+     * Espera a que todos los cambios hechos hasta ahora estén en disco. Bloquea, así que no
+     * debe llamarse desde el hilo principal. Devuelve false si la escritura falló.
+     * No es synchronized: el hilo de escritura necesita el lock del repositorio.
+     *
+     * Los métodos que modifican datos devuelven true cuando el cambio quedó en memoria y
+     * encolado; se escribe después en segundo plano y una falla de disco solo se informa aquí
+     * o en {@link #flush(Consumer)}. Mientras tanto el cambio se sigue reintentando.
+     */
+    public boolean flush() {
+        return escrituras.flush();
+    }
+
+    /**
+     * Escribe ya los cambios pendientes sin esperar; {@code alTerminar} recibe si quedaron en disco
+     */
+    public void flush(Consumer<Boolean> alTerminar) {
+        escrituras.flush(alTerminar);
     }
 
-    private boolean guardarCambios() {
+    private boolean guardarCambios(JournalOp op, Paciente paciente) {
         try {
-            storageManager.saveList(PACIENTES_FILE, pacientesCache);
+            byte[] registro = storageManager.encodeJournalRecord(op, paciente.getId(), paciente, codec);
+            escrituras.enqueue(paciente.getId(), registro);
             return true;
         } catch (Exception e) {
             return false;
         }
     }
 
-    public boolean pacienteExiste(String correo) {
+    private void indexar(Paciente paciente) {
+        // putIfAbsent conserva la semántica anterior de devolver la primera coincidencia
+        pacientesPorId.putIfAbsent(paciente.getId(), paciente);
+        pacientesPorCorreo.putIfAbsent(claveCorreo(paciente.getCorreo()), paciente);
+        pacientesPorCedula.putIfAbsent(paciente.getCedulaString(), paciente);
+        busquedaPorNombre.agregar(paciente, paciente.getNombre());
+        busquedaPorApellido.agregar(paciente, paciente.getApellido());
+        busquedaPorCedula.agregar(paciente, paciente.getCedulaString());
+        busquedaPorCorreo.agregar(paciente, paciente.getCorreo());
+    }
+
+    private void desindexar(Paciente paciente) {
+        pacientesPorId.remove(paciente.getId(), paciente);
+        if (!pacientesPorCorreo.remove(claveCorreo(paciente.getCorreo()), paciente)) {
+            // El correo cambió sobre la misma instancia: se busca la entrada anterior
+            pacientesPorCorreo.values().removeIf(p -> p == paciente);
+        }
+        if (!pacientesPorCedula.remove(paciente.getCedulaString(), paciente)) {
+            pacientesPorCedula.values().removeIf(p -> p == paciente);
+        }
+        // Los índices de búsqueda guardan el texto indexado, así que no dependen de los datos actuales
+        busquedaPorNombre.quitar(paciente);
+        busquedaPorApellido.quitar(paciente);
+        busquedaPorCedula.quitar(paciente);
+        busquedaPorCorreo.quitar(paciente);
+    }
+
+    private static String claveCorreo(String correo) {
+        return correo == null ? null : correo.toLowerCase(Locale.ROOT);
+    }
+
+    public synchronized boolean pacienteExiste(String correo) {
         return getPacientePorCorreo(correo).isPresent();
     }
 
-    public Paciente buscarPorCorreo(String correo) {
+    public synchronized Paciente buscarPorCorreo(String correo) {
         return getPacientePorCorreo(correo).orElse(null);
     }
 
-    public boolean guardarPaciente(String nombre, String apellido, String correo, String cedula, com.example.hospital.data.models.TipoSeguro tipoSeguro) {
+    public synchronized boolean guardarPaciente(String nombre, String apellido, String correo, String cedula, com.example.hospital.data.models.TipoSeguro tipoSeguro) {
         // Verificar si ya existe
         if (pacienteExiste(correo)) {
             // Si ya existe, actualizamos
@@ -161,10 +334,16 @@ public class PacienteRepository {
         }
 
         // Crear nuevo paciente
-        int nuevoId = pacientesCache.size() + 1;
+        int nuevoId;
+        try {
+            nuevoId = secuencia.siguiente();
+        } catch (IOException e) {
+            return false;
+        }
         Paciente nuevoPaciente = new Paciente(nuevoId, nombre, apellido, correo, cedula, tipoSeguro);
-        
+
         pacientesCache.add(nuevoPaciente);
-        return guardarCambios();
+        indexar(nuevoPaciente);
+        return guardarCambios(JournalOp.UPSERT, nuevoPaciente);
     }
 }
@@ -1,9 +1,9 @@
 package com.example.hospital.data.repository;
 
-import android.content.Context;
 import android.util.Log;
 
 import com.example.hospital.data.models.Cita;
+import com.example.hospital.data.models.EstadisticasGenerales;
 import com.example.hospital.data.models.EstadoCita;
 import com.example.hospital.data.models.Medico;
 import com.example.hospital.data.models.Tratamiento;
@@ -12,6 +12,7 @@ import com.example.hospital.data.models.TratamientoPaciente;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.stream.Collectors;
 
@@ -30,11 +31,13 @@ public class ReporteRepository {
     private final TratamientoRepository tratamientoRepository;
     private final TratamientoPacienteRepository tratamientoPacienteRepository;
 
-    public ReporteRepository(Context context) {
-        this.citaRepository = new CitaRepository(context);
-        this.medicoRepository = new MedicoRepository(context);
-        this.tratamientoRepository = new TratamientoRepository(context);
-        this.tratamientoPacienteRepository = new TratamientoPacienteRepository(context);
+    public ReporteRepository(CitaRepository citaRepository, MedicoRepository medicoRepository,
+                             TratamientoRepository tratamientoRepository,
+                             TratamientoPacienteRepository tratamientoPacienteRepository) {
+        this.citaRepository = citaRepository;
+        this.medicoRepository = medicoRepository;
+        this.tratamientoRepository = tratamientoRepository;
+        this.tratamientoPacienteRepository = tratamientoPacienteRepository;
     }
 
     /**
@@ -47,30 +50,20 @@ public class ReporteRepository {
         try {
             Log.d(TAG, "Iniciando generación de reporte de citas por especialidad...");
             
-            // Obtener todas las citas atendidas
-            List<Cita> citasAtendidas = citaRepository.getCitasAtendidas();
-            Log.d(TAG, "Citas atendidas encontradas: " + citasAtendidas.size());
+            // Contadores de citas atendidas por médico que CitaRepository mantiene en cada escritura
+            Map<String, Integer> atendidasPorMedico = citaRepository.getAtendidasPorMedico();
+            Log.d(TAG, "Médicos con citas atendidas: " + atendidasPorMedico.size());
             
-            // Obtener todos los médicos una sola vez para eficiencia
-            List<Medico> medicos = medicoRepository.getAllMedicos();
-            Log.d(TAG, "Médicos encontrados: " + medicos.size());
+            // Especialidad por correo del médico, armada una sola vez para todo el reporte
+            Map<String, String> especialidades = medicoRepository.getEspecialidadesPorCorreo();
+            Log.d(TAG, "Médicos encontrados: " + especialidades.size());
             
-            // Agrupar por especialidad del médico
-            for (Cita cita : citasAtendidas) {
-                try {
-                    // Obtener el médico de la cita
-                    for (Medico medico : medicos) {
-                        if (medico.getCorreo().equals(cita.getMedico())) {
-                            String especialidad = medico.getEspecialidad();
-                            if (especialidad != null && !especialidad.trim().isEmpty()) {
-                                // Incrementar contador para esa especialidad
-                                resultado.put(especialidad, resultado.getOrDefault(especialidad, 0) + 1);
-                            }
-                            break; // Ya encontramos el médico, pasamos a la siguiente cita
-                        }
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "Error procesando cita ID: " + cita.getIdCita(), e);
+            // Agrupar por especialidad del médico; el costo depende de la cantidad de médicos,
+            // no de la cantidad de citas
+            for (Map.Entry<String, Integer> entry : atendidasPorMedico.entrySet()) {
+                String especialidad = especialidades.get(entry.getKey());
+                if (especialidad != null && !especialidad.trim().isEmpty()) {
+                    resultado.merge(especialidad, entry.getValue(), Integer::sum);
                 }
             }
             
@@ -92,16 +85,13 @@ public class ReporteRepository {
         
         try {
             List<Cita> citasAtendidas = citaRepository.getCitasAtendidas();
+            Map<String, String> especialidades = medicoRepository.getEspecialidadesPorCorreo();
             
             // Filtrar por especialidad específica
             for (Cita cita : citasAtendidas) {
-                List<Medico> medicos = medicoRepository.getAllMedicos();
-                for (Medico medico : medicos) {
-                    if (medico.getCorreo().equals(cita.getMedico()) && 
-                        medico.getEspecialidad().equalsIgnoreCase(especialidad)) {
-                        resultado.add(cita);
-                        break;
-                    }
+                String especialidadMedico = especialidadDe(cita, especialidades);
+                if (especialidadMedico != null && especialidadMedico.equalsIgnoreCase(especialidad)) {
+                    resultado.add(cita);
                 }
             }
             
@@ -114,6 +104,11 @@ public class ReporteRepository {
         return resultado;
     }
 
+    private static String especialidadDe(Cita cita, Map<String, String> especialidades) {
+        String correoMedico = cita.getMedico();
+        return correoMedico == null ? null : especialidades.get(correoMedico.toLowerCase(Locale.ROOT));
+    }
+
     /**
      * REPORTE 2: Ingresos totales por tratamientos
      * Retorna un mapa con tipos de tratamiento como clave y ingresos totales como valor
@@ -122,16 +117,8 @@ public class ReporteRepository {
         Map<String, Double> resultado = new HashMap<>();
         
         try {
-            // Obtener todos los tratamientos asignados a pacientes
-            List<TratamientoPaciente> tratamientosAsignados = tratamientoPacienteRepository.cargarTodos();
-            
-            // Calcular ingresos por tipo de tratamiento
-            for (TratamientoPaciente tp : tratamientosAsignados) {
-                String tipo = tp.getTratamiento().getTipo();
-                double costo = tp.getTratamiento().calcularCosto();
-                
-                resultado.put(tipo, resultado.getOrDefault(tipo, 0.0) + costo);
-            }
+            // Sumas por tipo mantenidas por el repositorio en cada asignación
+            resultado = tratamientoPacienteRepository.getIngresosPorTipo();
             
             Log.d(TAG, "Reporte de ingresos por tratamientos generado: " + resultado.size() + " tipos");
             
@@ -149,11 +136,9 @@ public class ReporteRepository {
         double total = 0.0;
         
         try {
-            List<TratamientoPaciente> tratamientosAsignados = tratamientoPacienteRepository.cargarTodos();
-            
-            for (TratamientoPaciente tp : tratamientosAsignados) {
-                if (tp.getTratamiento().getTipo().equalsIgnoreCase(tipo)) {
-                    total += tp.getTratamiento().calcularCosto();
+            for (Map.Entry<String, Double> entry : tratamientoPacienteRepository.getIngresosPorTipo().entrySet()) {
+                if (entry.getKey().equalsIgnoreCase(tipo)) {
+                    total += entry.getValue();
                 }
             }
             
@@ -267,55 +252,36 @@ public class ReporteRepository {
     }
 
     /**
-     * Estadísticas generales del sistema
+     * Estadísticas generales del sistema. Cada fuente se consulta una sola vez: los conteos
+     * por estado de las citas, el resumen de asignaciones y el total de médicos.
      */
-    public Map<String, Object> getEstadisticasGenerales() {
-        Map<String, Object> estadisticas = new HashMap<>();
-        
+    public EstadisticasGenerales getEstadisticasGenerales() {
         try {
-            // Citas
-            List<Cita> todasCitas = citaRepository.getAllCitas();
-            long citasAtendidas = todasCitas.stream()
-                    .filter(c -> c.getEstadoCita() == EstadoCita.ATENDIDA)
-                    .count();
-            long citasProgramadas = todasCitas.stream()
-                    .filter(c -> c.getEstadoCita() == EstadoCita.PROGRAMADA)
-                    .count();
-            long citasCanceladas = todasCitas.stream()
-                    .filter(c -> c.getEstadoCita() == EstadoCita.CANCELADA)
-                    .count();
+            // Citas: el total es la suma de los conteos por estado
+            Map<EstadoCita, Integer> conteoCitas = citaRepository.getConteoPorEstado();
+            int totalCitas = 0;
+            for (int cantidad : conteoCitas.values()) {
+                totalCitas += cantidad;
+            }
 
-            // Tratamientos
-            List<TratamientoPaciente> tratamientosAsignados = tratamientoPacienteRepository.cargarTodos();
-            double ingresosTotales = tratamientosAsignados.stream()
-                    .mapToDouble(tp -> tp.getTratamiento().calcularCosto())
-                    .sum();
+            // Tratamientos: asignaciones, ingresos y pacientes distintos en una sola lectura
+            TratamientoPacienteRepository.ResumenAsignaciones resumen = tratamientoPacienteRepository.getResumen();
 
-            estadisticas.put("totalCitas", todasCitas.size());
-            estadisticas.put("citasAtendidas", (int) citasAtendidas);
-            estadisticas.put("citasProgramadas", (int) citasProgramadas);
-            estadisticas.put("citasCanceladas", (int) citasCanceladas);
-            estadisticas.put("totalTratamientosAsignados", tratamientosAsignados.size());
-            estadisticas.put("ingresosTotales", ingresosTotales);
-            estadisticas.put("totalMedicos", medicoRepository.getAllMedicos().size());
-            
-            // Para pacientes, usamos los pacientes que tienen tratamientos asignados
-            List<String> pacientesConTratamientos = getPacientesConTratamientos();
-            estadisticas.put("totalPacientes", pacientesConTratamientos.size());
+            return new EstadisticasGenerales(
+                    totalCitas,
+                    conteoCitas.get(EstadoCita.ATENDIDA),
+                    conteoCitas.get(EstadoCita.PROGRAMADA),
+                    conteoCitas.get(EstadoCita.CANCELADA),
+                    resumen.asignados,
+                    resumen.ingresos,
+                    medicoRepository.getTotalMedicos(),
+                    // Para pacientes, usamos los pacientes que tienen tratamientos asignados
+                    resumen.pacientes);
             
         } catch (Exception e) {
             Log.e(TAG, "Error al generar estadísticas generales", e);
             // En caso de error, devolver valores por defecto
-            estadisticas.put("totalCitas", 0);
-            estadisticas.put("citasAtendidas", 0);
-            estadisticas.put("citasProgramadas", 0);
-            estadisticas.put("citasCanceladas", 0);
-            estadisticas.put("totalTratamientosAsignados", 0);
-            estadisticas.put("ingresosTotales", 0.0);
-            estadisticas.put("totalMedicos", 0);
-            estadisticas.put("totalPacientes", 0);
+            return EstadisticasGenerales.vacias();
         }
-        
-        return estadisticas;
     }
 }
\ No newline at end of file
@@ -3,135 +3,632 @@ package com.example.hospital.data.repository;
 import android.content.Context;
 import android.util.Log;
 
+import com.example.hospital.data.models.Cirugia;
+import com.example.hospital.data.models.Medicacion;
 import com.example.hospital.data.models.Paciente;
+import com.example.hospital.data.models.Terapia;
+import com.example.hospital.data.models.TipoSeguro;
 import com.example.hospital.data.models.Tratamiento;
 import com.example.hospital.data.models.TratamientoPaciente;
 import com.example.hospital.data.storage.FileStorageManager;
+import com.example.hospital.data.storage.SecuenciaIds;
+import com.example.hospital.data.storage.WriteBehindQueue;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+/**
+ * Tratamientos asignados a pacientes. Cada línea del archivo guarda sólo las referencias
+ * al paciente (id) y al tratamiento del catálogo (tipo;id); al cargar se resuelven contra
+ * las instancias de PacienteRepository y TratamientoRepository, así un paciente con varios
+ * tratamientos se representa con un único objeto Paciente.
+ *
+ * Un paciente o tratamiento que no está en su repositorio (eliminado, o un tratamiento creado
+ * solo para la asignación) se guarda completo en la línea, para que la asignación se siga
+ * leyendo. Por eso los pacientes y tratamientos con asignaciones se eliminan a través de
+ * este repositorio.
+ */
 public class TratamientoPacienteRepository {
+    private static final String TAG = "TratamientoPacienteRepo";
     private static final String FILE_NAME = "tratamientos_paciente.txt";
+    private static final String TEMP_FILE_NAME = FILE_NAME + ".tmp";
+    // Prefijo de las líneas que marcan un tratamiento eliminado ("D|id")
+    private static final String TOMBSTONE = "D";
+    // Líneas reemplazadas o eliminadas a partir de las cuales se compacta el archivo
+    private static final int UMBRAL_COMPACTACION = 64;
+    private static final ExecutorService compactador = Executors.newSingleThreadExecutor();
     private final Context context;
     private final FileStorageManager storageManager;
-    private int nextId = 1;
-
-    public TratamientoPacienteRepository(Context context) {
+    private final PacienteRepository pacienteRepository;
+    private final TratamientoRepository tratamientoRepository;
+    private final SecuenciaIds secuencia;
+    // Líneas por agregar al archivo, una por id; se escriben en lotes en segundo plano
+    private final WriteBehindQueue<String> escrituras;
+
+    // Cache residente: se carga una sola vez; el repositorio es único en el proceso
+    // (HospitalApplication) y es el único que escribe el archivo
+    private List<TratamientoPaciente> cache;
+    private final Map<Integer, TratamientoPaciente> porId;
+    // Agrupados por la instancia del paciente (no por su correo, que puede cambiar)
+    private final Map<Paciente, List<TratamientoPaciente>> porPaciente;
+    // Paciente con que se indexó cada registro, para quitarlo de su grupo aunque el registro
+    // se haya modificado después
+    private final Map<Integer, Paciente> pacienteIndexado;
+    // Ingresos y cantidad de asignaciones por tipo de tratamiento. Se guarda el tipo y el costo
+    // con que se sumó cada asignación para restar exactamente lo mismo al reemplazarla o eliminarla.
+    // Los montos van en centavos para que las sumas y restas sean exactas
+    private final Map<String, Long> ingresosPorTipo;
+    private final Map<String, Integer> asignadosPorTipo;
+    private final Map<Integer, String> tipoIndexado;
+    private final Map<Integer, Long> costoIndexado;
+    // Pacientes de líneas antiguas que ya no existen en PacienteRepository, una instancia por correo
+    private final Map<String, Paciente> pacientesHuerfanos;
+    // Tratamientos guardados completos que no están en el catálogo, una instancia por definición
+    private final Map<String, Tratamiento> tratamientosHuerfanos;
+    // Pacientes y tratamientos por eliminar: sus líneas ya se escriben completas aunque
+    // todavía estén en su repositorio
+    private final Set<Object> conservados;
+    // Líneas cuyas referencias no se pudieron resolver; no se muestran pero se conservan al compactar
+    private final Map<Integer, String> lineasSinResolver;
+    // Se leyeron líneas con el paciente o el tratamiento embebidos; se reescriben normalizadas
+    private boolean formatoAntiguo;
+    // Líneas del archivo que ya no corresponden a un registro vigente
+    private int lineasObsoletas;
+    private boolean compactacionPendiente;
+
+    public TratamientoPacienteRepository(Context context, PacienteRepository pacienteRepository,
+                                         TratamientoRepository tratamientoRepository) {
         this.context = context;
         this.storageManager = new FileStorageManager(context);
-        loadNextId();
+        this.pacienteRepository = pacienteRepository;
+        this.tratamientoRepository = tratamientoRepository;
+        this.porId = new HashMap<>();
+        this.porPaciente = new IdentityHashMap<>();
+        this.pacienteIndexado = new HashMap<>();
+        this.ingresosPorTipo = new HashMap<>();
+        this.asignadosPorTipo = new HashMap<>();
+        this.tipoIndexado = new HashMap<>();
+        this.costoIndexado = new HashMap<>();
+        this.pacientesHuerfanos = new HashMap<>();
+        this.tratamientosHuerfanos = new HashMap<>();
+        this.conservados = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.lineasSinResolver = new HashMap<>();
+        this.escrituras = new WriteBehindQueue<>(this, this::escribirLineas);
+        asegurarCargado();
+        this.secuencia = new SecuenciaIds(context, "tratamientos_paciente", this::mayorId);
+    }
+
+    public synchronized List<TratamientoPaciente> cargarTodos() {
+        asegurarCargado();
+        return new ArrayList<>(cache);
+    }
+
+    public synchronized List<TratamientoPaciente> cargarPorPaciente(String correoPaciente) {
+        asegurarCargado();
+        Paciente paciente = pacienteRepository.buscarPorCorreo(correoPaciente);
+        if (paciente == null) {
+            paciente = pacientesHuerfanos.get(claveCorreo(correoPaciente));
+        }
+        List<TratamientoPaciente> resultado = paciente != null ? porPaciente.get(paciente) : null;
+        return resultado != null ? new ArrayList<>(resultado) : new ArrayList<>();
+    }
+
+    public synchronized List<TratamientoPaciente> cargarPorEstado(String estado) {
+        asegurarCargado();
+        return cache.stream()
+                .filter(tp -> tp.getEstado().equals(estado))
+                .collect(Collectors.toList());
+    }
+
+    public synchronized TratamientoPaciente guardar(TratamientoPaciente tratamiento) {
+        asegurarCargado();
+        if (tratamiento.getId() == 0) {
+            try {
+                tratamiento.setId(secuencia.siguiente());
+            } catch (IOException e) {
+                Log.e(TAG, "Error al asignar id al tratamiento", e);
+                return null;
+            }
+        }
+        normalizar(tratamiento);
+
+        // Buscar si ya existe uno con el mismo ID y reemplazarlo
+        TratamientoPaciente existente = porId.get(tratamiento.getId());
+        if (existente != null) {
+            desindexar(existente);
+            if (existente != tratamiento) {
+                cache.set(cache.indexOf(existente), tratamiento);
+            }
+            // La línea anterior queda reemplazada por la que se agrega al final
+            lineasObsoletas++;
+        } else {
+            // Si no existe, agregarlo al final
+            cache.add(tratamiento);
+        }
+        indexar(tratamiento);
+        agregarLinea(tratamiento.getId(), formatTratamientoPaciente(tratamiento));
+        return tratamiento;
+    }
+
+    /**
+     * Cambia el estado del registro con el lock del repositorio. Devuelve el estado que tenía,
+     * o null si el registro no existe.
+     */
+    public synchronized String cambiarEstado(int id, String nuevoEstado) {
+        asegurarCargado();
+        TratamientoPaciente existente = porId.get(id);
+        if (existente == null) {
+            return null;
+        }
+        String anterior = existente.getEstado();
+        if (!nuevoEstado.equals(anterior)) {
+            existente.setEstado(nuevoEstado);
+            lineasObsoletas++;
+            agregarLinea(id, formatTratamientoPaciente(existente));
+        }
+        return anterior;
+    }
+
+    public synchronized boolean eliminar(int id) {
+        asegurarCargado();
+        TratamientoPaciente existente = porId.get(id);
+        if (existente == null) {
+            return false;
+        }
+
+        cache.remove(existente);
+        desindexar(existente);
+        // Quedan obsoletas la línea del registro y la propia marca de eliminación
+        lineasObsoletas += 2;
+        agregarLinea(id, TOMBSTONE + "|" + id);
+        return true;
+    }
+
+    /**
+     * Elimina el paciente sin perder sus asignaciones: antes de quitarlo de PacienteRepository
+     * sus líneas se reescriben con el paciente completo y se espera a que estén en disco.
+     * No es synchronized: flush necesita el lock del repositorio, y PacienteRepository se
+     * llama sin tenerlo.
+     */
+    public boolean eliminarPaciente(int idPaciente) {
+        Paciente paciente = pacienteRepository.getPacientePorId(idPaciente).orElse(null);
+        if (paciente == null) {
+            return false;
+        }
+        conservar(paciente);
+        if (!flush() || !pacienteRepository.eliminarPaciente(idPaciente)) {
+            dejarDeConservar(paciente);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Elimina el tratamiento del catálogo sin perder las asignaciones que lo usan, igual que
+     * {@link #eliminarPaciente(int)}. No es synchronized por el mismo motivo.
+     */
+    public boolean eliminarTratamiento(Tratamiento tratamiento) {
+        Tratamiento canonico = tratamientoRepository
+                .getTratamientoPorId(tratamiento.getClass(), tratamiento.getId()).orElse(null);
+        if (canonico == null) {
+            return false;
+        }
+        conservar(canonico);
+        if (!flush() || !tratamientoRepository.eliminarTratamiento(tratamiento)) {
+            dejarDeConservar(canonico);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reescribe completas las líneas de las asignaciones que usan el paciente o tratamiento
+     */
+    private synchronized void conservar(Object referencia) {
+        asegurarCargado();
+        conservados.add(referencia);
+        if (referencia instanceof Paciente) {
+            Paciente paciente = (Paciente) referencia;
+            pacientesHuerfanos.putIfAbsent(claveCorreo(paciente.getCorreo()), paciente);
+        }
+        for (TratamientoPaciente tp : cache) {
+            if (tp.getPaciente() == referencia || tp.getTratamiento() == referencia) {
+                lineasObsoletas++;
+                agregarLinea(tp.getId(), formatTratamientoPaciente(tp));
+            }
+        }
+    }
+
+    /**
+     * La eliminación no se hizo; las líneas ya escritas completas se siguen resolviendo contra
+     * el repositorio y se vuelven a escribir como referencia al compactar
+     */
+    private synchronized void dejarDeConservar(Object referencia) {
+        conservados.remove(referencia);
+        if (referencia instanceof Paciente) {
+            Paciente paciente = (Paciente) referencia;
+            pacientesHuerfanos.remove(claveCorreo(paciente.getCorreo()), paciente);
+        }
+    }
+
+    public synchronized TratamientoPaciente buscarPorId(int id) {
+        asegurarCargado();
+        return porId.get(id);
+    }
+
+    /**
+     * Ingresos acumulados por tipo de tratamiento; se mantienen con cada escritura
+     */
+    public synchronized Map<String, Double> getIngresosPorTipo() {
+        asegurarCargado();
+        Map<String, Double> resultado = new HashMap<>();
+        for (Map.Entry<String, Long> entry : ingresosPorTipo.entrySet()) {
+            resultado.put(entry.getKey(), entry.getValue() / 100.0);
+        }
+        return resultado;
+    }
+
+    public synchronized int getTotalAsignados() {
+        asegurarCargado();
+        return cache.size();
+    }
+
+    /**
+     * Cantidad de pacientes distintos con al menos un tratamiento asignado
+     */
+    public synchronized int getTotalPacientesConTratamientos() {
+        asegurarCargado();
+        return porPaciente.size();
+    }
+
+    /**
+     * Asignaciones, pacientes distintos e ingresos totales leídos juntos, con un solo acceso
+     */
+    public synchronized ResumenAsignaciones getResumen() {
+        asegurarCargado();
+        long ingresos = 0;
+        for (long valor : ingresosPorTipo.values()) {
+            ingresos += valor;
+        }
+        return new ResumenAsignaciones(cache.size(), porPaciente.size(), ingresos / 100.0);
+    }
+
+    /**
+     * Totales de las asignaciones para las estadísticas generales
+     */
+    public static final class ResumenAsignaciones {
+        public final int asignados;
+        public final int pacientes;
+        public final double ingresos;
+
+        ResumenAsignaciones(int asignados, int pacientes, double ingresos) {
+            this.asignados = asignados;
+            this.pacientes = pacientes;
+            this.ingresos = ingresos;
+        }
+    }
+
+    private void asegurarCargado() {
+        if (cache != null) {
+            return;
+        }
+
+        // Lo que falta escribir se agrega antes de volver a leer el archivo
+        escrituras.flushHoldingLock();
+        porId.clear();
+        porPaciente.clear();
+        pacienteIndexado.clear();
+        ingresosPorTipo.clear();
+        asignadosPorTipo.clear();
+        tipoIndexado.clear();
+        costoIndexado.clear();
+        pacientesHuerfanos.clear();
+        tratamientosHuerfanos.clear();
+        lineasSinResolver.clear();
+        cache = leerArchivo();
+        for (TratamientoPaciente tp : cache) {
+            indexar(tp);
+        }
+        programarCompactacion();
+    }
+
+    /**
+     * Mayor id del archivo, incluidas las líneas que no se pudieron resolver; solo se usa para
+     * iniciar la secuencia la primera vez
+     */
+    private int mayorId() {
+        int mayor = 0;
+        for (int id : porId.keySet()) {
+            mayor = Math.max(mayor, id);
+        }
+        for (int id : lineasSinResolver.keySet()) {
+            mayor = Math.max(mayor, id);
+        }
+        return mayor;
     }
 
-    private void loadNextId() {
-        List<TratamientoPaciente> tratamientos = cargarTodos();
-        for (TratamientoPaciente tp : tratamientos) {
-            if (tp.getId() >= nextId) {
-                nextId = tp.getId() + 1;
+    private void indexar(TratamientoPaciente tp) {
+        porId.put(tp.getId(), tp);
+        porPaciente.computeIfAbsent(tp.getPaciente(), k -> new ArrayList<>()).add(tp);
+        pacienteIndexado.put(tp.getId(), tp.getPaciente());
+        String tipo = tp.getTratamiento().getTipo();
+        long costo = tp.getTratamiento().getCostoCentavos();
+        tipoIndexado.put(tp.getId(), tipo);
+        costoIndexado.put(tp.getId(), costo);
+        ingresosPorTipo.merge(tipo, costo, Long::sum);
+        asignadosPorTipo.merge(tipo, 1, Integer::sum);
+    }
+
+    private void desindexar(TratamientoPaciente tp) {
+        porId.remove(tp.getId());
+        Paciente paciente = pacienteIndexado.remove(tp.getId());
+        List<TratamientoPaciente> grupo = paciente != null ? porPaciente.get(paciente) : null;
+        if (grupo != null && grupo.removeIf(item -> item == tp) && grupo.isEmpty()) {
+            porPaciente.remove(paciente);
+        }
+        String tipo = tipoIndexado.remove(tp.getId());
+        Long costo = costoIndexado.remove(tp.getId());
+        if (tipo != null) {
+            if (asignadosPorTipo.merge(tipo, -1, Integer::sum) <= 0) {
+                asignadosPorTipo.remove(tipo);
+                ingresosPorTipo.remove(tipo);
+            } else {
+                ingresosPorTipo.computeIfPresent(tipo, (k, v) -> v - costo);
             }
         }
     }
 
-    public List<TratamientoPaciente> cargarTodos() {
-        List<TratamientoPaciente> tratamientos = new ArrayList<>();
+    /**
+     * Lee el archivo aplicando las líneas en orden: una línea con un id ya visto reemplaza
+     * al registro anterior en su misma posición y una marca de eliminación lo quita.
+     */
+    private List<TratamientoPaciente> leerArchivo() {
+        Map<Integer, TratamientoPaciente> tratamientos = new LinkedHashMap<>();
         File file = new File(context.getFilesDir(), FILE_NAME);
+        lineasObsoletas = 0;
 
         if (!file.exists()) {
-            return tratamientos;
+            return new ArrayList<>();
         }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+        int lineas = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
             String line;
             while ((line = reader.readLine()) != null) {
+                lineas++;
+                if (line.startsWith(TOMBSTONE + "|")) {
+                    try {
+                        int id = Integer.parseInt(line.substring(TOMBSTONE.length() + 1));
+                        tratamientos.remove(id);
+                        lineasSinResolver.remove(id);
+                    } catch (NumberFormatException e) {
+                        Log.e(TAG, "Marca de eliminación inválida: " + line, e);
+                    }
+                    continue;
+                }
                 TratamientoPaciente tratamiento = parseTratamientoPaciente(line);
                 if (tratamiento != null) {
-                    tratamientos.add(tratamiento);
+                    tratamientos.put(tratamiento.getId(), tratamiento);
+                    lineasSinResolver.remove(tratamiento.getId());
                 }
             }
         } catch (IOException e) {
-            Log.e("TratamientoPacienteRepo", "Error al cargar tratamientos", e);
+            Log.e(TAG, "Error al cargar tratamientos", e);
         }
 
-        return tratamientos;
+        lineasObsoletas = lineas - tratamientos.size() - lineasSinResolver.size();
+        return new ArrayList<>(tratamientos.values());
     }
 
-    public List<TratamientoPaciente> cargarPorPaciente(String correoPaciente) {
-        return cargarTodos().stream()
-                .filter(tp -> tp.getPaciente().getCorreo().equals(correoPaciente))
-                .collect(Collectors.toList());
+    /**
+     * Espera a que todos los cambios hechos hasta ahora estén en disco. Bloquea, así que no
+     * debe llamarse desde el hilo principal. Devuelve false si la escritura falló.
+     * No es synchronized: el hilo de escritura necesita el lock del repositorio.
+     *
+     * Los métodos que modifican datos devuelven true cuando el cambio quedó en memoria y
+     * encolado; se escribe después en segundo plano y una falla de disco solo se informa aquí
+     * o en {@link #flush(Consumer)}. Mientras tanto el cambio se sigue reintentando.
+     */
+    public boolean flush() {
+        return escrituras.flush();
     }
 
-    public List<TratamientoPaciente> cargarPorEstado(String estado) {
-        return cargarTodos().stream()
-                .filter(tp -> tp.getEstado().equals(estado))
-                .collect(Collectors.toList());
+    /**
+     * Escribe ya los cambios pendientes sin esperar; {@code alTerminar} recibe si quedaron en disco
+     */
+    public void flush(Consumer<Boolean> alTerminar) {
+        escrituras.flush(alTerminar);
     }
 
-    public TratamientoPaciente guardar(TratamientoPaciente tratamiento) {
-        if (tratamiento.getId() == 0) {
-            tratamiento.setId(nextId++);
-        }
+    /**
+     * Encola la línea del registro. Si el mismo id cambia varias veces antes de escribir, solo
+     * se agrega la última línea.
+     */
+    private void agregarLinea(int id, String linea) {
+        escrituras.enqueue(id, linea);
+        programarCompactacion();
+    }
 
-        List<TratamientoPaciente> tratamientos = cargarTodos();
-        
-        // Buscar si ya existe uno con el mismo ID y reemplazarlo
-        for (int i = 0; i < tratamientos.size(); i++) {
-            if (tratamientos.get(i).getId() == tratamiento.getId()) {
-                tratamientos.set(i, tratamiento);
-                guardarTodos(tratamientos);
-                return tratamiento;
+    /**
+     * Agrega un lote de líneas al final del archivo con una sola escritura, sin reescribir el
+     * resto. Se ejecuta en el hilo de escritura con el lock del repositorio tomado.
+     */
+    private void escribirLineas(List<String> lineas) throws IOException {
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        long largoAnterior = file.length();
+        try (FileOutputStream fos = new FileOutputStream(file, true)) {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8));
+            // Una escritura interrumpida pudo dejar la última línea sin salto de línea; se cierra
+            // para que la primera línea del lote no quede pegada a ella
+            if (largoAnterior > 0 && !terminaEnSaltoDeLinea(file, largoAnterior)) {
+                writer.newLine();
+            }
+            for (String linea : lineas) {
+                writer.write(linea);
+                writer.newLine();
             }
+            writer.flush();
+            fos.getFD().sync();
+        } catch (IOException e) {
+            // El lote vuelve completo a la cola: se quita lo que alcanzó a escribirse para no
+            // duplicarlo ni dejar una línea a medias
+            truncar(file, largoAnterior);
+            throw e;
         }
+    }
 
-        // Si no existe, agregarlo al final
-        tratamientos.add(tratamiento);
-        guardarTodos(tratamientos);
-        return tratamiento;
+    private static boolean terminaEnSaltoDeLinea(File file, long largo) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(largo - 1);
+            return raf.read() == '\n';
+        }
     }
 
-    public boolean eliminar(int id) {
-        List<TratamientoPaciente> tratamientos = cargarTodos();
-        boolean eliminado = tratamientos.removeIf(tp -> tp.getId() == id);
-        
-        if (eliminado) {
-            guardarTodos(tratamientos);
+    private static void truncar(File file, long largo) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            if (raf.length() > largo) {
+                raf.setLength(largo);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "No se pudo descartar el lote incompleto", e);
         }
-        
-        return eliminado;
     }
 
-    public TratamientoPaciente buscarPorId(int id) {
-        return cargarTodos().stream()
-                .filter(tp -> tp.getId() == id)
-                .findFirst()
-                .orElse(null);
+    /**
+     * Programa la compactación en segundo plano cuando las líneas obsoletas superan el umbral
+     * y además son al menos tantas como los registros vigentes, o cuando quedan líneas en el
+     * formato antiguo por normalizar.
+     */
+    private void programarCompactacion() {
+        boolean muchasObsoletas = lineasObsoletas >= UMBRAL_COMPACTACION && lineasObsoletas >= cache.size();
+        if (compactacionPendiente || !(muchasObsoletas || formatoAntiguo)) {
+            return;
+        }
+        compactacionPendiente = true;
+        compactador.execute(this::compactar);
     }
 
-    private void guardarTodos(List<TratamientoPaciente> tratamientos) {
+    /**
+     * Reescribe el archivo sólo con los registros vigentes. Se escribe en un archivo temporal
+     * que luego reemplaza al original, así una interrupción no deja el archivo a medias.
+     */
+    private synchronized void compactar() {
+        compactacionPendiente = false;
+        if (cache == null) {
+            return;
+        }
+
         File file = new File(context.getFilesDir(), FILE_NAME);
+        File temp = new File(context.getFilesDir(), TEMP_FILE_NAME);
 
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file, false))) {
-            for (TratamientoPaciente tratamiento : tratamientos) {
+        try (FileOutputStream fos = new FileOutputStream(temp, false)) {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8));
+            for (TratamientoPaciente tratamiento : cache) {
                 writer.write(formatTratamientoPaciente(tratamiento));
                 writer.newLine();
             }
+            for (String linea : lineasSinResolver.values()) {
+                writer.write(linea);
+                writer.newLine();
+            }
+            writer.flush();
+            // El temporal tiene que estar en disco antes de reemplazar al original
+            fos.getFD().sync();
         } catch (IOException e) {
-            Log.e("TratamientoPacienteRepo", "Error al guardar tratamientos", e);
+            Log.e(TAG, "Error al compactar tratamientos", e);
+            temp.delete();
+            return;
+        }
+
+        if (temp.renameTo(file)) {
+            FileStorageManager.syncDirectory(context.getFilesDir());
+            lineasObsoletas = 0;
+            formatoAntiguo = false;
+            // El archivo ya refleja el cache completo, incluidas las líneas que faltaba escribir
+            escrituras.discardPending();
+            Log.d(TAG, "Archivo de tratamientos compactado: " + cache.size() + " registros");
+        } else {
+            Log.e(TAG, "No se pudo reemplazar el archivo de tratamientos");
+            temp.delete();
         }
     }
 
+    /**
+     * Reemplaza el paciente y el tratamiento por sus instancias canónicas. Un tratamiento
+     * creado para la asignación que no está en el catálogo queda fuera de él.
+     */
+    private void normalizar(TratamientoPaciente tp) {
+        Optional<Paciente> paciente = pacienteRepository.getPacientePorId(tp.getPaciente().getId());
+        if (paciente.isPresent()) {
+            tp.setPaciente(paciente.get());
+        }
+        tp.setTratamiento(resolverEnCatalogo(tp.getTratamiento()));
+    }
+
+    /**
+     * Instancia del catálogo con el mismo id o, si no, con la misma definición. Sin ninguna se
+     * usa una sola instancia por definición, sin agregarla al catálogo: el catálogo es la
+     * lista de la que elige el usuario.
+     */
+    private Tratamiento resolverEnCatalogo(Tratamiento tratamiento) {
+        if (tratamiento.getId() > 0) {
+            Optional<Tratamiento> existente =
+                    tratamientoRepository.getTratamientoPorId(tratamiento.getClass(), tratamiento.getId());
+            if (existente.isPresent()) {
+                return existente.get();
+            }
+        }
+        Optional<Tratamiento> equivalente = tratamientoRepository.buscarEquivalente(tratamiento);
+        if (equivalente.isPresent()) {
+            return equivalente.get();
+        }
+        Tratamiento huerfano = tratamientosHuerfanos.putIfAbsent(formatTratamiento(tratamiento), tratamiento);
+        return huerfano != null ? huerfano : tratamiento;
+    }
+
+    private boolean esCanonico(Paciente paciente) {
+        return !conservados.contains(paciente)
+                && pacienteRepository.getPacientePorId(paciente.getId()).orElse(null) == paciente;
+    }
+
+    private boolean esCanonico(Tratamiento tratamiento) {
+        return !conservados.contains(tratamiento) && tratamiento.getId() > 0
+                && tratamientoRepository.getTratamientoPorId(tratamiento.getClass(), tratamiento.getId())
+                .orElse(null) == tratamiento;
+    }
+
     private String formatTratamientoPaciente(TratamientoPaciente tp) {
-        String pacienteData = formatPaciente(tp.getPaciente());
-        String tratamientoData = formatTratamiento(tp.getTratamiento());
+        // Sólo los pacientes y tratamientos que no están en su repositorio se guardan completos
+        String pacienteData = esCanonico(tp.getPaciente())
+                ? String.valueOf(tp.getPaciente().getId())
+                : formatPaciente(tp.getPaciente());
+        String tratamientoData = esCanonico(tp.getTratamiento())
+                ? tp.getTratamiento().getClass().getSimpleName() + ";" + tp.getTratamiento().getId()
+                : formatTratamiento(tp.getTratamiento());
         String fecha = tp.getFechaAsignacion() != null ? 
                       tp.getFechaAsignacion().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) : "";
         
@@ -146,21 +643,24 @@ public class TratamientoPacienteRepository {
     }
 
     private String formatTratamiento(Tratamiento tratamiento) {
-        String tipo = tratamiento.getClass().getSimpleName();
-        return tipo + ";" + tratamiento.getNombre() + ";" + 
+        return tratamiento.getClass().getSimpleName() + ";" + tratamiento.getNombre() + ";" +
                tratamiento.getDuracion() + ";" + tratamiento.getPrecio();
     }
 
     private TratamientoPaciente parseTratamientoPaciente(String line) {
         try {
-            String[] parts = line.split("\\|");
+            String[] parts = line.split("\\|", -1);
             if (parts.length != 6) return null;
 
             int id = Integer.parseInt(parts[0]);
-            Paciente paciente = parsePaciente(parts[1]);
-            Tratamiento tratamiento = parseTratamiento(parts[2]);
+            Paciente paciente = resolverPaciente(parts[1]);
+            Tratamiento tratamiento = resolverTratamiento(parts[2]);
             
-            if (paciente == null || tratamiento == null) return null;
+            if (paciente == null || tratamiento == null) {
+                // Referencia a un paciente o tratamiento eliminado
+                lineasSinResolver.put(id, line);
+                return null;
+            }
 
             LocalDateTime fecha = parts[3].isEmpty() ? null : 
                                  LocalDateTime.parse(parts[3], DateTimeFormatter.ISO_LOCAL_DATE_TIME);
@@ -170,11 +670,69 @@ public class TratamientoPacienteRepository {
             return new TratamientoPaciente(id, paciente, tratamiento, fecha, estado, observaciones);
 
         } catch (Exception e) {
-            Log.e("TratamientoPacienteRepo", "Error parseando línea: " + line, e);
+            Log.e(TAG, "Error parseando línea: " + line, e);
             return null;
         }
     }
 
+    /**
+     * Resuelve la referencia al paciente. Las líneas antiguas traen el paciente completo:
+     * se busca por id (con el mismo correo) o por correo y, si ya no existe, se conserva
+     * una sola instancia por paciente.
+     */
+    private Paciente resolverPaciente(String pacienteData) {
+        if (pacienteData.indexOf(';') < 0) {
+            return pacienteRepository.getPacientePorId(Integer.parseInt(pacienteData)).orElse(null);
+        }
+
+        Paciente embebido = parsePaciente(pacienteData);
+        if (embebido == null) return null;
+
+        Optional<Paciente> canonico = pacienteRepository.getPacientePorId(embebido.getId());
+        if (!canonico.isPresent() || !embebido.getCorreo().equalsIgnoreCase(canonico.get().getCorreo())) {
+            canonico = pacienteRepository.getPacientePorCorreo(embebido.getCorreo());
+        }
+        if (canonico.isPresent()) {
+            formatoAntiguo = true;
+            return canonico.get();
+        }
+
+        Paciente huerfano = pacientesHuerfanos.get(claveCorreo(embebido.getCorreo()));
+        if (huerfano == null) {
+            huerfano = embebido;
+            pacientesHuerfanos.put(claveCorreo(embebido.getCorreo()), huerfano);
+        }
+        return huerfano;
+    }
+
+    /**
+     * Resuelve la referencia "tipo;id" al catálogo. Un tratamiento guardado completo se asocia
+     * al equivalente del catálogo si existe; si no, se conserva fuera del catálogo.
+     */
+    private Tratamiento resolverTratamiento(String tratamientoData) {
+        String[] parts = tratamientoData.split(";");
+        if (parts.length == 2) {
+            Class<? extends Tratamiento> tipo = claseDeTipo(parts[0]);
+            if (tipo == null) return null;
+            int id = Integer.parseInt(parts[1]);
+            Tratamiento tratamiento = tratamientoRepository.getTratamientoPorId(tipo, id).orElse(null);
+            if (tratamiento != null && tratamiento.getId() != id) {
+                // Referencia con el id anterior a unificar el catálogo; se reescribe al compactar
+                formatoAntiguo = true;
+            }
+            return tratamiento;
+        }
+
+        Tratamiento embebido = parseTratamiento(tratamientoData);
+        if (embebido == null) return null;
+        Tratamiento tratamiento = resolverEnCatalogo(embebido);
+        if (tratamiento.getId() > 0) {
+            // Está en el catálogo: se reescribe como referencia al compactar
+            formatoAntiguo = true;
+        }
+        return tratamiento;
+    }
+
     private Paciente parsePaciente(String pacienteData) {
         try {
             String[] parts = pacienteData.split(";");
@@ -187,12 +745,10 @@ public class TratamientoPacienteRepository {
             String cedula = parts[4];
             String tipoSeguroStr = parts[5];
 
-            // Crear paciente temporal (no necesitamos el completo)
-            return new Paciente(id, nombre, apellido, correo, cedula, 
-                              com.example.hospital.data.models.TipoSeguro.valueOf(tipoSeguroStr));
+            return new Paciente(id, nombre, apellido, correo, cedula, TipoSeguro.valueOf(tipoSeguroStr));
 
         } catch (Exception e) {
-            Log.e("TratamientoPacienteRepo", "Error parseando paciente: " + pacienteData, e);
+            Log.e(TAG, "Error parseando paciente: " + pacienteData, e);
             return null;
         }
     }
@@ -209,23 +765,41 @@ public class TratamientoPacienteRepository {
 
             switch (tipo) {
                 case "Medicacion":
-                    return new com.example.hospital.data.models.Medicacion(nombre, duracion, precio);
+                    return new Medicacion(nombre, duracion, precio);
                 case "Cirugia":
-                    return new com.example.hospital.data.models.Cirugia(nombre, duracion, precio);
+                    return new Cirugia(nombre, duracion, precio);
                 case "Terapia":
-                    return new com.example.hospital.data.models.Terapia(nombre, duracion, precio);
+                    return new Terapia(nombre, duracion, precio);
                 default:
                     return null;
             }
 
         } catch (Exception e) {
-            Log.e("TratamientoPacienteRepo", "Error parseando tratamiento: " + tratamientoData, e);
+            Log.e(TAG, "Error parseando tratamiento: " + tratamientoData, e);
             return null;
         }
     }
 
-    public List<String> getPacientesConTratamientos() {
-        return cargarTodos().stream()
+    private static Class<? extends Tratamiento> claseDeTipo(String tipo) {
+        switch (tipo) {
+            case "Medicacion":
+                return Medicacion.class;
+            case "Cirugia":
+                return Cirugia.class;
+            case "Terapia":
+                return Terapia.class;
+            default:
+                return null;
+        }
+    }
+
+    private static String claveCorreo(String correo) {
+        return correo == null ? null : correo.toLowerCase(Locale.ROOT);
+    }
+
+    public synchronized List<String> getPacientesConTratamientos() {
+        asegurarCargado();
+        return cache.stream()
                 .map(tp -> tp.getPaciente().getNombre() + " " + tp.getPaciente().getApellido() + 
                            " (" + tp.getPaciente().getCorreo() + ")")
                 .distinct()
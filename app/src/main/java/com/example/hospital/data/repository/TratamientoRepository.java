@@ -1,65 +1,108 @@
 package com.example.hospital.data.repository;
 
 import android.content.Context;
+import android.util.Log;
 
 import com.example.hospital.data.models.Cirugia;
 import com.example.hospital.data.models.Medicacion;
 import com.example.hospital.data.models.Terapia;
 import com.example.hospital.data.models.Tratamiento;
+import com.example.hospital.data.storage.BinaryCodecs;
 import com.example.hospital.data.storage.FileStorageManager;
+import com.example.hospital.data.storage.FileStorageManager.JournalOp;
+import com.example.hospital.data.storage.SecuenciaIds;
+import com.example.hospital.data.storage.WriteBehindQueue;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 
+/**
+ * Catálogo de tratamientos. Todos los tipos comparten un único archivo y una única secuencia
+ * de ids, así cada tratamiento se ubica por id sin recorrer el catálogo.
+ */
 public class TratamientoRepository {
-    // Archivos separados para cada tipo de tratamiento
+    private static final String TAG = "TratamientoRepository";
+    private static final String TRATAMIENTOS_FILE = "tratamientos.dat";
+    // Ids anteriores a la unificación que cambiaron al migrar: "Tipo;idAnterior;idNuevo"
+    private static final String ALIAS_FILE = "tratamientos_alias.dat";
+    // Archivos de la versión anterior, uno por tipo, con ids propios de cada tipo
     private static final String CIRUGIAS_FILE = "cirugias.dat";
     private static final String MEDICACIONES_FILE = "medicaciones.dat";
     private static final String TERAPIAS_FILE = "terapias.dat";
-    
+
     private final FileStorageManager storageManager;
-    private List<Cirugia> cirugiasCache;
-    private List<Medicacion> medicacionesCache;
-    private List<Terapia> terapiasCache;
+    private final SecuenciaIds secuencia;
+    // Los cambios se escriben en lotes en segundo plano
+    private final WriteBehindQueue<byte[]> escrituras;
+    // Catálogo completo por id, en el orden en que se registraron
+    private final Map<Integer, Tratamiento> catalogo;
+    // Vista de cada tipo sobre el catálogo, también por id
+    private final Map<Class<? extends Tratamiento>, Map<Integer, Tratamiento>> porTipo;
+    // "Tipo;idAnterior" -> id en el catálogo unificado
+    private final Map<String, Integer> alias;
+
+    // Índices ordenados sobre todo el catálogo (los tres tipos); cada clave agrupa los
+    // tratamientos con ese valor en el orden en que se indexaron
+    private final TreeMap<Double, List<Tratamiento>> porPrecio;
+    private final TreeMap<Integer, List<Tratamiento>> porDuracion;
+    // Por costo en centavos
+    private final TreeMap<Long, List<Tratamiento>> porCosto;
+    // Suma de los costos de todo el catálogo en centavos, para el promedio
+    private long sumaCostos;
 
     public TratamientoRepository(Context context) {
         this.storageManager = new FileStorageManager(context);
-        this.cirugiasCache = new ArrayList<>();
-        this.medicacionesCache = new ArrayList<>();
-        this.terapiasCache = new ArrayList<>();
+        this.catalogo = new LinkedHashMap<>();
+        this.porTipo = new HashMap<>();
+        this.porTipo.put(Cirugia.class, new LinkedHashMap<>());
+        this.porTipo.put(Medicacion.class, new LinkedHashMap<>());
+        this.porTipo.put(Terapia.class, new LinkedHashMap<>());
+        this.alias = new HashMap<>();
+        this.porPrecio = new TreeMap<>();
+        this.porDuracion = new TreeMap<>();
+        this.porCosto = new TreeMap<>();
+        this.escrituras = storageManager.createJournalQueue(TRATAMIENTOS_FILE, BinaryCodecs.TRATAMIENTO, this,
+                () -> catalogo.values());
         cargarTratamientos();
+        this.secuencia = new SecuenciaIds(context, "tratamientos", this::mayorId);
     }
 
     // Métodos generales que retornan todos los tratamientos polimórficamente
-    public List<Tratamiento> getAllTratamientos() {
-        List<Tratamiento> todos = new ArrayList<>();
-        todos.addAll(cirugiasCache);
-        todos.addAll(medicacionesCache);
-        todos.addAll(terapiasCache);
+    public synchronized List<Tratamiento> getAllTratamientos() {
+        List<Tratamiento> todos = new ArrayList<>(catalogo.size());
+        todos.addAll(porTipo.get(Cirugia.class).values());
+        todos.addAll(porTipo.get(Medicacion.class).values());
+        todos.addAll(porTipo.get(Terapia.class).values());
         return todos;
     }
 
-    public List<Tratamiento> getTratamientosPorTipo(String tipo) {
+    public synchronized List<Tratamiento> getTratamientosPorTipo(String tipo) {
         List<Tratamiento> resultado = new ArrayList<>();
         switch (tipo) {
             case "Cirugía":
-                resultado.addAll(cirugiasCache);
+                resultado.addAll(porTipo.get(Cirugia.class).values());
                 break;
             case "Medicación":
-                resultado.addAll(medicacionesCache);
+                resultado.addAll(porTipo.get(Medicacion.class).values());
                 break;
             case "Terapia":
-                resultado.addAll(terapiasCache);
+                resultado.addAll(porTipo.get(Terapia.class).values());
                 break;
         }
         return resultado;
     }
 
-    public List<Tratamiento> buscarTratamientos(String termino) {
+    public synchronized List<Tratamiento> buscarTratamientos(String termino) {
         List<Tratamiento> resultado = new ArrayList<>();
         String terminoLower = termino.toLowerCase();
-        
+
         for (Tratamiento tratamiento : getAllTratamientos()) {
             if (tratamiento.getNombre().toLowerCase().contains(terminoLower)) {
                 resultado.add(tratamiento);
@@ -68,150 +111,261 @@ public class TratamientoRepository {
         return resultado;
     }
 
-    public List<Tratamiento> getTratamientosPorPrecioMaximo(double precioMax) {
-        List<Tratamiento> resultado = new ArrayList<>();
-        for (Tratamiento tratamiento : getAllTratamientos()) {
-            if (tratamiento.getPrecio() <= precioMax) {
-                resultado.add(tratamiento);
-            }
+    /**
+     * Tratamientos con precio menor o igual al indicado, ordenados por precio
+     */
+    public synchronized List<Tratamiento> getTratamientosPorPrecioMaximo(double precioMax) {
+        return valores(porPrecio.headMap(precioMax, true).values());
+    }
+
+    /**
+     * Tratamientos con duración menor o igual a la indicada, ordenados por duración
+     */
+    public synchronized List<Tratamiento> getTratamientosPorDuracionMaxima(int duracionMax) {
+        return valores(porDuracion.headMap(duracionMax, true).values());
+    }
+
+    public synchronized Optional<Tratamiento> getTratamientoPorId(int id) {
+        return Optional.ofNullable(catalogo.get(id));
+    }
+
+    /**
+     * Busca un tratamiento del catálogo por su tipo y su id. Las referencias guardadas antes de
+     * unificar el catálogo usan el id propio del tipo; si ese id cambió al migrar se resuelve
+     * por el alias.
+     */
+    public synchronized Optional<Tratamiento> getTratamientoPorId(Class<? extends Tratamiento> tipo, int id) {
+        Tratamiento tratamiento = catalogo.get(id);
+        if (tratamiento != null && tratamiento.getClass() == tipo) {
+            return Optional.of(tratamiento);
         }
-        return resultado;
+        Integer idNuevo = alias.get(claveAlias(tipo, id));
+        return idNuevo != null ? Optional.ofNullable(catalogo.get(idNuevo)) : Optional.empty();
     }
 
-    public List<Tratamiento> getTratamientosPorDuracionMaxima(int duracionMax) {
-        List<Tratamiento> resultado = new ArrayList<>();
-        for (Tratamiento tratamiento : getAllTratamientos()) {
-            if (tratamiento.getDuracion() <= duracionMax) {
-                resultado.add(tratamiento);
+    /**
+     * Busca en el catálogo un tratamiento del mismo tipo con el mismo nombre, duración y precio.
+     */
+    public synchronized Optional<Tratamiento> buscarEquivalente(Tratamiento tratamiento) {
+        Map<Integer, Tratamiento> delTipo = porTipo.get(tratamiento.getClass());
+        if (delTipo == null) {
+            return Optional.empty();
+        }
+        for (Tratamiento existente : delTipo.values()) {
+            if (existente.getNombre().equals(tratamiento.getNombre())
+                    && existente.getDuracion() == tratamiento.getDuracion()
+                    && Double.compare(existente.getPrecio(), tratamiento.getPrecio()) == 0) {
+                return Optional.of(existente);
             }
         }
-        return resultado;
+        return Optional.empty();
     }
 
     // Métodos específicos para cada tipo
-    public List<Cirugia> getAllCirugias() {
-        return new ArrayList<>(cirugiasCache);
+    public synchronized List<Cirugia> getAllCirugias() {
+        return delTipo(Cirugia.class);
     }
 
-    public List<Medicacion> getAllMedicaciones() {
-        return new ArrayList<>(medicacionesCache);
+    public synchronized List<Medicacion> getAllMedicaciones() {
+        return delTipo(Medicacion.class);
     }
 
-    public List<Terapia> getAllTerapias() {
-        return new ArrayList<>(terapiasCache);
+    public synchronized List<Terapia> getAllTerapias() {
+        return delTipo(Terapia.class);
+    }
+
+    private <T extends Tratamiento> List<T> delTipo(Class<T> tipo) {
+        List<T> resultado = new ArrayList<>();
+        for (Tratamiento tratamiento : porTipo.get(tipo).values()) {
+            resultado.add(tipo.cast(tratamiento));
+        }
+        return resultado;
     }
 
     // Métodos para guardar tratamientos polimórficos
-    public boolean guardarTratamiento(Tratamiento tratamiento) {
+    public synchronized boolean guardarTratamiento(Tratamiento tratamiento) {
         try {
-            if (tratamiento instanceof Cirugia) {
-                Cirugia cirugia = (Cirugia) tratamiento;
-                cirugia.setnuevoId(cirugiasCache.size() + 1);
-                cirugiasCache.add(cirugia);
-                return guardarCambiosCirugias();
-            } else if (tratamiento instanceof Medicacion) {
-                Medicacion medicacion = (Medicacion) tratamiento;
-                medicacion.setnuevoId(medicacionesCache.size() + 1);
-                medicacionesCache.add(medicacion);
-                return guardarCambiosMedicaciones();
-            } else if (tratamiento instanceof Terapia) {
-                Terapia terapia = (Terapia) tratamiento;
-                terapia.setnuevoId(terapiasCache.size() + 1);
-                terapiasCache.add(terapia);
-                return guardarCambiosTerapias();
+            if (!porTipo.containsKey(tratamiento.getClass())) {
+                return false;
             }
-            return false;
+            tratamiento.setnuevoId(secuencia.siguiente());
+            agregarAlCatalogo(tratamiento);
+            return guardarCambios(JournalOp.UPSERT, tratamiento);
         } catch (Exception e) {
             e.printStackTrace();
             return false;
         }
     }
 
-    public boolean actualizarTratamiento(Tratamiento tratamiento) {
+    /**
+     * Reemplaza el tratamiento con el mismo id. El tipo no puede cambiar porque las
+     * asignaciones guardan la referencia como "Tipo;id".
+     */
+    public synchronized boolean actualizarTratamiento(Tratamiento tratamiento) {
         try {
-            if (tratamiento instanceof Cirugia) {
-                return actualizarCirugia((Cirugia) tratamiento);
-            } else if (tratamiento instanceof Medicacion) {
-                return actualizarMedicacion((Medicacion) tratamiento);
-            } else if (tratamiento instanceof Terapia) {
-                return actualizarTerapia((Terapia) tratamiento);
+            Tratamiento existente = catalogo.get(tratamiento.getId());
+            if (existente == null || existente.getClass() != tratamiento.getClass()) {
+                return false;
             }
-            return false;
+            quitarDelCatalogo(existente);
+            agregarAlCatalogo(tratamiento);
+            return guardarCambios(JournalOp.UPSERT, tratamiento);
         } catch (Exception e) {
             e.printStackTrace();
             return false;
         }
     }
 
-    public boolean eliminarTratamiento(Tratamiento tratamiento) {
+    public synchronized boolean eliminarTratamiento(Tratamiento tratamiento) {
         try {
-            if (tratamiento instanceof Cirugia) {
-                boolean resultado = cirugiasCache.remove(tratamiento);
-                if (resultado) guardarCambiosCirugias();
-                return resultado;
-            } else if (tratamiento instanceof Medicacion) {
-                boolean resultado = medicacionesCache.remove(tratamiento);
-                if (resultado) guardarCambiosMedicaciones();
-                return resultado;
-            } else if (tratamiento instanceof Terapia) {
-                boolean resultado = terapiasCache.remove(tratamiento);
-                if (resultado) guardarCambiosTerapias();
-                return resultado;
+            Tratamiento existente = catalogo.get(tratamiento.getId());
+            if (existente == null || existente.getClass() != tratamiento.getClass()) {
+                return false;
             }
-            return false;
+            quitarDelCatalogo(existente);
+            guardarCambios(JournalOp.DELETE, existente);
+            return true;
         } catch (Exception e) {
             e.printStackTrace();
             return false;
         }
     }
 
-    // Métodos de actualización específicos
-    private boolean actualizarCirugia(Cirugia cirugia) {
-        for (int i = 0; i < cirugiasCache.size(); i++) {
-            if (cirugiasCache.get(i).hashCode() == cirugia.hashCode()) {
-                cirugiasCache.set(i, cirugia);
-                return guardarCambiosCirugias();
+    private void agregarAlCatalogo(Tratamiento tratamiento) {
+        // Un reemplazo conserva la posición que el id ya tenía en el catálogo
+        catalogo.put(tratamiento.getId(), tratamiento);
+        porTipo.get(tratamiento.getClass()).put(tratamiento.getId(), tratamiento);
+        indexar(tratamiento);
+    }
+
+    private void quitarDelCatalogo(Tratamiento tratamiento) {
+        catalogo.remove(tratamiento.getId());
+        porTipo.get(tratamiento.getClass()).remove(tratamiento.getId());
+        desindexar(tratamiento);
+    }
+
+    // Métodos de carga y guardado
+    private void cargarTratamientos() {
+        List<Tratamiento> tratamientos;
+        try {
+            if (!storageManager.fileExists(TRATAMIENTOS_FILE) && hayArchivosPorTipo()) {
+                migrarArchivosPorTipo();
             }
+            tratamientos = storageManager.loadJournaled(TRATAMIENTOS_FILE, Tratamiento::getId,
+                    BinaryCodecs.TRATAMIENTO);
+            cargarAlias();
+            // Si el proceso murió después de migrar, los archivos anteriores siguen ahí
+            borrarArchivosPorTipo();
+        } catch (Exception e) {
+            // Se sigue sin el catálogo guardado; el archivo no se compacta hasta repararlo
+            Log.e(TAG, "No se pudo cargar el catálogo de tratamientos", e);
+            tratamientos = new ArrayList<>();
         }
-        return false;
+        for (Tratamiento tratamiento : tratamientos) {
+            if (porTipo.containsKey(tratamiento.getClass()) && !catalogo.containsKey(tratamiento.getId())) {
+                agregarAlCatalogo(tratamiento);
+            }
+        }
+    }
+
+    private boolean hayArchivosPorTipo() {
+        return storageManager.fileExists(CIRUGIAS_FILE)
+                || storageManager.fileExists(MEDICACIONES_FILE)
+                || storageManager.fileExists(TERAPIAS_FILE);
     }
 
-    private boolean actualizarMedicacion(Medicacion medicacion) {
-        for (int i = 0; i < medicacionesCache.size(); i++) {
-            if (medicacionesCache.get(i).hashCode() == medicacion.hashCode()) {
-                medicacionesCache.set(i, medicacion);
-                return guardarCambiosMedicaciones();
+    /**
+     * Une cirugias.dat, medicaciones.dat y terapias.dat en tratamientos.dat. Cada tratamiento
+     * conserva su id si ningún otro lo tomó antes; si no, recibe uno nuevo por encima de todos
+     * los anteriores y el id viejo queda como alias. Primero se escriben los alias y el
+     * catálogo, y solo después se borran los archivos anteriores.
+     */
+    private void migrarArchivosPorTipo() throws Exception {
+        List<Tratamiento> anteriores = new ArrayList<>();
+        anteriores.addAll(storageManager.loadList(CIRUGIAS_FILE, BinaryCodecs.CIRUGIA));
+        anteriores.addAll(storageManager.loadList(MEDICACIONES_FILE, BinaryCodecs.MEDICACION));
+        anteriores.addAll(storageManager.loadList(TERAPIAS_FILE, BinaryCodecs.TERAPIA));
+
+        int siguienteId = 1;
+        for (Tratamiento tratamiento : anteriores) {
+            siguienteId = Math.max(siguienteId, tratamiento.getId() + 1);
+        }
+
+        Map<Integer, Tratamiento> unificado = new LinkedHashMap<>();
+        List<String> aliasNuevos = new ArrayList<>();
+        for (Tratamiento tratamiento : anteriores) {
+            int idAnterior = tratamiento.getId();
+            if (idAnterior <= 0 || unificado.containsKey(idAnterior)) {
+                tratamiento.setnuevoId(siguienteId++);
+                aliasNuevos.add(claveAlias(tratamiento.getClass(), idAnterior) + ";" + tratamiento.getId());
             }
+            unificado.put(tratamiento.getId(), tratamiento);
         }
-        return false;
+
+        storageManager.saveList(ALIAS_FILE, aliasNuevos);
+        storageManager.compact(TRATAMIENTOS_FILE, unificado.values(), BinaryCodecs.TRATAMIENTO);
     }
 
-    private boolean actualizarTerapia(Terapia terapia) {
-        for (int i = 0; i < terapiasCache.size(); i++) {
-            if (terapiasCache.get(i).hashCode() == terapia.hashCode()) {
-                terapiasCache.set(i, terapia);
-                return guardarCambiosTerapias();
-            }
+    @SuppressWarnings("unchecked")
+    private void cargarAlias() throws Exception {
+        if (!storageManager.fileExists(ALIAS_FILE)) {
+            return;
+        }
+        for (Object linea : storageManager.loadList(ALIAS_FILE)) {
+            String[] partes = ((String) linea).split(";");
+            alias.put(partes[0] + ";" + partes[1], Integer.parseInt(partes[2]));
         }
-        return false;
     }
 
-    // Métodos de carga y guardado
-    private void cargarTratamientos() {
-        try {
-            cirugiasCache = storageManager.loadList(CIRUGIAS_FILE);
-            medicacionesCache = storageManager.loadList(MEDICACIONES_FILE);
-            terapiasCache = storageManager.loadList(TERAPIAS_FILE);
-        } catch (Exception e) {
-            cirugiasCache = new ArrayList<>();
-            medicacionesCache = new ArrayList<>();
-            terapiasCache = new ArrayList<>();
+    private void borrarArchivosPorTipo() {
+        storageManager.deleteFile(CIRUGIAS_FILE);
+        storageManager.deleteFile(MEDICACIONES_FILE);
+        storageManager.deleteFile(TERAPIAS_FILE);
+        // Secuencias de ids por tipo, reemplazadas por la del catálogo unificado
+        storageManager.deleteFile("cirugias.seq");
+        storageManager.deleteFile("medicaciones.seq");
+        storageManager.deleteFile("terapias.seq");
+    }
+
+    private static String claveAlias(Class<?> tipo, int id) {
+        return tipo.getSimpleName() + ";" + id;
+    }
+
+    private int mayorId() {
+        int mayor = 0;
+        for (int id : catalogo.keySet()) {
+            mayor = Math.max(mayor, id);
+        }
+        for (int id : alias.values()) {
+            mayor = Math.max(mayor, id);
         }
+        return mayor;
     }
 
-    private boolean guardarCambiosCirugias() {
+    /**
+     * Espera a que todos los cambios hechos hasta ahora estén en disco. Bloquea, así que no
+     * debe llamarse desde el hilo principal. Devuelve false si la escritura falló.
+     * No es synchronized: el hilo de escritura necesita el lock del repositorio.
+     *
+     * Los métodos que modifican datos devuelven true cuando el cambio quedó en memoria y
+     * encolado; se escribe después en segundo plano y una falla de disco solo se informa aquí
+     * o en {@link #flush(Consumer)}. Mientras tanto el cambio se sigue reintentando.
+     */
+    public boolean flush() {
+        return escrituras.flush();
+    }
+
+    /**
+     * Escribe ya los cambios pendientes sin esperar; {@code alTerminar} recibe si quedaron en disco
+     */
+    public void flush(Consumer<Boolean> alTerminar) {
+        escrituras.flush(alTerminar);
+    }
+
+    private boolean guardarCambios(JournalOp op, Tratamiento tratamiento) {
         try {
-            storageManager.saveList(CIRUGIAS_FILE, cirugiasCache);
+            byte[] registro = storageManager.encodeJournalRecord(op, tratamiento.getId(), tratamiento, BinaryCodecs.TRATAMIENTO);
+            escrituras.enqueue(tratamiento.getId(), registro);
             return true;
         } catch (Exception e) {
             e.printStackTrace();
@@ -219,52 +373,88 @@ public class TratamientoRepository {
         }
     }
 
-    private boolean guardarCambiosMedicaciones() {
-        try {
-            storageManager.saveList(MEDICACIONES_FILE, medicacionesCache);
-            return true;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
+    // Los tratamientos no cambian después de creados (solo se reemplazan), así que las claves
+    // se pueden recalcular desde la instancia al desindexar
+
+    private void indexar(Tratamiento tratamiento) {
+        long costo = tratamiento.getCostoCentavos();
+        agregar(porPrecio, tratamiento.getPrecio(), tratamiento);
+        agregar(porDuracion, tratamiento.getDuracion(), tratamiento);
+        agregar(porCosto, costo, tratamiento);
+        sumaCostos += costo;
+    }
+
+    private void desindexar(Tratamiento tratamiento) {
+        long costo = tratamiento.getCostoCentavos();
+        quitar(porPrecio, tratamiento.getPrecio(), tratamiento);
+        quitar(porDuracion, tratamiento.getDuracion(), tratamiento);
+        quitar(porCosto, costo, tratamiento);
+        sumaCostos -= costo;
+    }
+
+    private static <K> void agregar(Map<K, List<Tratamiento>> indice, K clave, Tratamiento tratamiento) {
+        List<Tratamiento> grupo = indice.get(clave);
+        if (grupo == null) {
+            grupo = new ArrayList<>();
+            indice.put(clave, grupo);
         }
+        grupo.add(tratamiento);
     }
 
-    private boolean guardarCambiosTerapias() {
-        try {
-            storageManager.saveList(TERAPIAS_FILE, terapiasCache);
-            return true;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
+    private static <K> void quitar(Map<K, List<Tratamiento>> indice, K clave, Tratamiento tratamiento) {
+        List<Tratamiento> grupo = indice.get(clave);
+        if (grupo != null) {
+            // Por identidad: dos tratamientos pueden tener los mismos datos
+            for (int i = 0; i < grupo.size(); i++) {
+                if (grupo.get(i) == tratamiento) {
+                    grupo.remove(i);
+                    break;
+                }
+            }
+            if (grupo.isEmpty()) {
+                indice.remove(clave);
+            }
         }
     }
 
+    private static List<Tratamiento> valores(Collection<List<Tratamiento>> grupos) {
+        List<Tratamiento> resultado = new ArrayList<>();
+        for (List<Tratamiento> grupo : grupos) {
+            resultado.addAll(grupo);
+        }
+        return resultado;
+    }
+
     // Métodos útiles para estadísticas
-    public int getTotalTratamientos() {
-        return cirugiasCache.size() + medicacionesCache.size() + terapiasCache.size();
+    public synchronized int getTotalTratamientos() {
+        return catalogo.size();
     }
 
-    public double getCostoPromedio() {
-        List<Tratamiento> todos = getAllTratamientos();
-        if (todos.isEmpty()) return 0.0;
-        
-        double total = 0;
-        for (Tratamiento tratamiento : todos) {
-            total += tratamiento.calcularCosto();
-        }
-        return total / todos.size();
+    public synchronized double getCostoPromedio() {
+        int total = getTotalTratamientos();
+        if (total == 0) return 0.0;
+        return sumaCostos / 100.0 / total;
     }
 
-    public Tratamiento getTratamientoMasCaro() {
-        List<Tratamiento> todos = getAllTratamientos();
-        if (todos.isEmpty()) return null;
-        
-        Tratamiento masCaro = todos.get(0);
-        for (Tratamiento tratamiento : todos) {
-            if (tratamiento.calcularCosto() > masCaro.calcularCosto()) {
-                masCaro = tratamiento;
-            }
+    public synchronized Tratamiento getTratamientoMasCaro() {
+        Map.Entry<Long, List<Tratamiento>> mayor = porCosto.lastEntry();
+        return mayor != null ? mayor.getValue().get(0) : null;
+    }
+
+    public synchronized Tratamiento getTratamientoMasBarato() {
+        Map.Entry<Long, List<Tratamiento>> menor = porCosto.firstEntry();
+        return menor != null ? menor.getValue().get(0) : null;
+    }
+
+    /**
+     * Tratamientos con costo total menor o igual al indicado, ordenados por costo
+     */
+    public synchronized List<Tratamiento> getTratamientosPorCostoMaximo(double costoMax) {
+        long tope = Tratamiento.aCentavos(costoMax);
+        if (tope / 100.0 > costoMax) {
+            // El redondeo subió el tope por encima del monto pedido
+            tope--;
         }
-        return masCaro;
+        return valores(porCosto.headMap(tope, true).values());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,394 @@
+package com.example.hospital.data.storage;
+
+import com.example.hospital.data.models.Cirugia;
+import com.example.hospital.data.models.Cita;
+import com.example.hospital.data.models.EstadoCita;
+import com.example.hospital.data.models.Factura;
+import com.example.hospital.data.models.HorarioAtencion;
+import com.example.hospital.data.models.Medicacion;
+import com.example.hospital.data.models.Medico;
+import com.example.hospital.data.models.Paciente;
+import com.example.hospital.data.models.Terapia;
+import com.example.hospital.data.models.TipoSeguro;
+import com.example.hospital.data.models.Tratamiento;
+import com.example.hospital.data.models.TratamientoPaciente;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.Optional;
+
+import static com.example.hospital.data.storage.BinaryIO.*;
+
+/**
+ * Codecs binarios de los modelos persistidos. Reemplazan la serialización de Java:
+ * no escriben descriptores de clase, sólo los campos en un orden fijo.
+ */
+public final class BinaryCodecs {
+    // 2: la ocupación de HorarioAtencion se escribe como bits por turno en lugar de horas
+    // 3: el historial de tratamientos del paciente guarda la referencia al catálogo (tipo e id)
+    //    en lugar de una copia del tratamiento
+    private static final int VERSION = 3;
+
+    // Etiquetas de subtipo para los tratamientos polimórficos
+    private static final int TIPO_CIRUGIA = 1;
+    private static final int TIPO_MEDICACION = 2;
+    private static final int TIPO_TERAPIA = 3;
+
+    private static final DayOfWeek[] DIAS = DayOfWeek.values();
+
+    private BinaryCodecs() {
+    }
+
+    /**
+     * Catálogo contra el que se resuelven las referencias a tratamientos al leer un paciente
+     */
+    public interface CatalogoTratamientos {
+        Optional<Tratamiento> buscar(Class<? extends Tratamiento> tipo, int id);
+    }
+
+    public static final RecordCodec<HorarioAtencion> HORARIO_ATENCION = new RecordCodec<HorarioAtencion>() {
+        @Override
+        public int getVersion() {
+            return VERSION;
+        }
+
+        @Override
+        public void write(DataOutput out, HorarioAtencion horario) throws IOException {
+            writeTime(out, horario.getHoraInicio());
+            writeTime(out, horario.getHoraFin());
+            int mascaraDias = 0;
+            for (DayOfWeek dia : horario.getDias()) {
+                mascaraDias |= 1 << dia.ordinal();
+            }
+            writeVarInt(out, mascaraDias);
+            writeVarInt(out, horario.getDuracionCita());
+            for (DayOfWeek dia : horario.getDias()) {
+                long[] palabras = horario.getTurnosOcupados(dia).toLongArray();
+                writeVarInt(out, palabras.length);
+                for (long palabra : palabras) {
+                    writeVarLong(out, palabra);
+                }
+            }
+        }
+
+        @Override
+        public HorarioAtencion read(DataInput in, int version) throws IOException {
+            LocalTime horaInicio = readTime(in);
+            LocalTime horaFin = readTime(in);
+            int mascaraDias = readVarInt(in);
+            EnumSet<DayOfWeek> dias = EnumSet.noneOf(DayOfWeek.class);
+            for (DayOfWeek dia : DIAS) {
+                if ((mascaraDias & (1 << dia.ordinal())) != 0) {
+                    dias.add(dia);
+                }
+            }
+            int duracionCita = readVarInt(in);
+            HorarioAtencion horario = new HorarioAtencion(horaInicio, horaFin, dias, duracionCita);
+            for (DayOfWeek dia : dias) {
+                int cantidad = readVarInt(in);
+                if (version < 2) {
+                    for (int i = 0; i < cantidad; i++) {
+                        LocalTime hora = readTime(in);
+                        if (hora != null) {
+                            horario.registrarCita(dia, hora);
+                        }
+                    }
+                } else {
+                    long[] palabras = new long[cantidad];
+                    for (int i = 0; i < cantidad; i++) {
+                        palabras[i] = readVarLong(in);
+                    }
+                    horario.marcarTurnosOcupados(dia, BitSet.valueOf(palabras));
+                }
+            }
+            return horario;
+        }
+    };
+
+    public static final RecordCodec<Tratamiento> TRATAMIENTO = new RecordCodec<Tratamiento>() {
+        @Override
+        public int getVersion() {
+            return VERSION;
+        }
+
+        @Override
+        public void write(DataOutput out, Tratamiento tratamiento) throws IOException {
+            writeVarInt(out, tipoDe(tratamiento));
+            writeVarInt(out, tratamiento.getId());
+            writeString(out, tratamiento.getNombre());
+            writeVarInt(out, tratamiento.getDuracion());
+            out.writeDouble(tratamiento.getPrecio());
+        }
+
+        @Override
+        public Tratamiento read(DataInput in, int version) throws IOException {
+            int tipo = readVarInt(in);
+            int id = readVarInt(in);
+            String nombre = readString(in);
+            int duracion = readVarInt(in);
+            double precio = in.readDouble();
+
+            Tratamiento tratamiento;
+            switch (tipo) {
+                case TIPO_CIRUGIA:
+                    tratamiento = new Cirugia(nombre, duracion, precio);
+                    break;
+                case TIPO_MEDICACION:
+                    tratamiento = new Medicacion(nombre, duracion, precio);
+                    break;
+                case TIPO_TERAPIA:
+                    tratamiento = new Terapia(nombre, duracion, precio);
+                    break;
+                default:
+                    throw new IOException("Tipo de tratamiento desconocido: " + tipo);
+            }
+            tratamiento.setnuevoId(id);
+            return tratamiento;
+        }
+    };
+
+    public static final RecordCodec<Cirugia> CIRUGIA = subtipo(Cirugia.class);
+    public static final RecordCodec<Medicacion> MEDICACION = subtipo(Medicacion.class);
+    public static final RecordCodec<Terapia> TERAPIA = subtipo(Terapia.class);
+
+    /**
+     * Codec de pacientes. Los tratamientos del historial que están en el catálogo se guardan
+     * como referencia y al leer se resuelven contra {@code catalogo}, así el paciente comparte
+     * las instancias del catálogo. Una referencia que el catálogo ya no tiene se descarta: la
+     * asignación completa sigue en TratamientoPacienteRepository.
+     */
+    public static RecordCodec<Paciente> paciente(final CatalogoTratamientos catalogo) {
+        return new RecordCodec<Paciente>() {
+            @Override
+            public int getVersion() {
+                return VERSION;
+            }
+
+            @Override
+            public void write(DataOutput out, Paciente paciente) throws IOException {
+                writeVarInt(out, paciente.getId());
+                writeString(out, paciente.getNombre());
+                writeString(out, paciente.getApellido());
+                writeString(out, paciente.getCorreo());
+                writeString(out, paciente.getCedulaString());
+                writeEnum(out, paciente.getTipoSeguro());
+
+                ArrayList<String> historialCitas = paciente.getHistorialCitas();
+                writeVarInt(out, historialCitas == null ? 0 : historialCitas.size());
+                if (historialCitas != null) {
+                    for (String cita : historialCitas) {
+                        writeString(out, cita);
+                    }
+                }
+
+                // El paciente de cada tratamiento es el propio registro, no se vuelve a escribir
+                ArrayList<TratamientoPaciente> historialTratamientos = paciente.getHistorialTratamientos();
+                writeVarInt(out, historialTratamientos == null ? 0 : historialTratamientos.size());
+                if (historialTratamientos != null) {
+                    for (TratamientoPaciente tp : historialTratamientos) {
+                        writeVarInt(out, tp.getId());
+                        Tratamiento tratamiento = tp.getTratamiento();
+                        // Solo los tratamientos registrados en el catálogo tienen id
+                        boolean referencia = tratamiento.getId() > 0;
+                        out.writeBoolean(referencia);
+                        if (referencia) {
+                            writeVarInt(out, tipoDe(tratamiento));
+                            writeVarInt(out, tratamiento.getId());
+                        } else {
+                            TRATAMIENTO.write(out, tratamiento);
+                        }
+                        writeDateTime(out, tp.getFechaAsignacion());
+                        writeString(out, tp.getEstado());
+                        writeString(out, tp.getObservaciones());
+                    }
+                }
+            }
+
+            @Override
+            public Paciente read(DataInput in, int version) throws IOException {
+                int id = readVarInt(in);
+                String nombre = readString(in);
+                String apellido = readString(in);
+                String correo = readString(in);
+                String cedula = readString(in);
+                TipoSeguro tipoSeguro = readEnum(in, TipoSeguro.values());
+                Paciente paciente = new Paciente(id, nombre, apellido, correo, cedula, tipoSeguro);
+
+                int cantidadCitas = readVarInt(in);
+                for (int i = 0; i < cantidadCitas; i++) {
+                    paciente.getHistorialCitas().add(readString(in));
+                }
+
+                int cantidadTratamientos = readVarInt(in);
+                for (int i = 0; i < cantidadTratamientos; i++) {
+                    int idTratamiento = readVarInt(in);
+                    Tratamiento tratamiento;
+                    if (version >= 3 && in.readBoolean()) {
+                        Class<? extends Tratamiento> tipo = claseDe(readVarInt(in));
+                        tratamiento = catalogo.buscar(tipo, readVarInt(in)).orElse(null);
+                    } else {
+                        tratamiento = TRATAMIENTO.read(in, version);
+                    }
+                    LocalDateTime fecha = readDateTime(in);
+                    String estado = readString(in);
+                    String observaciones = readString(in);
+                    if (tratamiento != null) {
+                        paciente.agregarTratamiento(new TratamientoPaciente(idTratamiento, paciente, tratamiento,
+                                fecha, estado, observaciones));
+                    }
+                }
+                return paciente;
+            }
+        };
+    }
+
+    public static final RecordCodec<Medico> MEDICO = new RecordCodec<Medico>() {
+        @Override
+        public int getVersion() {
+            return VERSION;
+        }
+
+        @Override
+        public void write(DataOutput out, Medico medico) throws IOException {
+            writeVarInt(out, medico.getId());
+            writeString(out, medico.getNombre());
+            writeString(out, medico.getApellido());
+            writeString(out, medico.getCorreo());
+            writeString(out, medico.getCedulaString());
+            out.writeBoolean(medico.getHorarioAtencion() != null);
+            if (medico.getHorarioAtencion() != null) {
+                HORARIO_ATENCION.write(out, medico.getHorarioAtencion());
+            }
+            writeString(out, medico.getGenero());
+            writeString(out, medico.getEspecialidad());
+            out.writeBoolean(medico.isActivo());
+        }
+
+        @Override
+        public Medico read(DataInput in, int version) throws IOException {
+            int id = readVarInt(in);
+            String nombre = readString(in);
+            String apellido = readString(in);
+            String correo = readString(in);
+            String cedula = readString(in);
+            HorarioAtencion horario = in.readBoolean() ? HORARIO_ATENCION.read(in, version) : null;
+            String genero = readString(in);
+            String especialidad = readString(in);
+            boolean activo = in.readBoolean();
+            return new Medico(id, nombre, apellido, correo, cedula, horario, genero, especialidad, activo);
+        }
+    };
+
+    public static final RecordCodec<Cita> CITA = new RecordCodec<Cita>() {
+        @Override
+        public int getVersion() {
+            return VERSION;
+        }
+
+        @Override
+        public void write(DataOutput out, Cita cita) throws IOException {
+            writeVarInt(out, cita.getIdCita());
+            writeTime(out, cita.getHora());
+            writeEnum(out, cita.getDia());
+            writeString(out, cita.getPaciente());
+            writeString(out, cita.getMedico());
+            writeEnum(out, cita.getEstadoCita());
+        }
+
+        @Override
+        public Cita read(DataInput in, int version) throws IOException {
+            int id = readVarInt(in);
+            LocalTime hora = readTime(in);
+            DayOfWeek dia = readEnum(in, DIAS);
+            String paciente = readString(in);
+            String medico = readString(in);
+            Cita cita = new Cita(id, hora, dia, paciente, medico);
+            cita.setEstadoCita(readEnum(in, EstadoCita.values()));
+            return cita;
+        }
+    };
+
+    public static final RecordCodec<Factura> FACTURA = new RecordCodec<Factura>() {
+        @Override
+        public int getVersion() {
+            return VERSION;
+        }
+
+        @Override
+        public void write(DataOutput out, Factura factura) throws IOException {
+            writeVarInt(out, factura.getId());
+            writeString(out, factura.getPaciente());
+            writeString(out, factura.getTratamientos());
+            out.writeDouble(factura.getTotal());
+            writeDateTime(out, factura.getFecha());
+        }
+
+        @Override
+        public Factura read(DataInput in, int version) throws IOException {
+            int id = readVarInt(in);
+            String paciente = readString(in);
+            String tratamientos = readString(in);
+            double total = in.readDouble();
+            return new Factura(id, paciente, tratamientos, total, readDateTime(in));
+        }
+    };
+
+    private static int tipoDe(Tratamiento tratamiento) throws IOException {
+        if (tratamiento instanceof Cirugia) {
+            return TIPO_CIRUGIA;
+        } else if (tratamiento instanceof Medicacion) {
+            return TIPO_MEDICACION;
+        } else if (tratamiento instanceof Terapia) {
+            return TIPO_TERAPIA;
+        }
+        throw new IOException("Tipo de tratamiento no soportado: " + tratamiento.getClass().getName());
+    }
+
+    private static Class<? extends Tratamiento> claseDe(int tipo) throws IOException {
+        switch (tipo) {
+            case TIPO_CIRUGIA:
+                return Cirugia.class;
+            case TIPO_MEDICACION:
+                return Medicacion.class;
+            case TIPO_TERAPIA:
+                return Terapia.class;
+            default:
+                throw new IOException("Tipo de tratamiento desconocido: " + tipo);
+        }
+    }
+
+    /**
+     * Codec para las listas de un solo subtipo (cirugias.dat, medicaciones.dat, terapias.dat);
+     * comparte el formato de TRATAMIENTO y valida el tipo al leer.
+     */
+    private static <T extends Tratamiento> RecordCodec<T> subtipo(final Class<T> tipo) {
+        return new RecordCodec<T>() {
+            @Override
+            public int getVersion() {
+                return TRATAMIENTO.getVersion();
+            }
+
+            @Override
+            public void write(DataOutput out, T value) throws IOException {
+                TRATAMIENTO.write(out, value);
+            }
+
+            @Override
+            public T read(DataInput in, int version) throws IOException {
+                Tratamiento tratamiento = TRATAMIENTO.read(in, version);
+                if (!tipo.isInstance(tratamiento)) {
+                    throw new IOException("Se esperaba " + tipo.getSimpleName() +
+                            " y se leyó " + tratamiento.getClass().getSimpleName());
+                }
+                return tipo.cast(tratamiento);
+            }
+        };
+    }
+}
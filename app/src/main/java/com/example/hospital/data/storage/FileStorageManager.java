@@ -1,35 +1,397 @@
 package com.example.hospital.data.storage;
 
 import android.content.Context;
+import android.util.Log;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
 
 public class FileStorageManager {
+    private static final String TAG = "FileStorageManager";
+    // Sufijo del journal que acompaña a cada snapshot (.dat)
+    private static final String JOURNAL_SUFFIX = ".log";
+    // Snapshot en escritura; reemplaza al actual solo cuando está completo y sincronizado
+    private static final String TEMP_SUFFIX = ".tmp";
+    // Generación anterior del snapshot, para leerla si la actual no es válida
+    private static final String PREVIOUS_SUFFIX = ".bak";
+    // Cantidad de registros en el journal a partir de la cual se reescribe el snapshot
+    private static final int COMPACTION_THRESHOLD = 256;
+    // Cabecera de los snapshots binarios ("HSPB"); los archivos antiguos empiezan con la
+    // cabecera de ObjectOutputStream (0xACED) y se leen con serialización de Java
+    private static final int BINARY_MAGIC = 0x48535042;
+    // Cabecera de los snapshots binarios con un CRC32 de todo el contenido al final ("HSPC").
+    // Los "HSPB" no lo tienen y se reescriben con este formato al cargarlos
+    private static final int CHECKED_MAGIC = 0x48535043;
+
+    // Formato del payload de cada registro del journal (nibble alto de la cabecera)
+    private static final int FORMAT_JAVA = 0;
+    private static final int FORMAT_BINARY = 1;
+    // Cabecera de cada registro del journal: operación y formato, id y largo del payload
+    private static final int JOURNAL_HEADER_SIZE = 9;
+
+    /**
+     * Operaciones que se registran en el journal de un archivo
+     */
+    public enum JournalOp {
+        UPSERT,
+        DELETE
+    }
+
     private final Context context;
+    private final Map<String, Integer> journalRecords;
+    // Archivos cuyo snapshot y generación anterior no se pudieron leer. No se vuelven a escribir
+    // enteros: el repositorio quedó sin esos datos en memoria y reescribirlos borraría lo que
+    // todavía se pueda recuperar de los archivos dañados
+    private final Set<String> unreadable;
 
     public FileStorageManager(Context context) {
         this.context = context;
+        this.journalRecords = new HashMap<>();
+        this.unreadable = new HashSet<>();
+    }
+
+    /**
+     * Escribe el contenido de un archivo completo
+     */
+    private interface ContentWriter {
+        void write(OutputStream out) throws IOException;
     }
 
-    public <T> void saveList(String filename, List<T> data) throws IOException {
-        try (ObjectOutputStream oos = new ObjectOutputStream(
-                context.openFileOutput(filename, Context.MODE_PRIVATE))) {
+    public <T> void saveList(String filename, Collection<T> data) throws IOException {
+        replaceFile(filename, out -> {
+            ObjectOutputStream oos = new ObjectOutputStream(out);
             oos.writeObject(new ArrayList<>(data));
+            oos.flush();
+        });
+    }
+
+    /**
+     * Guarda la lista en formato binario usando el codec indicado, con un CRC32 al final
+     * para detectar al cargar un archivo dañado.
+     */
+    public <T> void saveList(String filename, Collection<T> data, RecordCodec<T> codec) throws IOException {
+        if (codec == null) {
+            saveList(filename, data);
+            return;
         }
+
+        replaceFile(filename, out -> {
+            CheckedOutputStream checked = new CheckedOutputStream(out, new CRC32());
+            DataOutputStream content = new DataOutputStream(checked);
+            content.writeInt(CHECKED_MAGIC);
+            BinaryIO.writeVarInt(content, codec.getVersion());
+            BinaryIO.writeVarInt(content, data.size());
+            for (T record : data) {
+                codec.write(content, record);
+            }
+            content.flush();
+            // El CRC no se incluye a sí mismo
+            new DataOutputStream(out).writeInt((int) checked.getChecksum().getValue());
+        });
     }
 
-    @SuppressWarnings("unchecked")
-    public <T> List<T> loadList(String filename) throws IOException, ClassNotFoundException {
+    /**
+     * Reemplaza el archivo sin dejarlo nunca a medias: el contenido se escribe en un temporal
+     * que se sincroniza con el disco, el archivo actual pasa a ser la generación anterior y el
+     * temporal toma su lugar con un rename. Si el proceso muere entre ambos renames, la carga
+     * usa la generación anterior.
+     */
+    private void replaceFile(String filename, ContentWriter writer) throws IOException {
+        if (unreadable.contains(filename)) {
+            throw new IOException(filename + " no se pudo leer; no se reescribe para no perder la generación anterior");
+        }
         File file = new File(context.getFilesDir(), filename);
-        if (!file.exists()) {
-            return new ArrayList<>();
+        File temp = new File(context.getFilesDir(), filename + TEMP_SUFFIX);
+        File previous = new File(context.getFilesDir(), filename + PREVIOUS_SUFFIX);
+
+        try (FileOutputStream fos = new FileOutputStream(temp)) {
+            BufferedOutputStream out = new BufferedOutputStream(fos);
+            writer.write(out);
+            out.flush();
+            fos.getFD().sync();
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
         }
 
-        try (ObjectInputStream ois = new ObjectInputStream(
-                new FileInputStream(file))) {
-            return (List<T>) ois.readObject();
+        if (file.exists() && !file.renameTo(previous)) {
+            temp.delete();
+            throw new IOException("No se pudo conservar la generación anterior de " + filename);
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("No se pudo reemplazar " + filename);
+        }
+        syncDirectory(context.getFilesDir());
+    }
+
+    /**
+     * Sincroniza el directorio para que un rename sobreviva a un corte de energía. Si el
+     * sistema no permite abrir el directorio se omite: el rename igual es atómico.
+     */
+    public static void syncDirectory(File dir) {
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            Log.d(TAG, "No se pudo sincronizar el directorio " + dir, e);
+        }
+    }
+
+    public <T> List<T> loadList(String filename) throws IOException, ClassNotFoundException {
+        return loadList(filename, null);
+    }
+
+    /**
+     * Carga la lista en formato binario. Si el archivo todavía está en el formato de
+     * serialización de Java se lee con ObjectInputStream y se reescribe en binario.
+     */
+    public <T> List<T> loadList(String filename, RecordCodec<T> codec) throws IOException, ClassNotFoundException {
+        boolean[] legacy = new boolean[1];
+        List<T> data = readSnapshot(filename, codec, legacy);
+        if (codec != null && legacy[0]) {
+            saveList(filename, data, codec);
+        }
+        return data;
+    }
+
+    public <T> List<T> loadJournaled(String filename, ToIntFunction<T> idOf)
+            throws IOException, ClassNotFoundException {
+        return loadJournaled(filename, idOf, null);
+    }
+
+    /**
+     * Carga el snapshot del archivo y aplica encima las operaciones pendientes del journal.
+     * Si el journal creció por encima del umbral se compacta en el mismo momento. Con un
+     * codec, cualquier dato encontrado en el formato de serialización de Java se reescribe
+     * en binario al terminar la carga, de modo que la migración ocurre una sola vez.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> loadJournaled(String filename, ToIntFunction<T> idOf, RecordCodec<T> codec)
+            throws IOException, ClassNotFoundException {
+        boolean[] legacy = new boolean[1];
+        List<T> data = readSnapshot(filename, codec, legacy);
+        File journal = new File(context.getFilesDir(), filename + JOURNAL_SUFFIX);
+        int registros = 0;
+
+        if (journal.exists()) {
+            // Posición de cada id dentro del snapshot; un registro eliminado queda en null
+            Map<Integer, Integer> posiciones = new HashMap<>();
+            for (int i = 0; i < data.size(); i++) {
+                posiciones.putIfAbsent(idOf.applyAsInt(data.get(i)), i);
+            }
+
+            // Bytes del journal que contienen registros completos
+            long largo = journal.length();
+            long validos = 0;
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(journal)))) {
+                while (validos + JOURNAL_HEADER_SIZE <= largo) {
+                    int header = in.readUnsignedByte();
+                    int op = header & 0x0F;
+                    int format = header >>> 4;
+                    int id = in.readInt();
+                    int size = in.readInt();
+                    // Un largo que no entra en lo que queda del archivo es un registro cortado
+                    if (size < 0 || size > largo - validos - JOURNAL_HEADER_SIZE) {
+                        break;
+                    }
+                    byte[] payload = new byte[size];
+                    in.readFully(payload);
+
+                    Integer posicion = posiciones.get(id);
+                    if (op == JournalOp.UPSERT.ordinal()) {
+                        T record;
+                        if (format == FORMAT_BINARY && codec != null) {
+                            DataInputStream recordIn = new DataInputStream(new ByteArrayInputStream(payload));
+                            record = codec.read(recordIn, BinaryIO.readVarInt(recordIn));
+                        } else if (format == FORMAT_JAVA) {
+                            record = (T) deserialize(payload);
+                            legacy[0] = true;
+                        } else {
+                            throw new IOException("Registro binario en " + filename + " sin codec");
+                        }
+
+                        if (posicion != null) {
+                            data.set(posicion, record);
+                        } else {
+                            posiciones.put(id, data.size());
+                            data.add(record);
+                        }
+                    } else if (posicion != null) {
+                        data.set(posicion, null);
+                        posiciones.remove(id);
+                    }
+                    validos += JOURNAL_HEADER_SIZE + size;
+                    registros++;
+                }
+            } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                // Un registro completo que no se puede decodificar no es un corte: las operaciones
+                // que siguen dependen de él. Se trata igual que un snapshot ilegible para que
+                // compactar no reemplace el snapshot con un cache incompleto
+                unreadable.add(filename);
+                Log.e(TAG, "Registro ilegible en el journal de " + filename + " tras " + registros
+                        + " registros", e);
+                throw e;
+            }
+
+            if (validos < largo) {
+                // El último registro quedó incompleto (proceso interrumpido a mitad de escritura).
+                // Se corta el archivo donde termina el último registro completo para que lo que
+                // se agregue después no quede pegado a esos bytes
+                Log.w(TAG, "Journal de " + filename + " cortado; se descartan " + (largo - validos) + " bytes");
+                truncate(journal, validos);
+            }
+
+            List<T> compactados = new ArrayList<>(data.size());
+            for (T record : data) {
+                if (record != null) {
+                    compactados.add(record);
+                }
+            }
+            data = compactados;
+        }
+
+        journalRecords.put(filename, registros);
+        if (registros >= COMPACTION_THRESHOLD || (codec != null && legacy[0])) {
+            compact(filename, data, codec);
+        }
+        return data;
+    }
+
+    public <T> void appendRecord(String filename, JournalOp op, int id, T record, Collection<T> snapshot)
+            throws IOException {
+        appendRecord(filename, op, id, record, snapshot, null);
+    }
+
+    /**
+     * Agrega una operación al journal del archivo. El costo es proporcional al registro y no
+     * al archivo completo; cuando el journal alcanza el umbral se escribe un nuevo snapshot
+     * con el contenido de {@code snapshot} y el journal se vacía.
+     */
+    public <T> void appendRecord(String filename, JournalOp op, int id, T record, Collection<T> snapshot,
+                                 RecordCodec<T> codec) throws IOException {
+        List<byte[]> registro = new ArrayList<>();
+        registro.add(encodeJournalRecord(op, id, record, codec));
+        appendEncoded(filename, registro);
+        if (shouldCompact(filename)) {
+            compact(filename, snapshot, codec);
+        }
+    }
+
+    /**
+     * Codifica una operación del journal tal como se escribe en el archivo. Se codifica al
+     * encolar, con el registro en el estado de ese momento, y se escribe más tarde.
+     */
+    public <T> byte[] encodeJournalRecord(JournalOp op, int id, T record, RecordCodec<T> codec)
+            throws IOException {
+        int format = codec != null ? FORMAT_BINARY : FORMAT_JAVA;
+        byte[] payload = op == JournalOp.UPSERT ? encode(record, codec) : new byte[0];
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(JOURNAL_HEADER_SIZE + payload.length);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte((format << 4) | op.ordinal());
+        out.writeInt(id);
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Agrega al journal varias operaciones ya codificadas con una sola apertura del archivo y
+     * las sincroniza con el disco. Si la escritura falla, el journal vuelve a su largo anterior:
+     * el lote se reintenta completo y no queda detrás de bytes a medias.
+     */
+    public void appendEncoded(String filename, List<byte[]> records) throws IOException {
+        File journal = new File(context.getFilesDir(), filename + JOURNAL_SUFFIX);
+        long largoAnterior = journal.length();
+        try (FileOutputStream fos = context.openFileOutput(filename + JOURNAL_SUFFIX, Context.MODE_APPEND)) {
+            OutputStream out = new BufferedOutputStream(fos);
+            for (byte[] record : records) {
+                out.write(record);
+            }
+            out.flush();
+            fos.getFD().sync();
+        } catch (IOException e) {
+            try {
+                if (journal.length() > largoAnterior) {
+                    truncate(journal, largoAnterior);
+                }
+            } catch (IOException truncateError) {
+                Log.e(TAG, "No se pudo descartar el lote incompleto de " + filename, truncateError);
+            }
+            throw e;
+        }
+        journalRecords.put(filename, journalRecords.getOrDefault(filename, 0) + records.size());
+    }
+
+    /**
+     * Cola de escritura diferida para el journal del archivo. Cada lote se agrega con una sola
+     * escritura y, si el journal alcanza el umbral, se compacta con {@code snapshot}, que se
+     * lee con {@code lock} tomado.
+     */
+    public <T> WriteBehindQueue<byte[]> createJournalQueue(String filename, RecordCodec<T> codec, Object lock,
+                                                           Supplier<? extends Collection<T>> snapshot) {
+        return new WriteBehindQueue<>(lock, batch -> {
+            appendEncoded(filename, batch);
+            if (shouldCompact(filename)) {
+                compact(filename, snapshot.get(), codec);
+            }
+        });
+    }
+
+    /**
+     * El journal llegó al umbral y el snapshot se puede reescribir. Con un archivo ilegible las
+     * operaciones se siguen agregando al journal, que no pisa nada.
+     */
+    private boolean shouldCompact(String filename) {
+        return journalRecords.getOrDefault(filename, 0) >= COMPACTION_THRESHOLD
+                && !unreadable.contains(filename);
+    }
+
+    /**
+     * Indica si ninguna generación del snapshot o algún registro del journal se pudo leer. Los
+     * datos del archivo no están en memoria y el archivo no se reescribe hasta que se repare o
+     * se borre.
+     */
+    public boolean isUnreadable(String filename) {
+        return unreadable.contains(filename);
+    }
+
+    public <T> void compact(String filename, Collection<T> data) throws IOException {
+        compact(filename, data, null);
+    }
+
+    /**
+     * Reescribe el snapshot con el contenido actual y descarta el journal. Si el proceso muere
+     * entre ambos pasos el journal se vuelve a aplicar sobre el snapshot nuevo sin efectos,
+     * porque cada operación reemplaza o elimina por id.
+     */
+    public <T> void compact(String filename, Collection<T> data, RecordCodec<T> codec) throws IOException {
+        saveList(filename, data, codec);
+        File journal = new File(context.getFilesDir(), filename + JOURNAL_SUFFIX);
+        if (journal.exists()) {
+            journal.delete();
+        }
+        journalRecords.put(filename, 0);
+    }
+
+    private void truncate(File file, long length) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+            raf.getFD().sync();
         }
     }
 
@@ -38,9 +400,121 @@ public class FileStorageManager {
     }
 
     public void deleteFile(String filename) {
+        unreadable.remove(filename);
+        for (String suffix : new String[]{"", JOURNAL_SUFFIX, TEMP_SUFFIX, PREVIOUS_SUFFIX}) {
+            File file = new File(context.getFilesDir(), filename + suffix);
+            if (file.exists()) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Lee el snapshot y, si no existe o no es válido, la generación anterior. Tras recuperar
+     * la generación anterior se vuelve a escribir como snapshot actual. Si ninguna se puede
+     * leer el archivo se marca como ilegible y se lanza la excepción: el llamador no debe
+     * seguir como si estuviera vacío.
+     */
+    private <T> List<T> readSnapshot(String filename, RecordCodec<T> codec, boolean[] legacy)
+            throws IOException, ClassNotFoundException {
         File file = new File(context.getFilesDir(), filename);
+        File previous = new File(context.getFilesDir(), filename + PREVIOUS_SUFFIX);
+        if (!file.exists() && !previous.exists()) {
+            return new ArrayList<>();
+        }
+
+        if (file.exists()) {
+            try {
+                return readSnapshotFile(file, codec, legacy);
+            } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                if (!previous.exists()) {
+                    unreadable.add(filename);
+                    Log.e(TAG, filename + " dañado y sin generación anterior", e);
+                    throw e;
+                }
+                Log.w(TAG, filename + " dañado, se usa la generación anterior", e);
+            }
+        }
+
+        legacy[0] = false;
+        List<T> data;
+        try {
+            data = readSnapshotFile(previous, codec, legacy);
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            unreadable.add(filename);
+            Log.e(TAG, "Ninguna generación de " + filename + " se puede leer", e);
+            throw e;
+        }
+        // El actual dañado se borra recién ahora, así el rename de saveList no lo convierte
+        // en la generación anterior
         if (file.exists()) {
             file.delete();
         }
+        saveList(filename, data, codec);
+        // Ya quedó escrito en el formato actual
+        legacy[0] = false;
+        return data;
+    }
+
+    /**
+     * Lee un snapshot en una sola pasada; en el formato con CRC el checksum se calcula mientras
+     * se leen los registros y se compara con el del final.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> List<T> readSnapshotFile(File file, RecordCodec<T> codec, boolean[] legacy)
+            throws IOException, ClassNotFoundException {
+        try (BufferedInputStream buffered = new BufferedInputStream(new FileInputStream(file))) {
+            buffered.mark(4);
+            CheckedInputStream checked = new CheckedInputStream(buffered, new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            int magic = codec != null ? in.readInt() : 0;
+            if (magic == CHECKED_MAGIC || magic == BINARY_MAGIC) {
+                int version = BinaryIO.readVarInt(in);
+                int size = BinaryIO.readVarInt(in);
+                if (size < 0) {
+                    throw new IOException("Cantidad de registros inválida en " + file.getName());
+                }
+                List<T> data = new ArrayList<>(Math.min(size, 1024));
+                for (int i = 0; i < size; i++) {
+                    data.add(codec.read(in, version));
+                }
+                if (magic == CHECKED_MAGIC) {
+                    int expected = (int) checked.getChecksum().getValue();
+                    if (new DataInputStream(buffered).readInt() != expected) {
+                        throw new IOException("Checksum inválido en " + file.getName());
+                    }
+                } else {
+                    legacy[0] = true;
+                }
+                return data;
+            }
+
+            // Formato de serialización de Java
+            buffered.reset();
+            legacy[0] = true;
+            ObjectInputStream ois = new ObjectInputStream(buffered);
+            return (List<T>) ois.readObject();
+        }
+    }
+
+    private <T> byte[] encode(T record, RecordCodec<T> codec) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        if (codec != null) {
+            DataOutputStream out = new DataOutputStream(bytes);
+            BinaryIO.writeVarInt(out, codec.getVersion());
+            codec.write(out, record);
+            out.flush();
+        } else {
+            try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+                oos.writeObject(record);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private Object deserialize(byte[] payload) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+            return ois.readObject();
+        }
     }
-}
\ No newline at end of file
+}
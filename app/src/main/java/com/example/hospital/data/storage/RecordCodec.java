@@ -0,0 +1,19 @@
+package com.example.hospital.data.storage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Codificación binaria de un tipo de registro para FileStorageManager.
+ * La versión se guarda junto a los datos para poder leer archivos escritos
+ * por versiones anteriores del codec.
+ */
+public interface RecordCodec<T> {
+
+    int getVersion();
+
+    void write(DataOutput out, T value) throws IOException;
+
+    T read(DataInput in, int version) throws IOException;
+}
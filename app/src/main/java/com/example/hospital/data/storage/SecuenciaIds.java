@@ -0,0 +1,95 @@
+package com.example.hospital.data.storage;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.function.IntSupplier;
+
+/**
+ * Secuencia de ids de una entidad que nunca repite un valor, ni después de eliminar registros
+ * ni después de que el proceso muera.
+ *
+ * En disco solo se guarda el tope reservado. Los ids se entregan por bloques: antes de usar un
+ * bloque se persiste su tope, y al arrancar la secuencia continúa desde ese tope. Si el proceso
+ * muere a mitad de un bloque se pierden los ids que no se usaron, pero ninguno se reutiliza.
+ */
+public class SecuenciaIds {
+    private static final String SUFIJO = ".seq";
+    // Cabecera del archivo de la secuencia ("HSEQ")
+    private static final int MAGIC = 0x48534551;
+    // Ids reservados por cada escritura a disco
+    private static final int TAMANIO_BLOQUE = 64;
+
+    private final File archivo;
+    private int siguiente;
+    // Primer id que todavía no está reservado en disco
+    private int reservadoHasta;
+
+    /**
+     * @param nombre           nombre de la entidad; la secuencia se guarda en {@code nombre.seq}
+     * @param mayorIdExistente mayor id ya guardado. Solo se consulta cuando la secuencia todavía
+     *                         no existe en disco (datos creados antes de la secuencia)
+     */
+    public SecuenciaIds(Context context, String nombre, IntSupplier mayorIdExistente) {
+        this.archivo = new File(context.getFilesDir(), nombre + SUFIJO);
+        Integer guardado = leerTope();
+        if (guardado != null) {
+            // Los ids del último bloque pudieron entregarse antes de morir el proceso
+            siguiente = guardado;
+        } else {
+            siguiente = Math.max(0, mayorIdExistente.getAsInt()) + 1;
+        }
+        reservadoHasta = siguiente;
+    }
+
+    /**
+     * Entrega el siguiente id. Solo escribe en disco cuando se agota el bloque reservado.
+     */
+    public synchronized int siguiente() throws IOException {
+        if (siguiente >= reservadoHasta) {
+            int nuevoTope = siguiente + TAMANIO_BLOQUE;
+            escribirTope(nuevoTope);
+            reservadoHasta = nuevoTope;
+        }
+        return siguiente++;
+    }
+
+    private Integer leerTope() {
+        if (!archivo.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(archivo)))) {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            return in.readInt();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Escribe el tope en un archivo temporal, lo sincroniza con el disco y lo renombra sobre el
+     * anterior, así una interrupción deja el tope viejo o el nuevo pero nunca un archivo a medias.
+     */
+    private void escribirTope(int tope) throws IOException {
+        File temporal = new File(archivo.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temporal)) {
+            DataOutputStream out = new DataOutputStream(fos);
+            out.writeInt(MAGIC);
+            out.writeInt(tope);
+            out.flush();
+            fos.getFD().sync();
+        }
+        if (!temporal.renameTo(archivo)) {
+            throw new IOException("No se pudo actualizar " + archivo.getName());
+        }
+        FileStorageManager.syncDirectory(archivo.getParentFile());
+    }
+}
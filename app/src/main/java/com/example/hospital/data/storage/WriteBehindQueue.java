@@ -0,0 +1,144 @@
+package com.example.hospital.data.storage;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Cola de escritura diferida de un archivo. Las operaciones se acumulan en memoria, las que
+ * afectan al mismo registro se combinan (queda solo la última) y todo el lote se escribe de una
+ * vez poco después de la primera, en un hilo de escritura compartido por todos los archivos.
+ *
+ * El lote se toma y se escribe con el lock indicado (el del repositorio dueño del archivo), así
+ * ninguna otra escritura del repositorio, como una compactación, se intercala a mitad de un lote.
+ * Por eso {@link #flush()} nunca debe llamarse con ese lock tomado.
+ *
+ * Un lote que falla vuelve a la cola y se reintenta solo; las fallas no se pierden en el log:
+ * {@link #flush()} y {@link #flush(Consumer)} informan si lo encolado quedó en disco.
+ */
+public class WriteBehindQueue<E> {
+    private static final String TAG = "WriteBehindQueue";
+    // Tiempo que se esperan más operaciones antes de escribir el lote
+    private static final long VENTANA_MS = 200;
+    // Espera antes de reintentar un lote que no se pudo escribir
+    private static final long REINTENTO_MS = 5000;
+
+    private static final ScheduledExecutorService escritor = Executors.newSingleThreadScheduledExecutor(tarea -> {
+        Thread hilo = new Thread(tarea, "hospital-escritura");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    /**
+     * Escribe en disco un lote de operaciones, en el orden en que se encolaron
+     */
+    public interface BatchWriter<E> {
+        void write(List<E> batch) throws IOException;
+    }
+
+    private final Object lock;
+    private final BatchWriter<E> writer;
+    // Última operación pendiente de cada registro, por id
+    private Map<Integer, E> pendientes = new LinkedHashMap<>();
+    private boolean programada;
+
+    public WriteBehindQueue(Object lock, BatchWriter<E> writer) {
+        this.lock = lock;
+        this.writer = writer;
+    }
+
+    /**
+     * Encola la operación del registro con ese id; reemplaza a la que estuviera pendiente
+     */
+    public synchronized void enqueue(int id, E operation) {
+        pendientes.put(id, operation);
+        if (!programada) {
+            programada = true;
+            escritor.schedule(this::escribirPendientes, VENTANA_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Descarta lo pendiente; para cuando el dueño acaba de escribir el archivo completo
+     */
+    public synchronized void discardPending() {
+        pendientes.clear();
+    }
+
+    /**
+     * Escribe ya todo lo pendiente y espera a que esté en disco. Devuelve false si falló.
+     */
+    public boolean flush() {
+        try {
+            return escritor.submit(this::escribirPendientes).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Escribe ya todo lo pendiente sin bloquear; {@code alTerminar}, si no es null, recibe
+     * en el hilo de escritura si todo lo encolado hasta ahora quedó en disco
+     */
+    public void flush(Consumer<Boolean> alTerminar) {
+        escritor.execute(() -> {
+            boolean ok = escribirPendientes();
+            if (alTerminar != null) {
+                alTerminar.accept(ok);
+            }
+        });
+    }
+
+    /**
+     * Escribe lo pendiente en el hilo actual. Solo para el dueño de la cola, que ya tiene el
+     * lock tomado (por ejemplo antes de recargar el archivo).
+     */
+    public boolean flushHoldingLock() {
+        return escribirPendientes();
+    }
+
+    private boolean escribirPendientes() {
+        synchronized (lock) {
+            Map<Integer, E> lote;
+            synchronized (this) {
+                programada = false;
+                if (pendientes.isEmpty()) {
+                    return true;
+                }
+                lote = pendientes;
+                pendientes = new LinkedHashMap<>();
+            }
+
+            try {
+                writer.write(new ArrayList<>(lote.values()));
+                return true;
+            } catch (IOException e) {
+                Log.e(TAG, "Error al escribir " + lote.size() + " operaciones", e);
+                // Se devuelven a la cola sin pisar las que llegaron después y se programa un
+                // reintento, salvo que ya haya una escritura programada
+                synchronized (this) {
+                    for (Map.Entry<Integer, E> entry : lote.entrySet()) {
+                        pendientes.putIfAbsent(entry.getKey(), entry.getValue());
+                    }
+                    if (!programada) {
+                        programada = true;
+                        escritor.schedule(this::escribirPendientes, REINTENTO_MS, TimeUnit.MILLISECONDS);
+                    }
+                }
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.hospital.ui;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Adapter base que calcula en segundo plano las diferencias entre la lista mostrada y la nueva,
+ * así un cambio de estado vuelve a dibujar solo la fila afectada.
+ *
+ * Los repositorios devuelven las mismas instancias que guardan en caché, por eso el contenido
+ * se compara con una firma tomada al momento de enviar la lista y no con el objeto en sí. Las
+ * firmas también se arman en segundo plano, antes de pasar la lista al differ.
+ *
+ * Los datos antiguos pueden tener ids repetidos, así que la clave de cada fila es el id junto
+ * con el número de aparición de ese id en la lista.
+ */
+public abstract class ListaDiffAdapter<T, VH extends RecyclerView.ViewHolder> extends RecyclerView.Adapter<VH> {
+
+    private static final Executor preparador = Executors.newSingleThreadExecutor();
+    private static final Handler hiloPrincipal = new Handler(Looper.getMainLooper());
+
+    private final AsyncListDiffer<Fila<T>> differ = new AsyncListDiffer<>(this, new DiffUtil.ItemCallback<Fila<T>>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Fila<T> anterior, @NonNull Fila<T> nueva) {
+            return anterior.clave == nueva.clave;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Fila<T> anterior, @NonNull Fila<T> nueva) {
+            return anterior.firma.equals(nueva.firma);
+        }
+    });
+    // Última lista enviada; una lista preparada después de otra más nueva se descarta
+    private int versionEnviada;
+
+    protected ListaDiffAdapter() {
+        setHasStableIds(true);
+    }
+
+    /**
+     * Identificador del elemento
+     */
+    protected abstract int getId(T item);
+
+    /**
+     * Texto con todos los datos que muestra la fila; si cambia, la fila se vuelve a dibujar
+     */
+    protected abstract String getFirma(T item);
+
+    /**
+     * Envía la nueva lista; las diferencias se calculan fuera del hilo principal
+     */
+    protected void enviarLista(List<T> items) {
+        int version = ++versionEnviada;
+        List<T> copia = items != null ? new ArrayList<>(items) : new ArrayList<>();
+        preparador.execute(() -> {
+            List<Fila<T>> filas = new ArrayList<>(copia.size());
+            Map<Integer, Integer> apariciones = new HashMap<>();
+            for (T item : copia) {
+                int id = getId(item);
+                int aparicion = apariciones.merge(id, 1, Integer::sum) - 1;
+                long clave = ((long) id << 32) | (aparicion & 0xFFFFFFFFL);
+                filas.add(new Fila<>(item, clave, getFirma(item)));
+            }
+            hiloPrincipal.post(() -> {
+                if (version == versionEnviada) {
+                    differ.submitList(filas);
+                }
+            });
+        });
+    }
+
+    protected T getItem(int position) {
+        return differ.getCurrentList().get(position).item;
+    }
+
+    @Override
+    public int getItemCount() {
+        return differ.getCurrentList().size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return differ.getCurrentList().get(position).clave;
+    }
+
+    private static final class Fila<T> {
+        final T item;
+        final long clave;
+        final String firma;
+
+        Fila(T item, long clave, String firma) {
+            this.item = item;
+            this.clave = clave;
+            this.firma = firma;
+        }
+    }
+}
@@ -14,6 +14,7 @@ import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
@@ -25,8 +26,6 @@ import com.example.hospital.data.models.Cita;
 import com.example.hospital.data.models.EstadoCita;
 import com.example.hospital.data.models.Medico;
 import com.example.hospital.data.models.Paciente;
-import com.example.hospital.data.repository.MedicoRepository;
-import com.example.hospital.data.repository.PacienteRepository;
 import com.example.hospital.viewmodel.CitaViewModel;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
@@ -54,10 +53,6 @@ public class CitaActivity extends AppCompatActivity implements CitaAdapter.OnCit
     private CitaViewModel citaViewModel;
     private CitaAdapter citaAdapter;
 
-    // Repositorios para autocomplete
-    private MedicoRepository medicoRepository;
-    private PacienteRepository pacienteRepository;
-    
     // Arrays para autocomplete
     private ArrayAdapter<String> pacienteAdapter;
     private ArrayAdapter<String> medicoAdapter;
@@ -69,7 +64,6 @@ public class CitaActivity extends AppCompatActivity implements CitaAdapter.OnCit
 
         initViews();
         setupViewModel();
-        setupRepositories();
         setupRecyclerView();
         setupAutocomplete();
         setupSpinners();
@@ -100,11 +94,9 @@ public class CitaActivity extends AppCompatActivity implements CitaAdapter.OnCit
         citaViewModel.getCitas().observe(this, this::actualizarListaCitas);
         citaViewModel.getMensaje().observe(this, this::mostrarMensaje);
         citaViewModel.getLoading().observe(this, this::mostrarLoading);
-    }
-
-    private void setupRepositories() {
-        medicoRepository = new MedicoRepository(this);
-        pacienteRepository = new PacienteRepository(this);
+        // Los datos del autocompletado se cargan en el ViewModel, fuera del hilo principal
+        citaViewModel.getPacientesDisponibles().observe(this, this::cargarPacientesAutocomplete);
+        citaViewModel.getMedicosDisponibles().observe(this, this::cargarMedicosAutocomplete);
     }
 
     private void setupRecyclerView() {
@@ -113,6 +105,18 @@ public class CitaActivity extends AppCompatActivity implements CitaAdapter.OnCit
 
         rvCitas.setLayoutManager(new LinearLayoutManager(this));
         rvCitas.setAdapter(citaAdapter);
+
+        // Pedir la siguiente página cuando faltan pocas filas para llegar al final
+        rvCitas.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+                if (dy > 0 && layoutManager != null
+                        && layoutManager.findLastVisibleItemPosition() >= citaAdapter.getItemCount() - 10) {
+                    citaViewModel.cargarMasCitas();
+                }
+            }
+        });
     }
 
     private void setupAutocomplete() {
@@ -125,22 +129,17 @@ public class CitaActivity extends AppCompatActivity implements CitaAdapter.OnCit
         medicoAdapter = new ArrayAdapter<>(this, 
             android.R.layout.simple_dropdown_item_1line);
         etMedico.setAdapter(medicoAdapter);
-        
-        // Cargar datos para autocomplete
-        cargarAutocompleteData();
     }
 
-    private void cargarAutocompleteData() {
-        // Cargar pacientes
-        List<Paciente> pacientes = pacienteRepository.getAllPacientes();
+    private void cargarPacientesAutocomplete(List<Paciente> pacientes) {
         pacienteAdapter.clear();
         for (Paciente paciente : pacientes) {
             pacienteAdapter.add(paciente.getCorreo());
         }
         pacienteAdapter.notifyDataSetChanged();
+    }
 
-        // Cargar médicos
-        List<Medico> medicos = medicoRepository.getAllMedicos();
+    private void cargarMedicosAutocomplete(List<Medico> medicos) {
         medicoAdapter.clear();
         for (Medico medico : medicos) {
             medicoAdapter.add(medico.getCorreo());
@@ -12,13 +12,12 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.hospital.R;
 import com.example.hospital.data.models.Cita;
 import com.example.hospital.data.models.EstadoCita;
+import com.example.hospital.ui.ListaDiffAdapter;
 
-import java.util.ArrayList;
 import java.util.List;
 
-public class CitaAdapter extends RecyclerView.Adapter<CitaAdapter.CitaViewHolder> {
+public class CitaAdapter extends ListaDiffAdapter<Cita, CitaAdapter.CitaViewHolder> {
     
-    private List<Cita> citas;
     private OnCitaClickListener listener;
     
     public interface OnCitaClickListener {
@@ -29,7 +28,6 @@ public class CitaAdapter extends RecyclerView.Adapter<CitaAdapter.CitaViewHolder
     }
     
     public CitaAdapter() {
-        this.citas = new ArrayList<>();
         this.listener = null;
     }
     
@@ -47,22 +45,27 @@ public class CitaAdapter extends RecyclerView.Adapter<CitaAdapter.CitaViewHolder
     
     @Override
     public void onBindViewHolder(@NonNull CitaViewHolder holder, int position) {
-        Cita cita = citas.get(position);
+        Cita cita = getItem(position);
         holder.bind(cita);
     }
     
     @Override
-    public int getItemCount() {
-        return citas.size();
+    protected int getId(Cita cita) {
+        return cita.getIdCita();
+    }
+    
+    @Override
+    protected String getFirma(Cita cita) {
+        return cita.getDia() + "|" + cita.getHora() + "|" + cita.getPaciente() + "|"
+                + cita.getMedico() + "|" + cita.getEstadoCita();
     }
     
     public void actualizarCitas(List<Cita> nuevasCitas) {
-        this.citas = nuevasCitas;
-        notifyDataSetChanged();
+        enviarLista(nuevasCitas);
     }
     
     public Cita getCitaAt(int position) {
-        return citas.get(position);
+        return getItem(position);
     }
     
     class CitaViewHolder extends RecyclerView.ViewHolder {
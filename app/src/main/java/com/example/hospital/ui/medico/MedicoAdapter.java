@@ -11,13 +11,12 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.hospital.R;
 import com.example.hospital.data.models.Medico;
+import com.example.hospital.ui.ListaDiffAdapter;
 
-import java.util.ArrayList;
 import java.util.List;
 
-public class MedicoAdapter extends RecyclerView.Adapter<MedicoAdapter.MedicoViewHolder> {
+public class MedicoAdapter extends ListaDiffAdapter<Medico, MedicoAdapter.MedicoViewHolder> {
     
-    private List<Medico> medicos;
     private OnMedicoClickListener listener;
     
     public interface OnMedicoClickListener {
@@ -27,7 +26,6 @@ public class MedicoAdapter extends RecyclerView.Adapter<MedicoAdapter.MedicoView
     }
     
     public MedicoAdapter() {
-        this.medicos = new ArrayList<>();
         this.listener = null;
     }
     
@@ -45,22 +43,28 @@ public class MedicoAdapter extends RecyclerView.Adapter<MedicoAdapter.MedicoView
     
     @Override
     public void onBindViewHolder(@NonNull MedicoViewHolder holder, int position) {
-        Medico medico = medicos.get(position);
+        Medico medico = getItem(position);
         holder.bind(medico);
     }
     
     @Override
-    public int getItemCount() {
-        return medicos.size();
+    protected int getId(Medico medico) {
+        return medico.getId();
+    }
+    
+    @Override
+    protected String getFirma(Medico medico) {
+        return medico.getNombre() + "|" + medico.getApellido() + "|" + medico.getCedulaString() + "|"
+                + medico.getCorreo() + "|" + medico.getEspecialidad() + "|" + medico.getGenero() + "|"
+                + medico.isActivo();
     }
     
     public void actualizarMedicos(List<Medico> nuevosMedicos) {
-        this.medicos = nuevosMedicos;
-        notifyDataSetChanged();
+        enviarLista(nuevosMedicos);
     }
     
     public Medico getMedicoAt(int position) {
-        return medicos.get(position);
+        return getItem(position);
     }
     
     class MedicoViewHolder extends RecyclerView.ViewHolder {
@@ -11,6 +11,7 @@ import android.widget.RadioGroup;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
@@ -84,6 +85,18 @@ public class PacienteActivity extends AppCompatActivity implements PacienteAdapt
 
         rvPacientes.setLayoutManager(new LinearLayoutManager(this));
         rvPacientes.setAdapter(pacienteAdapter);
+
+        // Pedir la siguiente página cuando faltan pocas filas para llegar al final
+        rvPacientes.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+                if (dy > 0 && layoutManager != null
+                        && layoutManager.findLastVisibleItemPosition() >= pacienteAdapter.getItemCount() - 10) {
+                    pacienteViewModel.cargarMasPacientes();
+                }
+            }
+        });
     }
 
     private void setupClickListeners() {
@@ -11,13 +11,12 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.hospital.R;
 import com.example.hospital.data.models.Paciente;
+import com.example.hospital.ui.ListaDiffAdapter;
 
-import java.util.ArrayList;
 import java.util.List;
 
-public class PacienteAdapter extends RecyclerView.Adapter<PacienteAdapter.PacienteViewHolder> {
+public class PacienteAdapter extends ListaDiffAdapter<Paciente, PacienteAdapter.PacienteViewHolder> {
     
-    private List<Paciente> pacientes;
     private OnPacienteClickListener listener;
     
     public interface OnPacienteClickListener {
@@ -26,7 +25,6 @@ public class PacienteAdapter extends RecyclerView.Adapter<PacienteAdapter.Pacien
     }
     
     public PacienteAdapter() {
-        this.pacientes = new ArrayList<>();
         this.listener = null;
     }
     
@@ -44,22 +42,27 @@ public class PacienteAdapter extends RecyclerView.Adapter<PacienteAdapter.Pacien
     
     @Override
     public void onBindViewHolder(@NonNull PacienteViewHolder holder, int position) {
-        Paciente paciente = pacientes.get(position);
+        Paciente paciente = getItem(position);
         holder.bind(paciente);
     }
     
     @Override
-    public int getItemCount() {
-        return pacientes.size();
+    protected int getId(Paciente paciente) {
+        return paciente.getId();
+    }
+    
+    @Override
+    protected String getFirma(Paciente paciente) {
+        return paciente.getNombre() + "|" + paciente.getApellido() + "|" + paciente.getCedulaString() + "|"
+                + paciente.getCorreo() + "|" + paciente.getTipoSeguro();
     }
     
     public void actualizarPacientes(List<Paciente> nuevosPacientes) {
-        this.pacientes = nuevosPacientes;
-        notifyDataSetChanged();
+        enviarLista(nuevosPacientes);
     }
     
     public Paciente getPacienteAt(int position) {
-        return pacientes.get(position);
+        return getItem(position);
     }
     
     class PacienteViewHolder extends RecyclerView.ViewHolder {
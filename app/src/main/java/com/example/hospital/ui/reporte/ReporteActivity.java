@@ -19,6 +19,7 @@ import androidx.lifecycle.ViewModelProvider;
 import com.example.hospital.MainActivity;
 import com.example.hospital.R;
 import com.example.hospital.data.models.Cita;
+import com.example.hospital.data.models.EstadisticasGenerales;
 import com.example.hospital.data.models.TratamientoPaciente;
 import com.example.hospital.viewmodel.ReporteViewModel;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
@@ -208,7 +209,7 @@ public class ReporteActivity extends AppCompatActivity {
     }
 
     // Métodos para actualizar UI con los datos de los reportes
-    private void actualizarResumen(Map<String, Object> estadisticas) {
+    private void actualizarResumen(EstadisticasGenerales estadisticas) {
         tvResumen.setText(reporteViewModel.generarResumenReportes());
     }
 
@@ -358,7 +359,7 @@ public class ReporteActivity extends AppCompatActivity {
         tvPacienteTitulo.setText("Paciente: " + pacienteStr);
         
         StringBuilder sb = new StringBuilder();
-        double costoTotal = 0;
+        long costoTotalCentavos = 0;
         for (TratamientoPaciente tp : tratamientos) {
             sb.append("ID: ").append(tp.getId()).append("\n");
             sb.append("  Tratamiento: ").append(tp.getTratamiento().getNombre()).append("\n");
@@ -367,12 +368,12 @@ public class ReporteActivity extends AppCompatActivity {
             sb.append("  Fecha: ").append(tp.getFechaFormateada()).append("\n");
             sb.append("  Estado: ").append(tp.getEstado()).append("\n");
             sb.append("  ━━━━━━━━━━━━━━━\n");
-            costoTotal += tp.getCostoTotal();
+            costoTotalCentavos += tp.getCostoTotalCentavos();
         }
         
         tvHistorialDetalle.setText(sb.toString());
         tvTotalTratamientos.setText("Total: " + tratamientos.size() + " tratamientos (Costo: $" + 
-                                    String.format("%.2f", costoTotal) + ")");
+                                    String.format("%.2f", costoTotalCentavos / 100.0) + ")");
 
         new MaterialAlertDialogBuilder(this)
                 .setTitle("Historial de Tratamientos")
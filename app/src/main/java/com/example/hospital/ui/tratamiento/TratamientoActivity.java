@@ -23,7 +23,6 @@ import com.example.hospital.MainActivity;
 import com.example.hospital.R;
 import com.example.hospital.data.models.Paciente;
 import com.example.hospital.data.models.TratamientoPaciente;
-import com.example.hospital.data.repository.PacienteRepository;
 import com.example.hospital.viewmodel.TratamientoPacienteViewModel;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
@@ -54,8 +53,7 @@ public class TratamientoActivity extends AppCompatActivity implements Tratamient
     private TratamientoPacienteViewModel tratamientoViewModel;
     private TratamientoAdapter tratamientoAdapter;
     
-    // Repositorio y adapter para autocomplete
-    private PacienteRepository pacienteRepository;
+    // Adapter para autocomplete
     private ArrayAdapter<String> pacienteAdapter;
 
     @Override
@@ -65,7 +63,6 @@ public class TratamientoActivity extends AppCompatActivity implements Tratamient
 
         initViews();
         setupViewModel();
-        setupRepositories();
         setupRecyclerView();
         setupAutocomplete();
         setupClickListeners();
@@ -116,10 +113,8 @@ public class TratamientoActivity extends AppCompatActivity implements Tratamient
         tratamientoViewModel.getMensaje().observe(this, this::mostrarMensaje);
         tratamientoViewModel.getLoading().observe(this, this::mostrarLoading);
         tratamientoViewModel.getPacienteActual().observe(this, this::actualizarPacienteActual);
-    }
-
-    private void setupRepositories() {
-        pacienteRepository = new PacienteRepository(this);
+        // Los datos del autocompletado se cargan en el ViewModel, fuera del hilo principal
+        tratamientoViewModel.getPacientesDisponibles().observe(this, this::cargarAutocompleteData);
     }
 
     private void setupAutocomplete() {
@@ -128,9 +123,6 @@ public class TratamientoActivity extends AppCompatActivity implements Tratamient
             android.R.layout.simple_dropdown_item_1line);
         etCorreoPaciente.setAdapter(pacienteAdapter);
         
-        // Cargar datos para autocomplete
-        cargarAutocompleteData();
-        
         // Configurar listener para cuando se seleccione un paciente
         etCorreoPaciente.setOnItemClickListener((parent, view, position, id) -> {
             String seleccionado = (String) parent.getItemAtPosition(position);
@@ -143,9 +135,7 @@ public class TratamientoActivity extends AppCompatActivity implements Tratamient
         });
     }
 
-    private void cargarAutocompleteData() {
-        // Cargar pacientes
-        List<Paciente> pacientes = pacienteRepository.getAllPacientes();
+    private void cargarAutocompleteData(List<Paciente> pacientes) {
         pacienteAdapter.clear();
         for (Paciente paciente : pacientes) {
             // Solo agregar "Nombre Apellido (correo)" para mostrar más información
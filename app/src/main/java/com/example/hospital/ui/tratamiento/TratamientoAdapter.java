@@ -11,14 +11,14 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.hospital.R;
+import com.example.hospital.data.models.Tratamiento;
 import com.example.hospital.data.models.TratamientoPaciente;
+import com.example.hospital.ui.ListaDiffAdapter;
 
-import java.util.ArrayList;
 import java.util.List;
 
-public class TratamientoAdapter extends RecyclerView.Adapter<TratamientoAdapter.TratamientoViewHolder> {
+public class TratamientoAdapter extends ListaDiffAdapter<TratamientoPaciente, TratamientoAdapter.TratamientoViewHolder> {
 
-    private List<TratamientoPaciente> tratamientos = new ArrayList<>();
     private OnTratamientoClickListener listener;
 
     public interface OnTratamientoClickListener {
@@ -41,7 +41,7 @@ public class TratamientoAdapter extends RecyclerView.Adapter<TratamientoAdapter.
 
     @Override
     public void onBindViewHolder(@NonNull TratamientoViewHolder holder, int position) {
-        TratamientoPaciente tratamientoPaciente = tratamientos.get(position);
+        TratamientoPaciente tratamientoPaciente = getItem(position);
         
         // Información del paciente
         holder.tvPaciente.setText(tratamientoPaciente.getPaciente().getNombre() + " " + 
@@ -98,19 +98,26 @@ public class TratamientoAdapter extends RecyclerView.Adapter<TratamientoAdapter.
     }
 
     @Override
-    public int getItemCount() {
-        return tratamientos.size();
+    protected int getId(TratamientoPaciente tratamientoPaciente) {
+        return tratamientoPaciente.getId();
+    }
+
+    @Override
+    protected String getFirma(TratamientoPaciente tratamientoPaciente) {
+        Tratamiento tratamiento = tratamientoPaciente.getTratamiento();
+        return tratamientoPaciente.getPaciente().getNombre() + "|" + tratamientoPaciente.getPaciente().getApellido()
+                + "|" + tratamientoPaciente.getPaciente().getCorreo() + "|" + tratamiento.getNombre()
+                + "|" + tratamiento.getTipo() + "|" + tratamiento.getDuracion() + "|" + tratamiento.getPrecio()
+                + "|" + tratamientoPaciente.getFechaFormateada() + "|" + tratamientoPaciente.getEstado()
+                + "|" + tratamientoPaciente.getCostoTotal();
     }
 
     public void actualizarTratamientosPaciente(List<TratamientoPaciente> nuevosTratamientos) {
-        this.tratamientos = nuevosTratamientos;
-        notifyDataSetChanged();
+        enviarLista(nuevosTratamientos);
     }
 
     public void actualizarTratamientos(List<TratamientoPaciente> tratamientos) {
-        this.tratamientos.clear();
-        this.tratamientos.addAll(tratamientos);
-        notifyDataSetChanged();
+        enviarLista(tratamientos);
     }
 
     private String getIconoTipo(String tipo) {
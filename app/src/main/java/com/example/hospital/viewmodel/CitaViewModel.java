@@ -7,43 +7,71 @@ import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import com.example.hospital.HospitalApplication;
 import com.example.hospital.data.models.Cita;
 import com.example.hospital.data.models.EstadoCita;
 import com.example.hospital.data.models.Medico;
 import com.example.hospital.data.models.Paciente;
+import com.example.hospital.data.models.TurnoLibre;
+import com.example.hospital.data.repository.AgendaRepository;
 import com.example.hospital.data.repository.CitaRepository;
+import com.example.hospital.data.repository.CitaRepository.ResultadoReserva;
 import com.example.hospital.data.repository.MedicoRepository;
 import com.example.hospital.data.repository.PacienteRepository;
 
 import java.time.DayOfWeek;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CitaViewModel extends AndroidViewModel {
     private static final String TAG = "CitaViewModel";
+    private static final String ERROR_ESCRITURA = "Error: el cambio no se pudo guardar en el dispositivo";
+    private static final int TAMANIO_PAGINA = 50;
     
-    private final CitaRepository citaRepository;
-    private final MedicoRepository medicoRepository;
-    private final PacienteRepository pacienteRepository;
+    private final HospitalApplication app;
+    private final ExecutorService executor;
     
     private final MutableLiveData<List<Cita>> citas;
+    private final MutableLiveData<List<TurnoLibre>> turnosLibres;
     private final MutableLiveData<String> mensaje;
     private final MutableLiveData<Boolean> loading;
+    // Pacientes y médicos para el autocompletado del formulario
+    private final MutableLiveData<List<Paciente>> pacientesDisponibles;
+    private final MutableLiveData<List<Medico>> medicosDisponibles;
     private Cita citaActual;
 
+    // Paginación de la lista completa: se cargan páginas a medida que la UI se acerca al final.
+    // Los filtros muestran su resultado entero y la desactivan. Las páginas se piden desde el
+    // executor, así que el estado se protege con su propio lock.
+    private final Object paginacion = new Object();
+    private final List<Cita> citasCargadas = new ArrayList<>();
+    private volatile boolean paginado;
+    private volatile boolean hayMasCitas;
+    private final AtomicBoolean cargandoPagina = new AtomicBoolean();
+    // Cada carga o filtro reemplaza al anterior: solo el de la generación vigente publica resultados
+    private final AtomicInteger generacion = new AtomicInteger();
+
     public CitaViewModel(Application application) {
         super(application);
-        this.citaRepository = new CitaRepository(application.getApplicationContext());
-        this.medicoRepository = new MedicoRepository(application.getApplicationContext());
-        this.pacienteRepository = new PacienteRepository(application.getApplicationContext());
+        this.app = HospitalApplication.from(application);
+        this.executor = app.getExecutor();
         
         this.citas = new MutableLiveData<>();
+        this.turnosLibres = new MutableLiveData<>();
         this.mensaje = new MutableLiveData<>();
         this.loading = new MutableLiveData<>();
+        this.pacientesDisponibles = new MutableLiveData<>();
+        this.medicosDisponibles = new MutableLiveData<>();
         
         cargarCitas();
+        cargarDisponibles();
     }
 
     public LiveData<List<Cita>> getCitas() {
@@ -58,19 +86,158 @@ public class CitaViewModel extends AndroidViewModel {
         return loading;
     }
 
+    public LiveData<List<TurnoLibre>> getTurnosLibres() {
+        return turnosLibres;
+    }
+
+    public LiveData<List<Paciente>> getPacientesDisponibles() {
+        return pacientesDisponibles;
+    }
+
+    public LiveData<List<Medico>> getMedicosDisponibles() {
+        return medicosDisponibles;
+    }
+
+    // Los repositorios se obtienen desde el hilo de fondo: la primera vez leen su archivo
+
+    private CitaRepository citaRepository() {
+        return app.getCitaRepository();
+    }
+
+    private MedicoRepository medicoRepository() {
+        return app.getMedicoRepository();
+    }
+
+    private PacienteRepository pacienteRepository() {
+        return app.getPacienteRepository();
+    }
+
+    private AgendaRepository agendaRepository() {
+        return app.getAgendaRepository();
+    }
+
+    /**
+     * Recarga la lista después de una escritura, sin reemplazar el mensaje de la operación.
+     * Se vuelven a leer tantas citas como las que ya estaban cargadas.
+     */
+    private void refrescarCitas() {
+        int id = generacion.incrementAndGet();
+        synchronized (paginacion) {
+            mostrarPrimeraPagina(id, Math.max(TAMANIO_PAGINA, paginado ? citasCargadas.size() : 0));
+        }
+    }
+
+    private boolean esVigente(int id) {
+        return generacion.get() == id;
+    }
+
+    private void publicarMensaje(int id, String texto) {
+        if (esVigente(id)) {
+            mensaje.postValue(texto);
+        }
+    }
+
+    /**
+     * Vuelve a la lista completa mostrando las primeras {@code cantidad} citas
+     */
+    private void mostrarPrimeraPagina(int id, int cantidad) {
+        synchronized (paginacion) {
+            List<Cita> pagina = citaRepository().getCitasDespuesDe(0, cantidad);
+            if (!esVigente(id)) {
+                return;
+            }
+            citasCargadas.clear();
+            citasCargadas.addAll(pagina);
+            paginado = true;
+            hayMasCitas = pagina.size() == cantidad;
+            citas.postValue(new ArrayList<>(citasCargadas));
+        }
+    }
+
+    private void mostrarFiltradas(int id, List<Cita> filtradas) {
+        synchronized (paginacion) {
+            if (!esVigente(id)) {
+                return;
+            }
+            paginado = false;
+            citas.postValue(filtradas);
+        }
+    }
+
+    /**
+     * Pide escribir ya el cambio recién hecho y avisa si no quedó en disco
+     */
+    private void confirmarEscritura() {
+        citaRepository().flush(ok -> {
+            if (!ok) {
+                mensaje.postValue(ERROR_ESCRITURA);
+            }
+        });
+    }
+
     public void cargarCitas() {
         loading.setValue(true);
-        try {
-            List<Cita> lista = citaRepository.getAllCitas();
-            citas.setValue(lista);
-            mensaje.setValue("Citas cargadas: " + lista.size());
-            Log.d(TAG, "Cargadas " + lista.size() + " citas");
-        } catch (Exception e) {
-            mensaje.setValue("Error al cargar citas: " + e.getMessage());
-            Log.e(TAG, "Error cargando citas", e);
-        } finally {
-            loading.setValue(false);
+        int id = generacion.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                mostrarPrimeraPagina(id, TAMANIO_PAGINA);
+                int total = citaRepository().getTotalCitas();
+                publicarMensaje(id, "Citas cargadas: " + total);
+                Log.d(TAG, "Cargadas " + total + " citas");
+            } catch (Exception e) {
+                publicarMensaje(id, "Error al cargar citas: " + e.getMessage());
+                Log.e(TAG, "Error cargando citas", e);
+            } finally {
+                if (esVigente(id)) {
+                    loading.postValue(false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Carga en segundo plano los pacientes y médicos que sugiere el formulario
+     */
+    public void cargarDisponibles() {
+        executor.execute(() -> {
+            try {
+                pacientesDisponibles.postValue(pacienteRepository().getAllPacientes());
+                medicosDisponibles.postValue(medicoRepository().getAllMedicos());
+            } catch (Exception e) {
+                Log.e(TAG, "Error cargando pacientes y médicos", e);
+            }
+        });
+    }
+
+    /**
+     * Agrega la siguiente página al final de la lista; la UI lo llama al acercarse al final
+     */
+    public void cargarMasCitas() {
+        if (!paginado || !hayMasCitas || !cargandoPagina.compareAndSet(false, true)) {
+            return;
         }
+        // La página se descarta si mientras tanto se filtró o se recargó la lista
+        int id = generacion.get();
+        executor.execute(() -> {
+            try {
+                synchronized (paginacion) {
+                    if (!esVigente(id) || !paginado || !hayMasCitas) {
+                        return;
+                    }
+                    int ultimoId = citasCargadas.isEmpty()
+                            ? 0 : citasCargadas.get(citasCargadas.size() - 1).getIdCita();
+                    List<Cita> pagina = citaRepository().getCitasDespuesDe(ultimoId, TAMANIO_PAGINA);
+                    citasCargadas.addAll(pagina);
+                    hayMasCitas = pagina.size() == TAMANIO_PAGINA;
+                    citas.postValue(new ArrayList<>(citasCargadas));
+                }
+            } catch (Exception e) {
+                mensaje.postValue("Error al cargar más citas: " + e.getMessage());
+                Log.e(TAG, "Error cargando más citas", e);
+            } finally {
+                cargandoPagina.set(false);
+            }
+        });
     }
 
     public void guardarCita(String horaStr, String diaStr, String correoPaciente, String correoMedico) {
@@ -106,203 +273,257 @@ public class CitaViewModel extends AndroidViewModel {
             return;
         }
         
+        // Parsear hora y día antes de pasar al hilo de fondo
+        LocalTime hora;
+        DayOfWeek dia;
         try {
-            // Parsear hora
-            LocalTime hora = LocalTime.parse(horaStr);
-            DayOfWeek dia = DayOfWeek.valueOf(diaStr.toUpperCase());
-            
-            // Verificar que paciente y médico existan
-            Optional<Paciente> paciente = pacienteRepository.getPacientePorCorreo(correoPaciente.trim());
-            if (!paciente.isPresent()) {
-                mensaje.setValue("Error: El paciente no está registrado");
-                loading.setValue(false);
-                return;
-            }
-            
-            Optional<Medico> medico = medicoRepository.getMedicoPorCorreo(correoMedico.trim());
-            if (!medico.isPresent()) {
-                mensaje.setValue("Error: El médico no está registrado");
-                loading.setValue(false);
-                return;
-            }
-            
-            // Verificar que el médico esté disponible
-            Medico medicoObj = medico.get();
-            if (!medicoObj.isDisponible(hora, dia)) {
-                mensaje.setValue("Error: El médico no está disponible en ese horario");
-                loading.setValue(false);
-                return;
-            }
-            
-            // Verificar que no haya otra cita en el mismo horario
-            List<Cita> citasExistentes = citaRepository.getCitasPorMedico(correoMedico);
-            for (Cita existente : citasExistentes) {
-                if (existente.getDia() == dia && 
-                    existente.getHora().equals(hora) && 
-                    existente.getEstadoCita() != EstadoCita.CANCELADA &&
-                    (esEdicion == false || existente.getIdCita() != citaActual.getIdCita())) {
-                    mensaje.setValue("Error: Ya existe una cita programada para ese médico en ese horario");
-                    loading.setValue(false);
+            hora = LocalTime.parse(horaStr);
+            dia = DayOfWeek.valueOf(diaStr.toUpperCase());
+        } catch (DateTimeParseException e) {
+            mensaje.setValue("Error: Formato de hora inválido. Use HH:mm");
+            loading.setValue(false);
+            return;
+        } catch (IllegalArgumentException e) {
+            mensaje.setValue("Error: Día inválido. Use: LUNES, MARTES, etc.");
+            loading.setValue(false);
+            return;
+        }
+
+        Cita citaEditada = esEdicion ? citaActual : null;
+        executor.execute(() -> {
+            try {
+                // Verificar que paciente y médico existan
+                Optional<Paciente> paciente = pacienteRepository().getPacientePorCorreo(correoPaciente.trim());
+                if (!paciente.isPresent()) {
+                    mensaje.postValue("Error: El paciente no está registrado");
                     return;
                 }
-            }
-            
-            // Guardar o actualizar cita
-            if (esEdicion && citaActual != null) {
-                citaActual.setHora(hora);
-                citaActual.setDia(dia);
-                citaActual.setPaciente(correoPaciente.trim());
-                citaActual.setMedico(correoMedico.trim());
-                citaActual.setEstadoCita(estado);
                 
-                boolean resultado = citaRepository.actualizarCita(citaActual);
-                
-                if (resultado) {
-                    mensaje.setValue("Cita actualizada exitosamente");
-                    cargarCitas();
-                } else {
-                    mensaje.setValue("No se pudo actualizar la cita");
+                Optional<Medico> medico = medicoRepository().getMedicoPorCorreo(correoMedico.trim());
+                if (!medico.isPresent()) {
+                    mensaje.postValue("Error: El médico no está registrado");
+                    return;
                 }
-            } else {
-                Cita nuevaCita = new Cita(0, hora, dia, correoPaciente.trim(), correoMedico.trim());
-                nuevaCita.setEstadoCita(estado);
                 
-                boolean resultado = citaRepository.guardarCita(nuevaCita);
+                // Verificar que el médico esté disponible
+                Medico medicoObj = medico.get();
+                if (!medicoObj.isDisponible(hora, dia)) {
+                    mensaje.postValue("Error: El médico no está disponible en ese horario");
+                    return;
+                }
                 
-                if (resultado) {
-                    mensaje.setValue("Cita guardada exitosamente");
-                    cargarCitas();
+                // Guardar o actualizar cita; el repositorio verifica y toma el horario en una
+                // sola operación, así dos reservas simultáneas no pueden quedar en el mismo horario
+                if (citaEditada != null) {
+                    ResultadoReserva resultado = citaRepository().reprogramarCita(citaEditada.getIdCita(),
+                            hora, dia, correoPaciente.trim(), correoMedico.trim(), estado);
+                    
+                    if (resultado == ResultadoReserva.RESERVADA) {
+                        mensaje.postValue("Cita actualizada exitosamente");
+                        confirmarEscritura();
+                        refrescarCitas();
+                    } else if (resultado == ResultadoReserva.OCUPADA) {
+                        mensaje.postValue("Error: Ya existe una cita programada para ese médico en ese horario");
+                    } else {
+                        mensaje.postValue("No se pudo actualizar la cita");
+                    }
                 } else {
-                    mensaje.setValue("No se pudo guardar la cita");
+                    Cita nuevaCita = new Cita(0, hora, dia, correoPaciente.trim(), correoMedico.trim());
+                    nuevaCita.setEstadoCita(estado);
+                    
+                    ResultadoReserva resultado = citaRepository().reservarCita(nuevaCita);
+                    
+                    if (resultado == ResultadoReserva.RESERVADA) {
+                        mensaje.postValue("Cita guardada exitosamente");
+                        confirmarEscritura();
+                        refrescarCitas();
+                    } else if (resultado == ResultadoReserva.OCUPADA) {
+                        mensaje.postValue("Error: Ya existe una cita programada para ese médico en ese horario");
+                    } else {
+                        mensaje.postValue("No se pudo guardar la cita");
+                    }
                 }
+                
+            } catch (Exception e) {
+                mensaje.postValue("Error al guardar cita: " + e.getMessage());
+                Log.e(TAG, "Error guardando cita", e);
+            } finally {
+                loading.postValue(false);
             }
-            
-        } catch (DateTimeParseException e) {
-            mensaje.setValue("Error: Formato de hora inválido. Use HH:mm");
-        } catch (IllegalArgumentException e) {
-            mensaje.setValue("Error: Día inválido. Use: LUNES, MARTES, etc.");
-        } catch (Exception e) {
-            mensaje.setValue("Error al guardar cita: " + e.getMessage());
-            Log.e(TAG, "Error guardando cita", e);
-        } finally {
-            loading.setValue(false);
+        });
+    }
+
+    /**
+     * Busca los próximos turnos libres de la especialidad a partir de ahora
+     */
+    public void buscarTurnosLibres(String especialidad, int cantidad) {
+        if (especialidad == null || especialidad.trim().isEmpty()) {
+            mensaje.setValue("Error: La especialidad es obligatoria");
+            return;
         }
+
+        loading.setValue(true);
+        executor.execute(() -> {
+            try {
+                LocalDateTime ahora = LocalDateTime.now();
+                List<TurnoLibre> turnos = agendaRepository().buscarTurnosLibres(especialidad.trim(),
+                        ahora.getDayOfWeek(), ahora.toLocalTime(), cantidad);
+                turnosLibres.postValue(turnos);
+                mensaje.postValue(turnos.isEmpty()
+                        ? "No hay turnos libres para " + especialidad
+                        : "Turnos libres encontrados: " + turnos.size());
+            } catch (Exception e) {
+                mensaje.postValue("Error al buscar turnos libres: " + e.getMessage());
+                Log.e(TAG, "Error buscando turnos libres", e);
+            } finally {
+                loading.postValue(false);
+            }
+        });
     }
 
     public void filtrarPorEstado(EstadoCita estado) {
         loading.setValue(true);
-        try {
-            List<Cita> filtradas = citaRepository.getCitasPorEstado(estado);
-            citas.setValue(filtradas);
-            mensaje.setValue("Citas con estado " + estado.name() + ": " + filtradas.size());
-        } catch (Exception e) {
-            mensaje.setValue("Error al filtrar por estado: " + e.getMessage());
-            Log.e(TAG, "Error filtrando por estado", e);
-        } finally {
-            loading.setValue(false);
-        }
+        int id = generacion.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                List<Cita> filtradas = citaRepository().getCitasPorEstado(estado);
+                mostrarFiltradas(id, filtradas);
+                publicarMensaje(id, "Citas con estado " + estado.name() + ": " + filtradas.size());
+            } catch (Exception e) {
+                publicarMensaje(id, "Error al filtrar por estado: " + e.getMessage());
+                Log.e(TAG, "Error filtrando por estado", e);
+            } finally {
+                if (esVigente(id)) {
+                    loading.postValue(false);
+                }
+            }
+        });
     }
 
     public void filtrarPorPaciente(String correoPaciente) {
         loading.setValue(true);
-        try {
-            List<Cita> filtradas = citaRepository.getCitasPorPaciente(correoPaciente);
-            citas.setValue(filtradas);
-            mensaje.setValue("Citas del paciente: " + filtradas.size());
-        } catch (Exception e) {
-            mensaje.setValue("Error al filtrar por paciente: " + e.getMessage());
-            Log.e(TAG, "Error filtrando por paciente", e);
-        } finally {
-            loading.setValue(false);
-        }
+        int id = generacion.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                List<Cita> filtradas = citaRepository().getCitasPorPaciente(correoPaciente);
+                mostrarFiltradas(id, filtradas);
+                publicarMensaje(id, "Citas del paciente: " + filtradas.size());
+            } catch (Exception e) {
+                publicarMensaje(id, "Error al filtrar por paciente: " + e.getMessage());
+                Log.e(TAG, "Error filtrando por paciente", e);
+            } finally {
+                if (esVigente(id)) {
+                    loading.postValue(false);
+                }
+            }
+        });
     }
 
     public void filtrarPorMedico(String correoMedico) {
         loading.setValue(true);
-        try {
-            List<Cita> filtradas = citaRepository.getCitasPorMedico(correoMedico);
-            citas.setValue(filtradas);
-            mensaje.setValue("Citas del médico: " + filtradas.size());
-        } catch (Exception e) {
-            mensaje.setValue("Error al filtrar por médico: " + e.getMessage());
-            Log.e(TAG, "Error filtrando por médico", e);
-        } finally {
-            loading.setValue(false);
-        }
+        int id = generacion.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                List<Cita> filtradas = citaRepository().getCitasPorMedico(correoMedico);
+                mostrarFiltradas(id, filtradas);
+                publicarMensaje(id, "Citas del médico: " + filtradas.size());
+            } catch (Exception e) {
+                publicarMensaje(id, "Error al filtrar por médico: " + e.getMessage());
+                Log.e(TAG, "Error filtrando por médico", e);
+            } finally {
+                if (esVigente(id)) {
+                    loading.postValue(false);
+                }
+            }
+        });
     }
 
     public void filtrarPorDia(String dia) {
         loading.setValue(true);
-        try {
-            List<Cita> filtradas = citaRepository.getCitasPorDia(dia);
-            citas.setValue(filtradas);
-            mensaje.setValue("Citas del día " + dia + ": " + filtradas.size());
-        } catch (Exception e) {
-            mensaje.setValue("Error al filtrar por día: " + e.getMessage());
-            Log.e(TAG, "Error filtrando por día", e);
-        } finally {
-            loading.setValue(false);
-        }
+        int id = generacion.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                List<Cita> filtradas = citaRepository().getCitasPorDia(dia);
+                mostrarFiltradas(id, filtradas);
+                publicarMensaje(id, "Citas del día " + dia + ": " + filtradas.size());
+            } catch (Exception e) {
+                publicarMensaje(id, "Error al filtrar por día: " + e.getMessage());
+                Log.e(TAG, "Error filtrando por día", e);
+            } finally {
+                if (esVigente(id)) {
+                    loading.postValue(false);
+                }
+            }
+        });
     }
 
     public void cancelarCita(int id) {
         loading.setValue(true);
-        try {
-            boolean resultado = citaRepository.cancelarCita(id);
+        executor.execute(() -> {
+            try {
+                boolean resultado = citaRepository().cancelarCita(id);
             
-            if (resultado) {
-                mensaje.setValue("Cita cancelada exitosamente");
-                cargarCitas();
-            } else {
-                mensaje.setValue("No se pudo cancelar la cita");
-            }
+                if (resultado) {
+                    mensaje.postValue("Cita cancelada exitosamente");
+                    confirmarEscritura();
+                    refrescarCitas();
+                } else {
+                    mensaje.postValue("No se pudo cancelar la cita");
+                }
             
-        } catch (Exception e) {
-            mensaje.setValue("Error al cancelar cita: " + e.getMessage());
-            Log.e(TAG, "Error cancelando cita", e);
-        } finally {
-            loading.setValue(false);
-        }
+            } catch (Exception e) {
+                mensaje.postValue("Error al cancelar cita: " + e.getMessage());
+                Log.e(TAG, "Error cancelando cita", e);
+            } finally {
+                loading.postValue(false);
+            }
+        });
     }
 
     public void marcarComoAtendida(int id) {
         loading.setValue(true);
-        try {
-            boolean resultado = citaRepository.marcarComoAtendida(id);
+        executor.execute(() -> {
+            try {
+                boolean resultado = citaRepository().marcarComoAtendida(id);
             
-            if (resultado) {
-                mensaje.setValue("Cita marcada como atendida");
-                cargarCitas();
-            } else {
-                mensaje.setValue("No se pudo marcar la cita como atendida");
-            }
+                if (resultado) {
+                    mensaje.postValue("Cita marcada como atendida");
+                    confirmarEscritura();
+                    refrescarCitas();
+                } else {
+                    mensaje.postValue("No se pudo marcar la cita como atendida");
+                }
             
-        } catch (Exception e) {
-            mensaje.setValue("Error al marcar cita como atendida: " + e.getMessage());
-            Log.e(TAG, "Error marcando cita como atendida", e);
-        } finally {
-            loading.setValue(false);
-        }
+            } catch (Exception e) {
+                mensaje.postValue("Error al marcar cita como atendida: " + e.getMessage());
+                Log.e(TAG, "Error marcando cita como atendida", e);
+            } finally {
+                loading.postValue(false);
+            }
+        });
     }
 
     public void eliminarCita(int id) {
         loading.setValue(true);
-        try {
-            boolean resultado = citaRepository.eliminarCita(id);
+        executor.execute(() -> {
+            try {
+                boolean resultado = citaRepository().eliminarCita(id);
             
-            if (resultado) {
-                mensaje.setValue("Cita eliminada exitosamente");
-                cargarCitas();
-            } else {
-                mensaje.setValue("No se pudo eliminar la cita");
-            }
+                if (resultado) {
+                    mensaje.postValue("Cita eliminada exitosamente");
+                    confirmarEscritura();
+                    refrescarCitas();
+                } else {
+                    mensaje.postValue("No se pudo eliminar la cita");
+                }
             
-        } catch (Exception e) {
-            mensaje.setValue("Error al eliminar cita: " + e.getMessage());
-            Log.e(TAG, "Error eliminando cita", e);
-        } finally {
-            loading.setValue(false);
-        }
+            } catch (Exception e) {
+                mensaje.postValue("Error al eliminar cita: " + e.getMessage());
+                Log.e(TAG, "Error eliminando cita", e);
+            } finally {
+                loading.postValue(false);
+            }
+        });
     }
 
     public void setCitaActual(Cita cita) {
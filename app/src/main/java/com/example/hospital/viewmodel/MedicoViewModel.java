@@ -7,6 +7,7 @@ import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import com.example.hospital.HospitalApplication;
 import com.example.hospital.data.models.HorarioAtencion;
 import com.example.hospital.data.models.Medico;
 import com.example.hospital.data.repository.MedicoRepository;
@@ -16,19 +17,27 @@ import java.time.LocalTime;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MedicoViewModel extends AndroidViewModel {
     private static final String TAG = "MedicoViewModel";
+    private static final String ERROR_ESCRITURA = "Error: el cambio no se pudo guardar en el dispositivo";
     
-    private final MedicoRepository medicoRepository;
+    private final HospitalApplication app;
+    private final ExecutorService executor;
     private final MutableLiveData<List<Medico>> medicos;
     private final MutableLiveData<String> mensaje;
     private final MutableLiveData<Boolean> loading;
     private Medico medicoActual;
 
+    // Cada carga o filtro reemplaza al anterior: solo el de la generación vigente publica resultados
+    private final AtomicInteger generacion = new AtomicInteger();
+
     public MedicoViewModel(Application application) {
         super(application);
-        this.medicoRepository = new MedicoRepository(application.getApplicationContext());
+        this.app = HospitalApplication.from(application);
+        this.executor = app.getExecutor();
         this.medicos = new MutableLiveData<>();
         this.mensaje = new MutableLiveData<>();
         this.loading = new MutableLiveData<>();
@@ -48,19 +57,72 @@ public class MedicoViewModel extends AndroidViewModel {
         return loading;
     }
 
+    /**
+     * El repositorio se obtiene desde el hilo de fondo: la primera vez lee el archivo
+     */
+    private MedicoRepository medicoRepository() {
+        return app.getMedicoRepository();
+    }
+
+    /**
+     * Recarga la lista después de una escritura, sin reemplazar el mensaje de la operación
+     */
+    private void refrescarMedicos() {
+        int id = generacion.incrementAndGet();
+        List<Medico> lista = medicoRepository().getAllMedicos();
+        if (esVigente(id)) {
+            medicos.postValue(lista);
+        }
+    }
+
+    private boolean esVigente(int id) {
+        return generacion.get() == id;
+    }
+
+    /**
+     * Publica la lista y el mensaje si la consulta no fue reemplazada mientras se ejecutaba
+     */
+    private void publicar(int id, List<Medico> lista, String texto) {
+        if (esVigente(id)) {
+            medicos.postValue(lista);
+            mensaje.postValue(texto);
+        }
+    }
+
+    private void publicarError(int id, String texto) {
+        if (esVigente(id)) {
+            mensaje.postValue(texto);
+        }
+    }
+
+    /**
+     * Pide escribir ya el cambio recién hecho y avisa si no quedó en disco
+     */
+    private void confirmarEscritura() {
+        medicoRepository().flush(ok -> {
+            if (!ok) {
+                mensaje.postValue(ERROR_ESCRITURA);
+            }
+        });
+    }
+
     public void cargarMedicos() {
         loading.setValue(true);
-        try {
-            List<Medico> lista = medicoRepository.getAllMedicos();
-            medicos.setValue(lista);
-            mensaje.setValue("Médicos cargados: " + lista.size());
-            Log.d(TAG, "Cargados " + lista.size() + " médicos");
-        } catch (Exception e) {
-            mensaje.setValue("Error al cargar médicos: " + e.getMessage());
-            Log.e(TAG, "Error cargando médicos", e);
-        } finally {
-            loading.setValue(false);
-        }
+        int id = generacion.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                List<Medico> lista = medicoRepository().getAllMedicos();
+                publicar(id, lista, "Médicos cargados: " + lista.size());
+                Log.d(TAG, "Cargados " + lista.size() + " médicos");
+            } catch (Exception e) {
+                publicarError(id, "Error al cargar médicos: " + e.getMessage());
+                Log.e(TAG, "Error cargando médicos", e);
+            } finally {
+                if (esVigente(id)) {
+                    loading.postValue(false);
+                }
+            }
+        });
     }
 
     public void guardarMedico(String nombre, String apellido, String correo, 
@@ -117,75 +179,87 @@ public class MedicoViewModel extends AndroidViewModel {
             return;
         }
         
-        try {
-            if (esEdicion && medicoActual != null) {
-                medicoActual.setNombre(nombre.trim());
-                medicoActual.setApellido(apellido.trim());
-                medicoActual.setCorreo(correo.trim().toLowerCase());
-                medicoActual.setGenero(genero.trim());
-                medicoActual.setEspecialidad(especialidad.trim());
-                medicoActual.setHorarioAtencion(horarioAtencion);
-                medicoActual.setActivo(activo);
-                
-                boolean resultado = medicoRepository.actualizarMedico(medicoActual);
-                
-                if (resultado) {
-                    mensaje.setValue("Médico actualizado exitosamente");
-                    cargarMedicos();
+        Medico medicoEditado = esEdicion ? medicoActual : null;
+        executor.execute(() -> {
+            try {
+                if (medicoEditado != null) {
+                    // Se pasa una copia modificada: la instancia del cache solo la cambia el repositorio
+                    Medico modificado = new Medico(
+                        medicoEditado.getId(), nombre.trim(), apellido.trim(),
+                        correo.trim().toLowerCase(), medicoEditado.getCedulaString(),
+                        horarioAtencion, genero.trim(), especialidad.trim(), activo
+                    );
+                    
+                    boolean resultado = medicoRepository().actualizarMedico(modificado);
+                    
+                    if (resultado) {
+                        mensaje.postValue("Médico actualizado exitosamente");
+                        confirmarEscritura();
+                        refrescarMedicos();
+                    } else {
+                        mensaje.postValue("No se pudo actualizar el médico");
+                    }
                 } else {
-                    mensaje.setValue("No se pudo actualizar el médico");
+                    Medico nuevoMedico = new Medico(
+                        0, nombre.trim(), apellido.trim(), 
+                        correo.trim().toLowerCase(), cedula.trim(), 
+                        horarioAtencion, genero.trim(), especialidad.trim(), activo
+                    );
+                    
+                    boolean resultado = medicoRepository().guardarMedico(nuevoMedico);
+                    
+                    if (resultado) {
+                        mensaje.postValue("Médico guardado exitosamente");
+                        confirmarEscritura();
+                        refrescarMedicos();
+                    } else {
+                        mensaje.postValue("El médico ya está registrado");
+                    }
                 }
-            } else {
-                Medico nuevoMedico = new Medico(
-                    0, nombre.trim(), apellido.trim(), 
-                    correo.trim().toLowerCase(), cedula.trim(), 
-                    horarioAtencion, genero.trim(), especialidad.trim(), activo
-                );
                 
-                boolean resultado = medicoRepository.guardarMedico(nuevoMedico);
-                
-                if (resultado) {
-                    mensaje.setValue("Médico guardado exitosamente");
-                    cargarMedicos();
-                } else {
-                    mensaje.setValue("El médico ya está registrado");
-                }
+            } catch (Exception e) {
+                mensaje.postValue("Error al guardar médico: " + e.getMessage());
+                Log.e(TAG, "Error guardando médico", e);
+            } finally {
+                loading.postValue(false);
             }
-            
-        } catch (Exception e) {
-            mensaje.setValue("Error al guardar médico: " + e.getMessage());
-            Log.e(TAG, "Error guardando médico", e);
-        } finally {
-            loading.setValue(false);
-        }
+        });
     }
 
     public void filtrarPorEspecialidad(String especialidad) {
         loading.setValue(true);
-        try {
-            List<Medico> filtrados = medicoRepository.getMedicosPorEspecialidad(especialidad);
-            medicos.setValue(filtrados);
-            mensaje.setValue("Médicos con especialidad " + especialidad + ": " + filtrados.size());
-        } catch (Exception e) {
-            mensaje.setValue("Error al filtrar por especialidad: " + e.getMessage());
-            Log.e(TAG, "Error filtrando por especialidad", e);
-        } finally {
-            loading.setValue(false);
-        }
+        int id = generacion.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                List<Medico> filtrados = medicoRepository().getMedicosPorEspecialidad(especialidad);
+                publicar(id, filtrados, "Médicos con especialidad " + especialidad + ": " + filtrados.size());
+            } catch (Exception e) {
+                publicarError(id, "Error al filtrar por especialidad: " + e.getMessage());
+                Log.e(TAG, "Error filtrando por especialidad", e);
+            } finally {
+                if (esVigente(id)) {
+                    loading.postValue(false);
+                }
+            }
+        });
     }
 
     public void filtrarPorGenero(String genero) {
         loading.setValue(true);
-        try {
-            List<Medico> filtrados = medicoRepository.getMedicosPorGenero(genero);
-            medicos.setValue(filtrados);
-            mensaje.setValue("Médicos de género " + genero + ": " + filtrados.size());
-        } catch (Exception e) {
-            mensaje.setValue("Error al filtrar por género: " + e.getMessage());
-            Log.e(TAG, "Error filtrando por género", e);
-        } finally {
-            loading.setValue(false);
-        }
+        int id = generacion.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                List<Medico> filtrados = medicoRepository().getMedicosPorGenero(genero);
+                publicar(id, filtrados, "Médicos de género " + genero + ": " + filtrados.size());
+            } catch (Exception e) {
+                publicarError(id, "Error al filtrar por género: " + e.getMessage());
+                Log.e(TAG, "Error filtrando por género", e);
+            } finally {
+                if (esVigente(id)) {
+                    loading.postValue(false);
+                }
+            }
+        });
     }
 
     public void buscarPorCorreo(String correo) {
@@ -195,71 +269,84 @@ public class MedicoViewModel extends AndroidViewModel {
         }
         
         loading.setValue(true);
-        try {
-            Optional<Medico> encontrado = medicoRepository.getMedicoPorCorreo(correo.trim());
-            if (encontrado.isPresent()) {
-                medicos.setValue(List.of(encontrado.get()));
-                mensaje.setValue("Médico encontrado: " + encontrado.get().getNombre());
-            } else {
-                mensaje.setValue("Médico no encontrado");
-                medicos.setValue(List.of());
-            }
+        int id = generacion.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                Optional<Medico> encontrado = medicoRepository().getMedicoPorCorreo(correo.trim());
+                if (encontrado.isPresent()) {
+                    publicar(id, List.of(encontrado.get()), "Médico encontrado: " + encontrado.get().getNombre());
+                } else {
+                    publicar(id, List.of(), "Médico no encontrado");
+                }
             
-        } catch (Exception e) {
-            mensaje.setValue("Error al buscar médico: " + e.getMessage());
-            Log.e(TAG, "Error buscando médico", e);
-        } finally {
-            loading.setValue(false);
-        }
+            } catch (Exception e) {
+                publicarError(id, "Error al buscar médico: " + e.getMessage());
+                Log.e(TAG, "Error buscando médico", e);
+            } finally {
+                if (esVigente(id)) {
+                    loading.postValue(false);
+                }
+            }
+        });
     }
 
     public void eliminarMedico(int id) {
         loading.setValue(true);
-        try {
-            boolean resultado = medicoRepository.eliminarMedico(id);
+        executor.execute(() -> {
+            try {
+                boolean resultado = medicoRepository().eliminarMedico(id);
             
-            if (resultado) {
-                mensaje.setValue("Médico eliminado exitosamente");
-                cargarMedicos();
-            } else {
-                mensaje.setValue("No se pudo eliminar el médico");
-            }
+                if (resultado) {
+                    mensaje.postValue("Médico eliminado exitosamente");
+                    confirmarEscritura();
+                    refrescarMedicos();
+                } else {
+                    mensaje.postValue("No se pudo eliminar el médico");
+                }
             
-        } catch (Exception e) {
-            mensaje.setValue("Error al eliminar médico: " + e.getMessage());
-            Log.e(TAG, "Error eliminando médico", e);
-        } finally {
-            loading.setValue(false);
-        }
+            } catch (Exception e) {
+                mensaje.postValue("Error al eliminar médico: " + e.getMessage());
+                Log.e(TAG, "Error eliminando médico", e);
+            } finally {
+                loading.postValue(false);
+            }
+        });
     }
 
     public void activarDesactivarMedico(int id) {
         loading.setValue(true);
-        try {
-            Optional<Medico> medicoOpt = medicoRepository.getMedicoPorId(id);
-            if (medicoOpt.isPresent()) {
-                Medico medico = medicoOpt.get();
-                medico.setActivo(!medico.isActivo());
+        executor.execute(() -> {
+            try {
+                Optional<Medico> medicoOpt = medicoRepository().getMedicoPorId(id);
+                if (medicoOpt.isPresent()) {
+                    Medico medico = medicoOpt.get();
+                    Medico modificado = new Medico(
+                        medico.getId(), medico.getNombre(), medico.getApellido(),
+                        medico.getCorreo(), medico.getCedulaString(), medico.getHorarioAtencion(),
+                        medico.getGenero(), medico.getEspecialidad(), !medico.isActivo()
+                    );
                 
-                boolean resultado = medicoRepository.actualizarMedico(medico);
+                    boolean resultado = medicoRepository().actualizarMedico(modificado);
                 
-                if (resultado) {
-                    String estado = medico.isActivo() ? "activado" : "desactivado";
-                    mensaje.setValue("Médico " + estado + " exitosamente");
-                    cargarMedicos();
+                    if (resultado) {
+                        String estado = modificado.isActivo() ? "activado" : "desactivado";
+                        mensaje.postValue("Médico " + estado + " exitosamente");
+                        confirmarEscritura();
+                        refrescarMedicos();
+                    } else {
+                        mensaje.postValue("No se pudo actualizar el estado del médico");
+                    }
                 } else {
-                    mensaje.setValue("No se pudo actualizar el estado del médico");
+                    mensaje.postValue("Médico no encontrado");
                 }
-            } else {
-                mensaje.setValue("Médico no encontrado");
-            }
             
-        } catch (Exception e) {
-            mensaje.setValue("Error al cambiar estado: " + e.getMessage());
-            Log.e(TAG, "Error cambiando estado médico", e);
-        } finally {
-            loading.setValue(false);
-        }
+            } catch (Exception e) {
+                mensaje.postValue("Error al cambiar estado: " + e.getMessage());
+                Log.e(TAG, "Error cambiando estado médico", e);
+            } finally {
+                loading.postValue(false);
+            }
+        });
     }
 
     public void setMedicoActual(Medico medico) {
@@ -280,15 +367,19 @@ public class MedicoViewModel extends AndroidViewModel {
 
     public void cargarMedicosActivos() {
         loading.setValue(true);
-        try {
-            List<Medico> activos = medicoRepository.getMedicosActivos();
-            medicos.setValue(activos);
-            mensaje.setValue("Médicos activos: " + activos.size());
-        } catch (Exception e) {
-            mensaje.setValue("Error al cargar médicos activos: " + e.getMessage());
-            Log.e(TAG, "Error cargando médicos activos", e);
-        } finally {
-            loading.setValue(false);
-        }
+        int id = generacion.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                List<Medico> activos = medicoRepository().getMedicosActivos();
+                publicar(id, activos, "Médicos activos: " + activos.size());
+            } catch (Exception e) {
+                publicarError(id, "Error al cargar médicos activos: " + e.getMessage());
+                Log.e(TAG, "Error cargando médicos activos", e);
+            } finally {
+                if (esVigente(id)) {
+                    loading.postValue(false);
+                }
+            }
+        });
     }
 }
\ No newline at end of file
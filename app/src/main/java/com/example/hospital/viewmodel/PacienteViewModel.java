@@ -7,25 +7,44 @@ import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import com.example.hospital.HospitalApplication;
 import com.example.hospital.data.models.Paciente;
 import com.example.hospital.data.models.TipoSeguro;
 import com.example.hospital.data.repository.PacienteRepository;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class PacienteViewModel extends AndroidViewModel {
     private static final String TAG = "PacienteViewModel";
+    private static final String ERROR_ESCRITURA = "Error: el cambio no se pudo guardar en el dispositivo";
+    private static final int TAMANIO_PAGINA = 50;
     
-    private final PacienteRepository pacienteRepository;
+    private final HospitalApplication app;
+    private final ExecutorService executor;
     private final MutableLiveData<List<Paciente>> pacientes;
     private final MutableLiveData<String> mensaje;
     private final MutableLiveData<Boolean> loading;
     private Paciente pacienteActual;
 
+    // Paginación de la lista completa, igual que en CitaViewModel; aquí las páginas se piden
+    // por posición porque los pacientes se muestran en el orden en que fueron registrados
+    private final Object paginacion = new Object();
+    private final List<Paciente> pacientesCargados = new ArrayList<>();
+    private volatile boolean paginado;
+    private volatile boolean hayMasPacientes;
+    private final AtomicBoolean cargandoPagina = new AtomicBoolean();
+    // Cada carga o filtro reemplaza al anterior: solo el de la generación vigente publica resultados
+    private final AtomicInteger generacion = new AtomicInteger();
+
     public PacienteViewModel(Application application) {
         super(application);
-        this.pacienteRepository = new PacienteRepository(application.getApplicationContext());
+        this.app = HospitalApplication.from(application);
+        this.executor = app.getExecutor();
         this.pacientes = new MutableLiveData<>();
         this.mensaje = new MutableLiveData<>();
         this.loading = new MutableLiveData<>();
@@ -45,19 +64,120 @@ public class PacienteViewModel extends AndroidViewModel {
         return loading;
     }
 
+    /**
+     * El repositorio se obtiene desde el hilo de fondo: la primera vez lee el archivo
+     */
+    private PacienteRepository pacienteRepository() {
+        return app.getPacienteRepository();
+    }
+
+    /**
+     * Recarga la lista después de una escritura, sin reemplazar el mensaje de la operación.
+     * Se vuelven a leer tantos pacientes como los que ya estaban cargados.
+     */
+    private void refrescarPacientes() {
+        int id = generacion.incrementAndGet();
+        synchronized (paginacion) {
+            mostrarPrimeraPagina(id, Math.max(TAMANIO_PAGINA, paginado ? pacientesCargados.size() : 0));
+        }
+    }
+
+    private boolean esVigente(int id) {
+        return generacion.get() == id;
+    }
+
+    private void publicarMensaje(int id, String texto) {
+        if (esVigente(id)) {
+            mensaje.postValue(texto);
+        }
+    }
+
+    /**
+     * Vuelve a la lista completa mostrando los primeros {@code cantidad} pacientes
+     */
+    private void mostrarPrimeraPagina(int id, int cantidad) {
+        synchronized (paginacion) {
+            List<Paciente> pagina = pacienteRepository().getPacientesPagina(0, cantidad);
+            if (!esVigente(id)) {
+                return;
+            }
+            pacientesCargados.clear();
+            pacientesCargados.addAll(pagina);
+            paginado = true;
+            hayMasPacientes = pagina.size() == cantidad;
+            pacientes.postValue(new ArrayList<>(pacientesCargados));
+        }
+    }
+
+    private void mostrarFiltrados(int id, List<Paciente> filtrados) {
+        synchronized (paginacion) {
+            if (!esVigente(id)) {
+                return;
+            }
+            paginado = false;
+            pacientes.postValue(filtrados);
+        }
+    }
+
+    /**
+     * Pide escribir ya el cambio recién hecho y avisa si no quedó en disco
+     */
+    private void confirmarEscritura() {
+        pacienteRepository().flush(ok -> {
+            if (!ok) {
+                mensaje.postValue(ERROR_ESCRITURA);
+            }
+        });
+    }
+
     public void cargarPacientes() {
         loading.setValue(true);
-        try {
-            List<Paciente> lista = pacienteRepository.getAllPacientes();
-            pacientes.setValue(lista);
-            mensaje.setValue("pacientes cargados: " + lista.size());
-            Log.d(TAG, "Cargados " + lista.size() + " pacientes");
-        } catch (Exception e) {
-            mensaje.setValue("Error al cargar pacientes: " + e.getMessage());
-            Log.e(TAG, "Error cargando pacientes", e);
-        } finally {
-            loading.setValue(false);
+        int id = generacion.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                mostrarPrimeraPagina(id, TAMANIO_PAGINA);
+                int total = pacienteRepository().getTotalPacientes();
+                publicarMensaje(id, "pacientes cargados: " + total);
+                Log.d(TAG, "Cargados " + total + " pacientes");
+            } catch (Exception e) {
+                publicarMensaje(id, "Error al cargar pacientes: " + e.getMessage());
+                Log.e(TAG, "Error cargando pacientes", e);
+            } finally {
+                if (esVigente(id)) {
+                    loading.postValue(false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Agrega la siguiente página al final de la lista; la UI lo llama al acercarse al final
+     */
+    public void cargarMasPacientes() {
+        if (!paginado || !hayMasPacientes || !cargandoPagina.compareAndSet(false, true)) {
+            return;
         }
+        // La página se descarta si mientras tanto se filtró o se recargó la lista
+        int id = generacion.get();
+        executor.execute(() -> {
+            try {
+                synchronized (paginacion) {
+                    if (!esVigente(id) || !paginado || !hayMasPacientes) {
+                        return;
+                    }
+                    List<Paciente> pagina = pacienteRepository().getPacientesPagina(pacientesCargados.size(),
+                            TAMANIO_PAGINA);
+                    pacientesCargados.addAll(pagina);
+                    hayMasPacientes = pagina.size() == TAMANIO_PAGINA;
+                    pacientes.postValue(new ArrayList<>(pacientesCargados));
+                }
+            } catch (Exception e) {
+                mensaje.postValue("Error al cargar más pacientes: " + e.getMessage());
+                Log.e(TAG, "Error cargando más pacientes", e);
+            } finally {
+                cargandoPagina.set(false);
+            }
+        });
     }
 
     public void guardarPaciente(String nombre, String apellido, String correo, 
@@ -93,71 +213,83 @@ public class PacienteViewModel extends AndroidViewModel {
             return;
         }
         
-        try {
-            if (esEdicion && pacienteActual != null) {
-                pacienteActual.setNombre(nombre.trim());
-                pacienteActual.setApellido(apellido.trim());
-                pacienteActual.setCorreo(correo.trim().toLowerCase());
-                pacienteActual.setTipoSeguro(tipoSeguro);
-                
-                boolean resultado = pacienteRepository.actualizarPaciente(pacienteActual);
+        Paciente pacienteEditado = esEdicion ? pacienteActual : null;
+        executor.execute(() -> {
+            try {
+                if (pacienteEditado != null) {
+                    // El repositorio modifica su instancia con el lock, como reprogramarCita
+                    boolean resultado = pacienteRepository().editarPaciente(pacienteEditado.getId(),
+                            nombre.trim(), apellido.trim(), correo.trim().toLowerCase(), tipoSeguro);
                 
-                if (resultado) {
-                    mensaje.setValue("Paciente actualizado exitosamente");
-                    cargarPacientes();
+                    if (resultado) {
+                        mensaje.postValue("Paciente actualizado exitosamente");
+                        confirmarEscritura();
+                        refrescarPacientes();
+                    } else {
+                        mensaje.postValue("No se pudo actualizar el paciente");
+                    }
                 } else {
-                    mensaje.setValue("No se pudo actualizar el paciente");
-                }
-            } else {
-                Paciente nuevoPaciente = new Paciente(
-                    0, nombre.trim(), apellido.trim(), 
-                    correo.trim().toLowerCase(), cedula.trim(), tipoSeguro
-                );
+                    Paciente nuevoPaciente = new Paciente(
+                        0, nombre.trim(), apellido.trim(), 
+                        correo.trim().toLowerCase(), cedula.trim(), tipoSeguro
+                    );
                 
-                boolean resultado = pacienteRepository.guardarPaciente(nuevoPaciente);
+                    boolean resultado = pacienteRepository().guardarPaciente(nuevoPaciente);
                 
-                if (resultado) {
-                    mensaje.setValue("Paciente guardado exitosamente");
-                    cargarPacientes();
-                } else {
-                    mensaje.setValue("El paciente ya está registrado");
+                    if (resultado) {
+                        mensaje.postValue("Paciente guardado exitosamente");
+                        confirmarEscritura();
+                        refrescarPacientes();
+                    } else {
+                        mensaje.postValue("El paciente ya está registrado");
+                    }
                 }
-            }
             
-        } catch (Exception e) {
-            mensaje.setValue("Error al guardar paciente: " + e.getMessage());
-            Log.e(TAG, "Error guardando paciente", e);
-        } finally {
-            loading.setValue(false);
-        }
+            } catch (Exception e) {
+                mensaje.postValue("Error al guardar paciente: " + e.getMessage());
+                Log.e(TAG, "Error guardando paciente", e);
+            } finally {
+                loading.postValue(false);
+            }
+        });
     }
 
     public void filtrarPorTipoSeguro(TipoSeguro tipoSeguro) {
         loading.setValue(true);
-        try {
-            List<Paciente> filtrados = pacienteRepository.getPacientesPorTipoSeguro(tipoSeguro);
-            pacientes.setValue(filtrados);
-            mensaje.setValue("Pacientes con seguro " + tipoSeguro.name() + ": " + filtrados.size());
-        } catch (Exception e) {
-            mensaje.setValue("Error al filtrar por seguro: " + e.getMessage());
-            Log.e(TAG, "Error filtrando por seguro", e);
-        } finally {
-            loading.setValue(false);
-        }
+        int id = generacion.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                List<Paciente> filtrados = pacienteRepository().getPacientesPorTipoSeguro(tipoSeguro);
+                mostrarFiltrados(id, filtrados);
+                publicarMensaje(id, "Pacientes con seguro " + tipoSeguro.name() + ": " + filtrados.size());
+            } catch (Exception e) {
+                publicarMensaje(id, "Error al filtrar por seguro: " + e.getMessage());
+                Log.e(TAG, "Error filtrando por seguro", e);
+            } finally {
+                if (esVigente(id)) {
+                    loading.postValue(false);
+                }
+            }
+        });
     }
 
     public void buscarPacientes(String campo, String termino) {
         loading.setValue(true);
-        try {
-            List<Paciente> resultados = pacienteRepository.buscarPacientes(campo, termino);
-            pacientes.setValue(resultados);
-            mensaje.setValue("Resultados de búsqueda: " + resultados.size() + " pacientes");
-        } catch (Exception e) {
-            mensaje.setValue("Error en búsqueda: " + e.getMessage());
-            Log.e(TAG, "Error en búsqueda", e);
-        } finally {
-            loading.setValue(false);
-        }
+        int id = generacion.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                List<Paciente> resultados = pacienteRepository().buscarPacientes(campo, termino);
+                mostrarFiltrados(id, resultados);
+                publicarMensaje(id, "Resultados de búsqueda: " + resultados.size() + " pacientes");
+            } catch (Exception e) {
+                publicarMensaje(id, "Error en búsqueda: " + e.getMessage());
+                Log.e(TAG, "Error en búsqueda", e);
+            } finally {
+                if (esVigente(id)) {
+                    loading.postValue(false);
+                }
+            }
+        });
     }
 
     public void buscarPorCorreo(String correo) {
@@ -167,68 +299,80 @@ public class PacienteViewModel extends AndroidViewModel {
         }
         
         loading.setValue(true);
-        try {
-            Optional<Paciente> encontrado = pacienteRepository.getPacientePorCorreo(correo.trim());
-            if (encontrado.isPresent()) {
-                pacientes.setValue(List.of(encontrado.get()));
-                mensaje.setValue("Paciente encontrado: " + encontrado.get().getNombre());
-            } else {
-                mensaje.setValue("Paciente no encontrado");
-                pacientes.setValue(List.of());
-            }
+        int id = generacion.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                Optional<Paciente> encontrado = pacienteRepository().getPacientePorCorreo(correo.trim());
+                if (encontrado.isPresent()) {
+                    mostrarFiltrados(id, List.of(encontrado.get()));
+                    publicarMensaje(id, "Paciente encontrado: " + encontrado.get().getNombre());
+                } else {
+                    publicarMensaje(id, "Paciente no encontrado");
+                    mostrarFiltrados(id, List.of());
+                }
             
-        } catch (Exception e) {
-            mensaje.setValue("Error al buscar paciente: " + e.getMessage());
-            Log.e(TAG, "Error buscando paciente", e);
-        } finally {
-            loading.setValue(false);
-        }
+            } catch (Exception e) {
+                publicarMensaje(id, "Error al buscar paciente: " + e.getMessage());
+                Log.e(TAG, "Error buscando paciente", e);
+            } finally {
+                if (esVigente(id)) {
+                    loading.postValue(false);
+                }
+            }
+        });
     }
 
     public void eliminarPaciente(int id) {
         loading.setValue(true);
-        try {
-            boolean resultado = pacienteRepository.eliminarPaciente(id);
+        executor.execute(() -> {
+            try {
+                // Se elimina a través de las asignaciones para que las del paciente se conserven
+                boolean resultado = app.getTratamientoPacienteRepository().eliminarPaciente(id);
             
-            if (resultado) {
-                mensaje.setValue("Paciente eliminado exitosamente");
-                cargarPacientes();
-            } else {
-                mensaje.setValue("No se pudo eliminar el paciente");
-            }
+                if (resultado) {
+                    mensaje.postValue("Paciente eliminado exitosamente");
+                    confirmarEscritura();
+                    refrescarPacientes();
+                } else {
+                    mensaje.postValue("No se pudo eliminar el paciente");
+                }
             
-        } catch (Exception e) {
-            mensaje.setValue("Error al eliminar paciente: " + e.getMessage());
-            Log.e(TAG, "Error eliminando paciente", e);
-        } finally {
-            loading.setValue(false);
-        }
+            } catch (Exception e) {
+                mensaje.postValue("Error al eliminar paciente: " + e.getMessage());
+                Log.e(TAG, "Error eliminando paciente", e);
+            } finally {
+                loading.postValue(false);
+            }
+        });
     }
     
     public void eliminarPaciente(String cedula) {
         loading.setValue(true);
-        try {
-            Optional<Paciente> pacienteOpt = pacienteRepository.getPacientePorCedula(cedula);
-            if (pacienteOpt.isPresent()) {
-                Paciente paciente = pacienteOpt.get();
-                boolean resultado = pacienteRepository.eliminarPaciente(paciente.getId());
+        executor.execute(() -> {
+            try {
+                Optional<Paciente> pacienteOpt = pacienteRepository().getPacientePorCedula(cedula);
+                if (pacienteOpt.isPresent()) {
+                    Paciente paciente = pacienteOpt.get();
+                    boolean resultado = app.getTratamientoPacienteRepository().eliminarPaciente(paciente.getId());
                 
-                if (resultado) {
-                    mensaje.setValue("Paciente eliminado exitosamente");
-                    cargarPacientes();
+                    if (resultado) {
+                        mensaje.postValue("Paciente eliminado exitosamente");
+                        confirmarEscritura();
+                        refrescarPacientes();
+                    } else {
+                        mensaje.postValue("No se pudo eliminar el paciente");
+                    }
                 } else {
-                    mensaje.setValue("No se pudo eliminar el paciente");
+                    mensaje.postValue("Paciente no encontrado");
                 }
-            } else {
-                mensaje.setValue("Paciente no encontrado");
-            }
             
-        } catch (Exception e) {
-            mensaje.setValue("Error al eliminar paciente: " + e.getMessage());
-            Log.e(TAG, "Error eliminando paciente", e);
-        } finally {
-            loading.setValue(false);
-        }
+            } catch (Exception e) {
+                mensaje.postValue("Error al eliminar paciente: " + e.getMessage());
+                Log.e(TAG, "Error eliminando paciente", e);
+            } finally {
+                loading.postValue(false);
+            }
+        });
     }
 
     public void setPacienteActual(Paciente paciente) {
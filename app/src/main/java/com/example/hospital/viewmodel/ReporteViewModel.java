@@ -7,14 +7,16 @@ import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import com.example.hospital.HospitalApplication;
 import com.example.hospital.data.models.Cita;
+import com.example.hospital.data.models.EstadisticasGenerales;
 import com.example.hospital.data.models.TratamientoPaciente;
 import com.example.hospital.data.repository.ReporteRepository;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 /**
  * ViewModel para manejar la lógica de los reportes del sistema hospitalario
@@ -23,7 +25,8 @@ import java.util.Map;
 public class ReporteViewModel extends AndroidViewModel {
     private static final String TAG = "ReporteViewModel";
     
-    private final ReporteRepository reporteRepository;
+    private final HospitalApplication app;
+    private final ExecutorService executor;
     
     // LiveData para los diferentes reportes
     private final MutableLiveData<Map<String, Integer>> citasPorEspecialidad;
@@ -39,7 +42,7 @@ public class ReporteViewModel extends AndroidViewModel {
     private final MutableLiveData<List<String>> pacientesConTratamientos;
     
     // LiveData para estadísticas generales
-    private final MutableLiveData<Map<String, Object>> estadisticasGenerales;
+    private final MutableLiveData<EstadisticasGenerales> estadisticasGenerales;
     
     // LiveData comunes
     private final MutableLiveData<String> mensaje;
@@ -47,7 +50,8 @@ public class ReporteViewModel extends AndroidViewModel {
 
     public ReporteViewModel(Application application) {
         super(application);
-        this.reporteRepository = new ReporteRepository(application.getApplicationContext());
+        this.app = HospitalApplication.from(application);
+        this.executor = app.getExecutor();
         
         // Inicializar LiveData
         this.citasPorEspecialidad = new MutableLiveData<>();
@@ -106,7 +110,7 @@ public class ReporteViewModel extends AndroidViewModel {
         return pacientesConTratamientos;
     }
 
-    public LiveData<Map<String, Object>> getEstadisticasGenerales() {
+    public LiveData<EstadisticasGenerales> getEstadisticasGenerales() {
         return estadisticasGenerales;
     }
 
@@ -118,27 +122,48 @@ public class ReporteViewModel extends AndroidViewModel {
         return loading;
     }
 
+    // El repositorio de reportes se obtiene desde el hilo de fondo: la primera vez crea y carga
+    // los repositorios de citas, médicos y tratamientos
+
+    private ReporteRepository reporteRepository() {
+        return app.getReporteRepository();
+    }
+
+    /**
+     * Ejecuta la tarea en el executor mostrando el indicador de carga mientras dura
+     */
+    private void enSegundoPlano(Runnable tarea) {
+        loading.setValue(true);
+        executor.execute(() -> {
+            try {
+                tarea.run();
+            } finally {
+                loading.postValue(false);
+            }
+        });
+    }
+
     /**
      * MÉTODOS PARA REPORTE 1: CITAS ATENDIDAS POR ESPECIALIDAD
      */
     public void cargarCitasAtendidasPorEspecialidad() {
-        loading.setValue(true);
-        
+        enSegundoPlano(this::generarCitasAtendidasPorEspecialidad);
+    }
+
+    private void generarCitasAtendidasPorEspecialidad() {
         try {
-            Map<String, Integer> datos = reporteRepository.getCitasAtendidasPorEspecialidad();
-            citasPorEspecialidad.setValue(datos);
+            Map<String, Integer> datos = reporteRepository().getCitasAtendidasPorEspecialidad();
+            citasPorEspecialidad.postValue(datos);
             
             int totalCitas = datos.values().stream().mapToInt(Integer::intValue).sum();
-            mensaje.setValue("Reporte generado: " + totalCitas + " citas atendidas en " + 
+            mensaje.postValue("Reporte generado: " + totalCitas + " citas atendidas en " + 
                             datos.size() + " especialidades");
             
             Log.d(TAG, "Reporte de citas por especialidad cargado exitosamente");
             
         } catch (Exception e) {
-            mensaje.setValue("Error al cargar reporte de citas por especialidad: " + e.getMessage());
+            mensaje.postValue("Error al cargar reporte de citas por especialidad: " + e.getMessage());
             Log.e(TAG, "Error cargando citas por especialidad", e);
-        } finally {
-            loading.setValue(false);
         }
     }
 
@@ -148,46 +173,44 @@ public class ReporteViewModel extends AndroidViewModel {
             return;
         }
 
-        loading.setValue(true);
-        
-        try {
-            List<Cita> citas = reporteRepository.getCitasAtendidasPorEspecialidad(especialidad);
-            citasFiltradasPorEspecialidad.setValue(citas);
-            
-            mensaje.setValue("Se encontraron " + citas.size() + " citas atendidas para la especialidad: " + 
-                            especialidad);
-            
-            Log.d(TAG, "Citas filtradas por especialidad: " + especialidad);
-            
-        } catch (Exception e) {
-            mensaje.setValue("Error al filtrar citas por especialidad: " + e.getMessage());
-            Log.e(TAG, "Error filtrando citas por especialidad", e);
-        } finally {
-            loading.setValue(false);
-        }
+        enSegundoPlano(() -> {
+            try {
+                List<Cita> citas = reporteRepository().getCitasAtendidasPorEspecialidad(especialidad);
+                citasFiltradasPorEspecialidad.postValue(citas);
+                
+                mensaje.postValue("Se encontraron " + citas.size() + " citas atendidas para la especialidad: " + 
+                                especialidad);
+                
+                Log.d(TAG, "Citas filtradas por especialidad: " + especialidad);
+                
+            } catch (Exception e) {
+                mensaje.postValue("Error al filtrar citas por especialidad: " + e.getMessage());
+                Log.e(TAG, "Error filtrando citas por especialidad", e);
+            }
+        });
     }
 
     /**
      * MÉTODOS PARA REPORTE 2: INGRESOS TOTALES POR TRATAMIENTOS
      */
     public void cargarIngresosTotalesPorTratamientos() {
-        loading.setValue(true);
-        
+        enSegundoPlano(this::generarIngresosTotalesPorTratamientos);
+    }
+
+    private void generarIngresosTotalesPorTratamientos() {
         try {
-            Map<String, Double> datos = reporteRepository.getIngresosTotalesPorTratamientos();
-            ingresosPorTratamientos.setValue(datos);
+            Map<String, Double> datos = reporteRepository().getIngresosTotalesPorTratamientos();
+            ingresosPorTratamientos.postValue(datos);
             
             double totalIngresos = datos.values().stream().mapToDouble(Double::doubleValue).sum();
-            mensaje.setValue("Ingresos totales: $" + String.format("%.2f", totalIngresos) + 
+            mensaje.postValue("Ingresos totales: $" + String.format("%.2f", totalIngresos) + 
                             " en " + datos.size() + " tipos de tratamiento");
             
             Log.d(TAG, "Reporte de ingresos por tratamientos cargado exitosamente");
             
         } catch (Exception e) {
-            mensaje.setValue("Error al cargar reporte de ingresos por tratamientos: " + e.getMessage());
+            mensaje.postValue("Error al cargar reporte de ingresos por tratamientos: " + e.getMessage());
             Log.e(TAG, "Error cargando ingresos por tratamientos", e);
-        } finally {
-            loading.setValue(false);
         }
     }
 
@@ -197,45 +220,43 @@ public class ReporteViewModel extends AndroidViewModel {
             return;
         }
 
-        loading.setValue(true);
-        
-        try {
-            double ingresos = reporteRepository.getIngresosPorTipoTratamiento(tipo);
-            ingresosFiltradosPorTipo.setValue(ingresos);
-            
-            mensaje.setValue("Ingresos por " + tipo + ": $" + String.format("%.2f", ingresos));
-            
-            Log.d(TAG, "Ingresos filtrados por tipo: " + tipo);
-            
-        } catch (Exception e) {
-            mensaje.setValue("Error al calcular ingresos por tipo: " + e.getMessage());
-            Log.e(TAG, "Error calculando ingresos por tipo", e);
-        } finally {
-            loading.setValue(false);
-        }
+        enSegundoPlano(() -> {
+            try {
+                double ingresos = reporteRepository().getIngresosPorTipoTratamiento(tipo);
+                ingresosFiltradosPorTipo.postValue(ingresos);
+                
+                mensaje.postValue("Ingresos por " + tipo + ": $" + String.format("%.2f", ingresos));
+                
+                Log.d(TAG, "Ingresos filtrados por tipo: " + tipo);
+                
+            } catch (Exception e) {
+                mensaje.postValue("Error al calcular ingresos por tipo: " + e.getMessage());
+                Log.e(TAG, "Error calculando ingresos por tipo", e);
+            }
+        });
     }
 
     /**
      * MÉTODOS PARA REPORTE 3: HISTORIAL DE TRATAMIENTOS POR PACIENTES
      */
     public void cargarHistorialTratamientosPorPaciente() {
-        loading.setValue(true);
-        
+        enSegundoPlano(this::generarHistorialTratamientosPorPaciente);
+    }
+
+    private void generarHistorialTratamientosPorPaciente() {
         try {
-            Map<String, List<TratamientoPaciente>> datos = reporteRepository.getHistorialTratamientosPorPaciente();
-            historialPorPaciente.setValue(datos);
+            Map<String, List<TratamientoPaciente>> datos = reporteRepository().getHistorialTratamientosPorPaciente();
+            historialPorPaciente.postValue(datos);
             
             int totalTratamientos = datos.values().stream().mapToInt(List::size).sum();
-            mensaje.setValue("Historial cargado: " + totalTratamientos + " tratamientos para " + 
+            mensaje.postValue("Historial cargado: " + totalTratamientos + " tratamientos para " + 
                             datos.size() + " pacientes");
             
             Log.d(TAG, "Historial de tratamientos por paciente cargado exitosamente");
             
         } catch (Exception e) {
-            mensaje.setValue("Error al cargar historial de tratamientos: " + e.getMessage());
+            mensaje.postValue("Error al cargar historial de tratamientos: " + e.getMessage());
             Log.e(TAG, "Error cargando historial de tratamientos", e);
-        } finally {
-            loading.setValue(false);
         }
     }
 
@@ -246,94 +267,79 @@ public class ReporteViewModel extends AndroidViewModel {
             return;
         }
 
-        loading.setValue(true);
-        
-        try {
-            List<TratamientoPaciente> historial = reporteRepository.getHistorialTratamientosPorPaciente(correoPaciente);
-            historialFiltradoPorPaciente.setValue(historial);
-            
-            mensaje.setValue("Se encontraron " + historial.size() + " tratamientos para el paciente: " + 
-                            correoPaciente);
-            
-            Log.d(TAG, "Historial filtrado por paciente: " + correoPaciente);
-            
-        } catch (Exception e) {
-            mensaje.setValue("Error al filtrar historial por paciente: " + e.getMessage());
-            Log.e(TAG, "Error filtrando historial por paciente", e);
-        } finally {
-            loading.setValue(false);
-        }
+        enSegundoPlano(() -> {
+            try {
+                List<TratamientoPaciente> historial = reporteRepository().getHistorialTratamientosPorPaciente(correoPaciente);
+                historialFiltradoPorPaciente.postValue(historial);
+                
+                mensaje.postValue("Se encontraron " + historial.size() + " tratamientos para el paciente: " + 
+                                correoPaciente);
+                
+                Log.d(TAG, "Historial filtrado por paciente: " + correoPaciente);
+                
+            } catch (Exception e) {
+                mensaje.postValue("Error al filtrar historial por paciente: " + e.getMessage());
+                Log.e(TAG, "Error filtrando historial por paciente", e);
+            }
+        });
     }
 
     /**
      * MÉTODOS PARA CARGAR DATOS DE FILTROS
      */
     public void cargarDatosIniciales() {
-        loading.setValue(true);
-        
+        enSegundoPlano(this::generarDatosIniciales);
+    }
+
+    private void generarDatosIniciales() {
         try {
             Log.d(TAG, "Iniciando carga de datos iniciales...");
+            ReporteRepository reporteRepository = reporteRepository();
             
             // Cargar datos para los filtros - con manejo de errores individual
             try {
-                especialidadesDisponibles.setValue(reporteRepository.getEspecialidadesDisponibles());
+                especialidadesDisponibles.postValue(reporteRepository.getEspecialidadesDisponibles());
                 Log.d(TAG, "Especialidades cargadas");
             } catch (Exception e) {
                 Log.e(TAG, "Error cargando especialidades", e);
-                especialidadesDisponibles.setValue(new ArrayList<>());
+                especialidadesDisponibles.postValue(new ArrayList<>());
             }
             
             try {
-                tiposTratamientoDisponibles.setValue(reporteRepository.getTiposTratamientoDisponibles());
+                tiposTratamientoDisponibles.postValue(reporteRepository.getTiposTratamientoDisponibles());
                 Log.d(TAG, "Tipos de tratamiento cargados");
             } catch (Exception e) {
                 Log.e(TAG, "Error cargando tipos de tratamiento", e);
-                tiposTratamientoDisponibles.setValue(new ArrayList<>());
+                tiposTratamientoDisponibles.postValue(new ArrayList<>());
             }
             
             try {
-                pacientesConTratamientos.setValue(reporteRepository.getPacientesConTratamientos());
+                pacientesConTratamientos.postValue(reporteRepository.getPacientesConTratamientos());
                 Log.d(TAG, "Pacientes con tratamientos cargados");
             } catch (Exception e) {
                 Log.e(TAG, "Error cargando pacientes con tratamientos", e);
-                pacientesConTratamientos.setValue(new ArrayList<>());
+                pacientesConTratamientos.postValue(new ArrayList<>());
             }
             
             try {
-                estadisticasGenerales.setValue(reporteRepository.getEstadisticasGenerales());
+                estadisticasGenerales.postValue(reporteRepository.getEstadisticasGenerales());
                 Log.d(TAG, "Estadísticas generales cargadas");
             } catch (Exception e) {
                 Log.e(TAG, "Error cargando estadísticas generales", e);
-                estadisticasGenerales.setValue(new HashMap<>());
+                estadisticasGenerales.postValue(EstadisticasGenerales.vacias());
             }
             
-            // Cargar reportes iniciales - con manejo de errores
-            try {
-                cargarCitasAtendidasPorEspecialidad();
-            } catch (Exception e) {
-                Log.e(TAG, "Error en carga de citas por especialidad", e);
-            }
-            
-            try {
-                cargarIngresosTotalesPorTratamientos();
-            } catch (Exception e) {
-                Log.e(TAG, "Error en carga de ingresos por tratamientos", e);
-            }
-            
-            try {
-                cargarHistorialTratamientosPorPaciente();
-            } catch (Exception e) {
-                Log.e(TAG, "Error en carga de historial por paciente", e);
-            }
+            // Cargar reportes iniciales; cada uno maneja sus propios errores
+            generarCitasAtendidasPorEspecialidad();
+            generarIngresosTotalesPorTratamientos();
+            generarHistorialTratamientosPorPaciente();
             
             Log.d(TAG, "Datos iniciales cargados exitosamente");
-            mensaje.setValue("Reportes del sistema hospitalario cargados");
+            mensaje.postValue("Reportes del sistema hospitalario cargados");
             
         } catch (Exception e) {
             Log.e(TAG, "Error general cargando datos iniciales", e);
-            mensaje.setValue("Error al cargar datos iniciales: " + e.getMessage());
-        } finally {
-            loading.setValue(false);
+            mensaje.postValue("Error al cargar datos iniciales: " + e.getMessage());
         }
     }
 
@@ -377,7 +383,7 @@ public class ReporteViewModel extends AndroidViewModel {
     }
 
     public String generarResumenReportes() {
-        Map<String, Object> estadisticas = estadisticasGenerales.getValue();
+        EstadisticasGenerales estadisticas = estadisticasGenerales.getValue();
         if (estadisticas == null) {
             return "📊 RESUMEN DEL SISTEMA\n\nCargando estadísticas...";
         }
@@ -386,19 +392,18 @@ public class ReporteViewModel extends AndroidViewModel {
             StringBuilder resumen = new StringBuilder();
             resumen.append("📊 RESUMEN DEL SISTEMA\n\n");
             resumen.append("🏥 CITAS:\n");
-            resumen.append("  • Total: ").append(estadisticas.getOrDefault("totalCitas", 0)).append("\n");
-            resumen.append("  • Atendidas: ").append(estadisticas.getOrDefault("citasAtendidas", 0)).append("\n");
-            resumen.append("  • Programadas: ").append(estadisticas.getOrDefault("citasProgramadas", 0)).append("\n");
-            resumen.append("  • Canceladas: ").append(estadisticas.getOrDefault("citasCanceladas", 0)).append("\n\n");
+            resumen.append("  • Total: ").append(estadisticas.getTotalCitas()).append("\n");
+            resumen.append("  • Atendidas: ").append(estadisticas.getCitasAtendidas()).append("\n");
+            resumen.append("  • Programadas: ").append(estadisticas.getCitasProgramadas()).append("\n");
+            resumen.append("  • Canceladas: ").append(estadisticas.getCitasCanceladas()).append("\n\n");
             
             resumen.append("💊 TRATAMIENTOS:\n");
-            resumen.append("  • Asignados: ").append(estadisticas.getOrDefault("totalTratamientosAsignados", 0)).append("\n");
-            Double ingresos = (Double) estadisticas.getOrDefault("ingresosTotales", 0.0);
-            resumen.append("  • Ingresos totales: ").append(formatearMoneda(ingresos)).append("\n\n");
+            resumen.append("  • Asignados: ").append(estadisticas.getTotalTratamientosAsignados()).append("\n");
+            resumen.append("  • Ingresos totales: ").append(formatearMoneda(estadisticas.getIngresosTotales())).append("\n\n");
             
             resumen.append("👥 PERSONAL:\n");
-            resumen.append("  • Médicos: ").append(estadisticas.getOrDefault("totalMedicos", 0)).append("\n");
-            resumen.append("  • Pacientes: ").append(estadisticas.getOrDefault("totalPacientes", 0)).append("\n");
+            resumen.append("  • Médicos: ").append(estadisticas.getTotalMedicos()).append("\n");
+            resumen.append("  • Pacientes: ").append(estadisticas.getTotalPacientes()).append("\n");
             
             return resumen.toString();
         } catch (Exception e) {
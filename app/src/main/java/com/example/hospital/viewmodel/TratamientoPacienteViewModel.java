@@ -7,6 +7,7 @@ import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import com.example.hospital.HospitalApplication;
 import com.example.hospital.data.models.Cirugia;
 import com.example.hospital.data.models.Medicacion;
 import com.example.hospital.data.models.Paciente;
@@ -18,25 +19,114 @@ import com.example.hospital.data.repository.TratamientoPacienteRepository;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 public class TratamientoPacienteViewModel extends AndroidViewModel {
+    private static final String ERROR_ESCRITURA = "Error: el cambio no se pudo guardar en el dispositivo";
 
-    private final TratamientoPacienteRepository repository;
-    private final PacienteRepository pacienteRepository;
+    private final HospitalApplication app;
+    private final ExecutorService executor;
 
     // LiveData para la UI
     private final MutableLiveData<List<TratamientoPaciente>> tratamientos = new MutableLiveData<>();
     private final MutableLiveData<String> mensaje = new MutableLiveData<>();
     private final MutableLiveData<Boolean> loading = new MutableLiveData<>();
     private final MutableLiveData<Paciente> pacienteActual = new MutableLiveData<>();
+    // Pacientes para el autocompletado del formulario
+    private final MutableLiveData<List<Paciente>> pacientesDisponibles = new MutableLiveData<>();
 
     // Filtros
     private String filtroActual = "TODOS";
 
+    // Cada consulta nueva reemplaza a la anterior: solo la de la generación vigente publica resultados
+    private final AtomicInteger generacion = new AtomicInteger();
+    private Future<?> consultaActual;
+
     public TratamientoPacienteViewModel(@NonNull Application application) {
         super(application);
-        repository = new TratamientoPacienteRepository(application);
-        pacienteRepository = new PacienteRepository(application);
+        app = HospitalApplication.from(application);
+        executor = app.getExecutor();
+        cargarPacientesDisponibles();
+    }
+
+    // Los repositorios se obtienen desde el hilo de fondo: la primera vez leen su archivo
+
+    private TratamientoPacienteRepository repository() {
+        return app.getTratamientoPacienteRepository();
+    }
+
+    private PacienteRepository pacienteRepository() {
+        return app.getPacienteRepository();
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        generacion.incrementAndGet();
+        if (consultaActual != null) {
+            consultaActual.cancel(false);
+        }
+    }
+
+    /**
+     * Ejecuta una consulta en segundo plano cancelando la anterior. Una consulta que ya empezó
+     * no se interrumpe (podría estar leyendo el archivo), pero su resultado se descarta.
+     */
+    private void consultar(ConsultaTratamientos consulta) {
+        int id = generacion.incrementAndGet();
+        if (consultaActual != null) {
+            consultaActual.cancel(false);
+        }
+        consultaActual = executor.submit(() -> {
+            try {
+                consulta.ejecutar(id);
+            } finally {
+                if (esVigente(id)) {
+                    loading.postValue(false);
+                }
+            }
+        });
+    }
+
+    private boolean esVigente(int id) {
+        return generacion.get() == id;
+    }
+
+    /**
+     * Publica la lista y el mensaje si la consulta no fue reemplazada mientras se ejecutaba
+     */
+    private void publicar(int id, List<TratamientoPaciente> lista, String texto) {
+        if (esVigente(id)) {
+            tratamientos.postValue(lista);
+            mensaje.postValue(texto);
+        }
+    }
+
+    private void publicarError(int id, String texto) {
+        if (esVigente(id)) {
+            mensaje.postValue(texto);
+        }
+    }
+
+    private interface ConsultaTratamientos {
+        void ejecutar(int id);
+    }
+
+    /**
+     * Pide escribir ya las asignaciones y el historial de pacientes recién modificados y avisa
+     * si alguno no quedó en disco
+     */
+    private void confirmarEscritura() {
+        Consumer<Boolean> avisarFalla = ok -> {
+            if (!ok) {
+                mensaje.postValue(ERROR_ESCRITURA);
+            }
+        };
+        repository().flush(avisarFalla);
+        pacienteRepository().flush(avisarFalla);
     }
 
     // Métodos para observación desde la UI
@@ -56,6 +146,23 @@ public class TratamientoPacienteViewModel extends AndroidViewModel {
         return pacienteActual;
     }
 
+    public LiveData<List<Paciente>> getPacientesDisponibles() {
+        return pacientesDisponibles;
+    }
+
+    /**
+     * Carga en segundo plano los pacientes que sugiere el formulario
+     */
+    public void cargarPacientesDisponibles() {
+        executor.execute(() -> {
+            try {
+                pacientesDisponibles.postValue(pacienteRepository().getAllPacientes());
+            } catch (Exception e) {
+                mensaje.postValue("Error al cargar pacientes: " + e.getMessage());
+            }
+        });
+    }
+
 
 
     // Métodos de carga de datos
@@ -63,77 +170,64 @@ public class TratamientoPacienteViewModel extends AndroidViewModel {
         loading.setValue(true);
         filtroActual = "TODOS";
         
-        new Thread(() -> {
+        consultar(id -> {
             try {
-                Thread.sleep(500); // Simular carga
-                List<TratamientoPaciente> lista = repository.cargarTodos();
+                List<TratamientoPaciente> lista = repository().cargarTodos();
                 
                 // Ordenar por fecha descendente
                 lista.sort((a, b) -> b.getFechaAsignacion().compareTo(a.getFechaAsignacion()));
                 
-                tratamientos.postValue(lista);
-                mensaje.postValue("Mostrando todos los tratamientos");
+                publicar(id, lista, "Mostrando todos los tratamientos");
             } catch (Exception e) {
-                mensaje.postValue("Error al cargar tratamientos: " + e.getMessage());
-            } finally {
-                loading.postValue(false);
+                publicarError(id, "Error al cargar tratamientos: " + e.getMessage());
             }
-        }).start();
+        });
     }
 
     public void cargarPorPaciente(String correoPaciente) {
         loading.setValue(true);
         filtroActual = "PACIENTE";
         
-        new Thread(() -> {
+        consultar(id -> {
             try {
-                Thread.sleep(300); // Simular carga
-                
                 // Primero validar que el paciente existe
-                Paciente paciente = pacienteRepository.buscarPorCorreo(correoPaciente);
+                Paciente paciente = pacienteRepository().buscarPorCorreo(correoPaciente);
                 if (paciente == null) {
-                    mensaje.postValue("No se encontró un paciente con el correo: " + correoPaciente);
-                    tratamientos.postValue(new ArrayList<>());
+                    publicar(id, new ArrayList<>(), "No se encontró un paciente con el correo: " + correoPaciente);
                     return;
                 }
                 
-                pacienteActual.postValue(paciente);
-                
-                List<TratamientoPaciente> lista = repository.cargarPorPaciente(correoPaciente);
+                List<TratamientoPaciente> lista = repository().cargarPorPaciente(correoPaciente);
                 
                 // Ordenar por fecha descendente
                 lista.sort((a, b) -> b.getFechaAsignacion().compareTo(a.getFechaAsignacion()));
                 
-                tratamientos.postValue(lista);
-                mensaje.postValue("Tratamientos de " + paciente.getNombre() + " " + paciente.getApellido());
+                if (esVigente(id)) {
+                    pacienteActual.postValue(paciente);
+                }
+                publicar(id, lista, "Tratamientos de " + paciente.getNombre() + " " + paciente.getApellido());
             } catch (Exception e) {
-                mensaje.postValue("Error al cargar tratamientos del paciente: " + e.getMessage());
-            } finally {
-                loading.postValue(false);
+                publicarError(id, "Error al cargar tratamientos del paciente: " + e.getMessage());
             }
-        }).start();
+        });
     }
 
     public void cargarPorEstado(String estado) {
         loading.setValue(true);
         filtroActual = "ESTADO";
         
-        new Thread(() -> {
+        consultar(id -> {
             try {
-                Thread.sleep(300);
-                List<TratamientoPaciente> lista = repository.cargarPorEstado(estado);
+                List<TratamientoPaciente> lista = repository().cargarPorEstado(estado);
                 
                 // Ordenar por fecha descendente
                 lista.sort((a, b) -> b.getFechaAsignacion().compareTo(a.getFechaAsignacion()));
                 
-                tratamientos.postValue(lista);
-                mensaje.postValue("Tratamientos con estado: " + estado);
+                publicar(id, lista, "Tratamientos con estado: " + estado);
             } catch (Exception e) {
-                mensaje.postValue("Error al cargar tratamientos por estado: " + e.getMessage());
-            } finally {
-                loading.postValue(false);
+                publicarError(id, "Error al cargar tratamientos por estado: " + e.getMessage());
             }
-        }).start();
+        });
     }
 
     // Métodos para guardar tratamientos
@@ -149,10 +243,10 @@ public class TratamientoPacienteViewModel extends AndroidViewModel {
             return;
         }
 
-        new Thread(() -> {
+        executor.execute(() -> {
             try {
                 // Validar que el paciente existe
-                Paciente paciente = pacienteRepository.buscarPorCorreo(correoPaciente);
+                Paciente paciente = pacienteRepository().buscarPorCorreo(correoPaciente);
                 if (paciente == null) {
                     mensaje.postValue("No se encontró un paciente con el correo: " + correoPaciente);
                     return;
@@ -170,25 +264,29 @@ public class TratamientoPacienteViewModel extends AndroidViewModel {
                 tp.setObservaciones("Tratamiento agregado desde la aplicación");
 
                 // Guardar
-                repository.guardar(tp);
-                
-                // Actualizar paciente
-                paciente.agregarTratamiento(tp);
-                pacienteRepository.actualizarPaciente(paciente);
+                if (repository().guardar(tp) == null) {
+                    mensaje.postValue("Error al asignar el tratamiento");
+                    return;
+                }
+
+                // Actualizar el historial del paciente con el lock de su repositorio
+                pacienteRepository().agregarTratamiento(paciente.getId(), tp);
 
                 mensaje.postValue("Tratamiento asignado exitosamente a " + paciente.getNombre() + " " + paciente.getApellido());
+                confirmarEscritura();
                 
-                // Actualizar la lista actual de forma más eficiente
+                // Se publica una copia: la lista actual puede estar mostrándose en la UI
                 List<TratamientoPaciente> listaActual = tratamientos.getValue();
                 if (listaActual != null) {
-                    listaActual.add(0, tp); // Agregar al principio
-                    tratamientos.postValue(listaActual);
+                    List<TratamientoPaciente> nuevaLista = new ArrayList<>(listaActual);
+                    nuevaLista.add(0, tp); // Agregar al principio
+                    tratamientos.postValue(nuevaLista);
                 }
 
             } catch (Exception e) {
                 mensaje.postValue("Error al guardar tratamiento: " + e.getMessage());
             }
-        }).start();
+        });
     }
 
     private Tratamiento crearTratamiento(String tipo, String nombre, String valor1, String valor2, String valor3) {
@@ -222,17 +320,19 @@ public class TratamientoPacienteViewModel extends AndroidViewModel {
     }
 
     public void eliminarTratamientoPaciente(TratamientoPaciente tratamiento) {
-        new Thread(() -> {
+        executor.execute(() -> {
             try {
-                boolean eliminado = repository.eliminar(tratamiento.getId());
+                boolean eliminado = repository().eliminar(tratamiento.getId());
                 if (eliminado) {
                     mensaje.postValue("Tratamiento eliminado exitosamente");
+                    confirmarEscritura();
                     
-                    // Actualizar la lista actual de forma más eficiente
+                    // Se publica una copia: la lista actual puede estar mostrándose en la UI
                     List<TratamientoPaciente> listaActual = tratamientos.getValue();
                     if (listaActual != null) {
-                        listaActual.removeIf(tp -> tp.getId() == tratamiento.getId());
-                        tratamientos.postValue(listaActual);
+                        List<TratamientoPaciente> nuevaLista = new ArrayList<>(listaActual);
+                        nuevaLista.removeIf(tp -> tp.getId() == tratamiento.getId());
+                        tratamientos.postValue(nuevaLista);
                     }
                 } else {
                     mensaje.postValue("No se pudo eliminar el tratamiento");
@@ -240,37 +340,35 @@ public class TratamientoPacienteViewModel extends AndroidViewModel {
             } catch (Exception e) {
                 mensaje.postValue("Error al eliminar tratamiento: " + e.getMessage());
             }
-        }).start();
+        });
     }
 
     public void cambiarEstadoTratamiento(TratamientoPaciente tratamiento, String nuevoEstado) {
-        new Thread(() -> {
+        executor.execute(() -> {
             try {
-                tratamiento.setEstado(nuevoEstado);
-                repository.guardar(tratamiento);
+                // El repositorio cambia el registro con su lock y devuelve el estado anterior
+                String estadoAnterior = repository().cambiarEstado(tratamiento.getId(), nuevoEstado);
+                if (estadoAnterior == null) {
+                    mensaje.postValue("No se encontró el tratamiento");
+                    return;
+                }
                 mensaje.postValue("Estado actualizado a: " + nuevoEstado);
-                
-                // Actualizar la lista actual de forma más eficiente
+                confirmarEscritura();
+
+                // Se publica una copia: la lista actual puede estar mostrándose en la UI
                 List<TratamientoPaciente> listaActual = tratamientos.getValue();
                 if (listaActual != null) {
-                    // Si estamos filtrando por estado y cambiamos a un estado diferente, lo removemos
-                    if ("ESTADO".equals(filtroActual) && !tratamiento.getEstado().equals(nuevoEstado)) {
-                        listaActual.removeIf(tp -> tp.getId() == tratamiento.getId());
-                    } else {
-                        // Si no, simplemente actualizamos el estado
-                        for (TratamientoPaciente tp : listaActual) {
-                            if (tp.getId() == tratamiento.getId()) {
-                                tp.setEstado(nuevoEstado);
-                                break;
-                            }
-                        }
+                    List<TratamientoPaciente> nuevaLista = new ArrayList<>(listaActual);
+                    // Si estamos filtrando por estado y el tratamiento cambió de estado, sale del filtro
+                    if ("ESTADO".equals(filtroActual) && !estadoAnterior.equals(nuevoEstado)) {
+                        nuevaLista.removeIf(tp -> tp.getId() == tratamiento.getId());
                     }
-                    tratamientos.postValue(listaActual);
+                    tratamientos.postValue(nuevaLista);
                 }
             } catch (Exception e) {
                 mensaje.postValue("Error al cambiar estado: " + e.getMessage());
             }
-        }).start();
+        });
     }
 
     // Métodos de utilidad
@@ -280,8 +378,8 @@ public class TratamientoPacienteViewModel extends AndroidViewModel {
         
         return lista.stream()
                 .filter(tp -> "ACTIVO".equals(tp.getEstado()))
-                .mapToDouble(TratamientoPaciente::getCostoTotal)
-                .sum();
+                .mapToLong(TratamientoPaciente::getCostoTotalCentavos)
+                .sum() / 100.0;
     }
 
     public int getTotalTratamientos() {
@@ -294,21 +392,28 @@ public class TratamientoPacienteViewModel extends AndroidViewModel {
         if (lista == null || lista.isEmpty()) return null;
         
         return lista.stream()
-                .max((a, b) -> Double.compare(a.getCostoTotal(), b.getCostoTotal()))
+                .max((a, b) -> Long.compare(a.getCostoTotalCentavos(), b.getCostoTotalCentavos()))
                 .orElse(null);
     }
 
     public void buscarTratamientos(String termino) {
-        new Thread(() -> {
+        filtroActual = "BUSQUEDA";
+        String buscado = termino.toLowerCase();
+
+        // Cada tecla reemplaza la búsqueda anterior
+        consultar(id -> {
             try {
-                List<TratamientoPaciente> todos = repository.cargarTodos();
+                List<TratamientoPaciente> todos = repository().cargarTodos();
                 List<TratamientoPaciente> filtrados = new ArrayList<>();
                 
                 for (TratamientoPaciente tp : todos) {
-                    if (tp.getTratamiento().getNombre().toLowerCase().contains(termino.toLowerCase()) ||
-                        tp.getPaciente().getNombre().toLowerCase().contains(termino.toLowerCase()) ||
-                        tp.getPaciente().getApellido().toLowerCase().contains(termino.toLowerCase()) ||
-                        tp.getPaciente().getCorreo().toLowerCase().contains(termino.toLowerCase())) {
+                    if (!esVigente(id)) {
+                        return;
+                    }
+                    if (tp.getTratamiento().getNombre().toLowerCase().contains(buscado) ||
+                        tp.getPaciente().getNombre().toLowerCase().contains(buscado) ||
+                        tp.getPaciente().getApellido().toLowerCase().contains(buscado) ||
+                        tp.getPaciente().getCorreo().toLowerCase().contains(buscado)) {
                         filtrados.add(tp);
                     }
                 }
@@ -316,13 +421,11 @@ public class TratamientoPacienteViewModel extends AndroidViewModel {
                 // Ordenar por fecha descendente
                 filtrados.sort((a, b) -> b.getFechaAsignacion().compareTo(a.getFechaAsignacion()));
                 
-                tratamientos.postValue(filtrados);
-                mensaje.postValue("Resultados de búsqueda: " + filtrados.size() + " tratamientos");
-                filtroActual = "BUSQUEDA";
+                publicar(id, filtrados, "Resultados de búsqueda: " + filtrados.size() + " tratamientos");
             } catch (Exception e) {
-                mensaje.postValue("Error en búsqueda: " + e.getMessage());
+                publicarError(id, "Error en búsqueda: " + e.getMessage());
             }
-        }).start();
+        });
     }
 
     public void limpiarFiltros() {
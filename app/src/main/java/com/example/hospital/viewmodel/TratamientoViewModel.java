@@ -7,6 +7,7 @@ import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import com.example.hospital.HospitalApplication;
 import com.example.hospital.data.models.Cirugia;
 import com.example.hospital.data.models.Medicacion;
 import com.example.hospital.data.models.Terapia;
@@ -14,19 +15,27 @@ import com.example.hospital.data.models.Tratamiento;
 import com.example.hospital.data.repository.TratamientoRepository;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TratamientoViewModel extends AndroidViewModel {
     private static final String TAG = "TratamientoViewModel";
+    private static final String ERROR_ESCRITURA = "Error: el cambio no se pudo guardar en el dispositivo";
     
-    private final TratamientoRepository tratamientoRepository;
+    private final HospitalApplication app;
+    private final ExecutorService executor;
     private final MutableLiveData<List<Tratamiento>> tratamientos;
     private final MutableLiveData<String> mensaje;
     private final MutableLiveData<Boolean> loading;
     private Tratamiento tratamientoActual;
 
+    // Cada carga o filtro reemplaza al anterior: solo el de la generación vigente publica resultados
+    private final AtomicInteger generacion = new AtomicInteger();
+
     public TratamientoViewModel(Application application) {
         super(application);
-        this.tratamientoRepository = new TratamientoRepository(application.getApplicationContext());
+        this.app = HospitalApplication.from(application);
+        this.executor = app.getExecutor();
         this.tratamientos = new MutableLiveData<>();
         this.mensaje = new MutableLiveData<>();
         this.loading = new MutableLiveData<>();
@@ -46,19 +55,72 @@ public class TratamientoViewModel extends AndroidViewModel {
         return loading;
     }
 
+    /**
+     * El repositorio se obtiene desde el hilo de fondo: la primera vez lee el archivo
+     */
+    private TratamientoRepository tratamientoRepository() {
+        return app.getTratamientoRepository();
+    }
+
+    /**
+     * Recarga la lista después de una escritura, sin reemplazar el mensaje de la operación
+     */
+    private void refrescarTratamientos() {
+        int id = generacion.incrementAndGet();
+        List<Tratamiento> lista = tratamientoRepository().getAllTratamientos();
+        if (esVigente(id)) {
+            tratamientos.postValue(lista);
+        }
+    }
+
+    private boolean esVigente(int id) {
+        return generacion.get() == id;
+    }
+
+    /**
+     * Publica la lista y el mensaje si la consulta no fue reemplazada mientras se ejecutaba
+     */
+    private void publicar(int id, List<Tratamiento> lista, String texto) {
+        if (esVigente(id)) {
+            tratamientos.postValue(lista);
+            mensaje.postValue(texto);
+        }
+    }
+
+    private void publicarError(int id, String texto) {
+        if (esVigente(id)) {
+            mensaje.postValue(texto);
+        }
+    }
+
+    /**
+     * Pide escribir ya el cambio recién hecho y avisa si no quedó en disco
+     */
+    private void confirmarEscritura() {
+        tratamientoRepository().flush(ok -> {
+            if (!ok) {
+                mensaje.postValue(ERROR_ESCRITURA);
+            }
+        });
+    }
+
     public void cargarTratamientos() {
         loading.setValue(true);
-        try {
-            List<Tratamiento> lista = tratamientoRepository.getAllTratamientos();
-            tratamientos.setValue(lista);
-            mensaje.setValue("Tratamientos cargados: " + lista.size());
-            Log.d(TAG, "Cargados " + lista.size() + " tratamientos");
-        } catch (Exception e) {
-            mensaje.setValue("Error al cargar tratamientos: " + e.getMessage());
-            Log.e(TAG, "Error cargando tratamientos", e);
-        } finally {
-            loading.setValue(false);
-        }
+        int id = generacion.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                List<Tratamiento> lista = tratamientoRepository().getAllTratamientos();
+                publicar(id, lista, "Tratamientos cargados: " + lista.size());
+                Log.d(TAG, "Cargados " + lista.size() + " tratamientos");
+            } catch (Exception e) {
+                publicarError(id, "Error al cargar tratamientos: " + e.getMessage());
+                Log.e(TAG, "Error cargando tratamientos", e);
+            } finally {
+                if (esVigente(id)) {
+                    loading.postValue(false);
+                }
+            }
+        });
     }
 
     public void guardarTratamiento(String nombre, String duracionStr, String precioStr, String tipo) {
@@ -93,6 +155,7 @@ public class TratamientoViewModel extends AndroidViewModel {
             return;
         }
         
+        Tratamiento nuevoTratamiento;
         try {
             int duracion = Integer.parseInt(duracionStr.trim());
             double precio = Double.parseDouble(precioStr.trim());
@@ -109,7 +172,6 @@ public class TratamientoViewModel extends AndroidViewModel {
                 return;
             }
             
-            Tratamiento nuevoTratamiento;
             switch (tipo) {
                 case "Cirugía":
                     nuevoTratamiento = new Cirugia(nombre.trim(), duracion, precio);
@@ -125,114 +187,146 @@ public class TratamientoViewModel extends AndroidViewModel {
                     loading.setValue(false);
                     return;
             }
-            
-            boolean resultado;
-            if (esEdicion && tratamientoActual != null) {
-                // Mantener el ID del tratamiento original
-                nuevoTratamiento.setnuevoId(tratamientoActual.getId());
-                resultado = tratamientoRepository.actualizarTratamiento(nuevoTratamiento);
-                
-                if (resultado) {
-                    mensaje.setValue("Tratamiento actualizado exitosamente");
-                    cargarTratamientos();
-                } else {
-                    mensaje.setValue("No se pudo actualizar el tratamiento");
-                }
-            } else {
-                resultado = tratamientoRepository.guardarTratamiento(nuevoTratamiento);
-                
-                if (resultado) {
-                    mensaje.setValue("Tratamiento guardado exitosamente");
-                    cargarTratamientos();
-                } else {
-                    mensaje.setValue("No se pudo guardar el tratamiento");
-                }
-            }
-            
         } catch (NumberFormatException e) {
             mensaje.setValue("Error: Formato de número inválido");
-        } catch (Exception e) {
-            mensaje.setValue("Error al guardar tratamiento: " + e.getMessage());
-            Log.e(TAG, "Error guardando tratamiento", e);
-        } finally {
             loading.setValue(false);
+            return;
         }
+
+        if (esEdicion && tratamientoActual != null) {
+            // Mantener el ID del tratamiento original
+            nuevoTratamiento.setnuevoId(tratamientoActual.getId());
+        }
+        boolean actualizar = esEdicion && tratamientoActual != null;
+
+        executor.execute(() -> {
+            try {
+                boolean resultado;
+                if (actualizar) {
+                    resultado = tratamientoRepository().actualizarTratamiento(nuevoTratamiento);
+                    
+                    if (resultado) {
+                        mensaje.postValue("Tratamiento actualizado exitosamente");
+                        confirmarEscritura();
+                        refrescarTratamientos();
+                    } else {
+                        mensaje.postValue("No se pudo actualizar el tratamiento");
+                    }
+                } else {
+                    resultado = tratamientoRepository().guardarTratamiento(nuevoTratamiento);
+                    
+                    if (resultado) {
+                        mensaje.postValue("Tratamiento guardado exitosamente");
+                        confirmarEscritura();
+                        refrescarTratamientos();
+                    } else {
+                        mensaje.postValue("No se pudo guardar el tratamiento");
+                    }
+                }
+                
+            } catch (Exception e) {
+                mensaje.postValue("Error al guardar tratamiento: " + e.getMessage());
+                Log.e(TAG, "Error guardando tratamiento", e);
+            } finally {
+                loading.postValue(false);
+            }
+        });
     }
 
     public void filtrarPorTipo(String tipo) {
         loading.setValue(true);
-        try {
-            List<Tratamiento> filtrados = tratamientoRepository.getTratamientosPorTipo(tipo);
-            tratamientos.setValue(filtrados);
-            mensaje.setValue("Tratamientos de tipo " + tipo + ": " + filtrados.size());
-        } catch (Exception e) {
-            mensaje.setValue("Error al filtrar por tipo: " + e.getMessage());
-            Log.e(TAG, "Error filtrando por tipo", e);
-        } finally {
-            loading.setValue(false);
-        }
+        int id = generacion.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                List<Tratamiento> filtrados = tratamientoRepository().getTratamientosPorTipo(tipo);
+                publicar(id, filtrados, "Tratamientos de tipo " + tipo + ": " + filtrados.size());
+            } catch (Exception e) {
+                publicarError(id, "Error al filtrar por tipo: " + e.getMessage());
+                Log.e(TAG, "Error filtrando por tipo", e);
+            } finally {
+                if (esVigente(id)) {
+                    loading.postValue(false);
+                }
+            }
+        });
     }
 
     public void buscarTratamientos(String termino) {
         loading.setValue(true);
-        try {
-            List<Tratamiento> resultados = tratamientoRepository.buscarTratamientos(termino);
-            tratamientos.setValue(resultados);
-            mensaje.setValue("Resultados de búsqueda: " + resultados.size() + " tratamientos");
-        } catch (Exception e) {
-            mensaje.setValue("Error en búsqueda: " + e.getMessage());
-            Log.e(TAG, "Error en búsqueda", e);
-        } finally {
-            loading.setValue(false);
-        }
+        int id = generacion.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                List<Tratamiento> resultados = tratamientoRepository().buscarTratamientos(termino);
+                publicar(id, resultados, "Resultados de búsqueda: " + resultados.size() + " tratamientos");
+            } catch (Exception e) {
+                publicarError(id, "Error en búsqueda: " + e.getMessage());
+                Log.e(TAG, "Error en búsqueda", e);
+            } finally {
+                if (esVigente(id)) {
+                    loading.postValue(false);
+                }
+            }
+        });
     }
 
     public void filtrarPorPrecioMaximo(double precioMax) {
         loading.setValue(true);
-        try {
-            List<Tratamiento> filtrados = tratamientoRepository.getTratamientosPorPrecioMaximo(precioMax);
-            tratamientos.setValue(filtrados);
-            mensaje.setValue("Tratamientos con precio máximo $" + precioMax + ": " + filtrados.size());
-        } catch (Exception e) {
-            mensaje.setValue("Error al filtrar por precio: " + e.getMessage());
-            Log.e(TAG, "Error filtrando por precio", e);
-        } finally {
-            loading.setValue(false);
-        }
+        int id = generacion.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                List<Tratamiento> filtrados = tratamientoRepository().getTratamientosPorPrecioMaximo(precioMax);
+                publicar(id, filtrados, "Tratamientos con precio máximo $" + precioMax + ": " + filtrados.size());
+            } catch (Exception e) {
+                publicarError(id, "Error al filtrar por precio: " + e.getMessage());
+                Log.e(TAG, "Error filtrando por precio", e);
+            } finally {
+                if (esVigente(id)) {
+                    loading.postValue(false);
+                }
+            }
+        });
     }
 
     public void filtrarPorDuracionMaxima(int duracionMax) {
         loading.setValue(true);
-        try {
-            List<Tratamiento> filtrados = tratamientoRepository.getTratamientosPorDuracionMaxima(duracionMax);
-            tratamientos.setValue(filtrados);
-            mensaje.setValue("Tratamientos con duración máxima " + duracionMax + ": " + filtrados.size());
-        } catch (Exception e) {
-            mensaje.setValue("Error al filtrar por duración: " + e.getMessage());
-            Log.e(TAG, "Error filtrando por duración", e);
-        } finally {
-            loading.setValue(false);
-        }
+        int id = generacion.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                List<Tratamiento> filtrados = tratamientoRepository().getTratamientosPorDuracionMaxima(duracionMax);
+                publicar(id, filtrados, "Tratamientos con duración máxima " + duracionMax + ": " + filtrados.size());
+            } catch (Exception e) {
+                publicarError(id, "Error al filtrar por duración: " + e.getMessage());
+                Log.e(TAG, "Error filtrando por duración", e);
+            } finally {
+                if (esVigente(id)) {
+                    loading.postValue(false);
+                }
+            }
+        });
     }
 
     public void eliminarTratamiento(Tratamiento tratamiento) {
         loading.setValue(true);
-        try {
-            boolean resultado = tratamientoRepository.eliminarTratamiento(tratamiento);
+        executor.execute(() -> {
+            try {
+                // Se elimina a través de las asignaciones para que las que lo usan se conserven
+                boolean resultado = app.getTratamientoPacienteRepository().eliminarTratamiento(tratamiento);
             
-            if (resultado) {
-                mensaje.setValue("Tratamiento eliminado exitosamente");
-                cargarTratamientos();
-            } else {
-                mensaje.setValue("No se pudo eliminar el tratamiento");
-            }
+                if (resultado) {
+                    mensaje.postValue("Tratamiento eliminado exitosamente");
+                    confirmarEscritura();
+                    refrescarTratamientos();
+                } else {
+                    mensaje.postValue("No se pudo eliminar el tratamiento");
+                }
             
-        } catch (Exception e) {
-            mensaje.setValue("Error al eliminar tratamiento: " + e.getMessage());
-            Log.e(TAG, "Error eliminando tratamiento", e);
-        } finally {
-            loading.setValue(false);
-        }
+            } catch (Exception e) {
+                mensaje.postValue("Error al eliminar tratamiento: " + e.getMessage());
+                Log.e(TAG, "Error eliminando tratamiento", e);
+            } finally {
+                loading.postValue(false);
+            }
+        });
     }
 
     // Métodos específicos para cada tipo
@@ -250,15 +344,15 @@ public class TratamientoViewModel extends AndroidViewModel {
 
     // Métodos para estadísticas
     public int getTotalTratamientos() {
-        return tratamientoRepository.getTotalTratamientos();
+        return tratamientoRepository().getTotalTratamientos();
     }
 
     public double getCostoPromedio() {
-        return tratamientoRepository.getCostoPromedio();
+        return tratamientoRepository().getCostoPromedio();
     }
 
     public Tratamiento getTratamientoMasCaro() {
-        return tratamientoRepository.getTratamientoMasCaro();
+        return tratamientoRepository().getTratamientoMasCaro();
     }
 
     public void setTratamientoActual(Tratamiento tratamiento) {
@@ -279,14 +373,14 @@ public class TratamientoViewModel extends AndroidViewModel {
 
     // Métodos útiles para obtener tratamientos específicos
     public List<Cirugia> getCirugias() {
-        return tratamientoRepository.getAllCirugias();
+        return tratamientoRepository().getAllCirugias();
     }
 
     public List<Medicacion> getMedicaciones() {
-        return tratamientoRepository.getAllMedicaciones();
+        return tratamientoRepository().getAllMedicaciones();
     }
 
     public List<Terapia> getTerapias() {
-        return tratamientoRepository.getAllTerapias();
+        return tratamientoRepository().getAllTerapias();
     }
 }
\ No newline at end of file
@@ -0,0 +1,152 @@
+package com.example.hospital.data.repository;
+
+import com.example.hospital.data.models.Cita;
+import com.example.hospital.data.models.EstadoCita;
+import com.example.hospital.data.models.HorarioAtencion;
+import com.example.hospital.data.models.Medico;
+import com.example.hospital.data.storage.BinaryCodecs;
+import com.example.hospital.data.storage.FileStorageManager;
+import com.example.hospital.data.storage.TestFilesContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CitaRepositoryTest {
+    private static final String ARCHIVO = "citas.dat";
+
+    private TestFilesContext context;
+
+    @Before
+    public void setUp() throws IOException {
+        context = new TestFilesContext();
+    }
+
+    @After
+    public void tearDown() {
+        context.delete();
+    }
+
+    @Test
+    public void load_renumbersRepeatedIdsAndIndexesEveryCita() throws Exception {
+        // Ids asignados con tamaño + 1 después de eliminar una cita
+        Cita atendida = cita(2, "ana@x.com", DayOfWeek.MONDAY, 9);
+        atendida.setEstadoCita(EstadoCita.ATENDIDA);
+        new FileStorageManager(context).saveList(ARCHIVO, Arrays.asList(
+                cita(1, "ana@x.com", DayOfWeek.MONDAY, 8),
+                cita(2, "luis@x.com", DayOfWeek.TUESDAY, 8),
+                atendida), BinaryCodecs.CITA);
+
+        CitaRepository repository = abrir();
+
+        List<Cita> citas = repository.getAllCitas();
+        assertEquals(3, ids(citas).size());
+        assertEquals(3, repository.getCitasPorMedico("medico@x.com").size());
+        assertEquals(2, repository.getCitasPorPaciente("ana@x.com").size());
+        assertEquals(2, repository.getCitasPorDia("MONDAY").size());
+        assertEquals(Integer.valueOf(1), repository.getConteoPorEstado().get(EstadoCita.ATENDIDA));
+        assertEquals(Integer.valueOf(1), repository.getAtendidasPorMedico().get("medico@x.com"));
+        assertTrue(repository.horarioOcupado("medico@x.com", DayOfWeek.MONDAY, LocalTime.of(9, 0), 0));
+
+        // Los ids nuevos quedan guardados: al reabrir no se renumera otra vez
+        CitaRepository reabierto = abrir();
+        assertEquals(ids(citas), ids(reabierto.getAllCitas()));
+        assertEquals(3, reabierto.getTotalCitas());
+    }
+
+    @Test
+    public void getCitasDespuesDe_pagesOverRenumberedCitas() throws Exception {
+        new FileStorageManager(context).saveList(ARCHIVO, Arrays.asList(
+                cita(1, "a@x.com", DayOfWeek.MONDAY, 8),
+                cita(1, "b@x.com", DayOfWeek.MONDAY, 9),
+                cita(2, "c@x.com", DayOfWeek.MONDAY, 10),
+                cita(2, "d@x.com", DayOfWeek.MONDAY, 11)), BinaryCodecs.CITA);
+        CitaRepository repository = abrir();
+
+        List<Cita> paginadas = new ArrayList<>();
+        int ultimoId = 0;
+        List<Cita> pagina;
+        while (!(pagina = repository.getCitasDespuesDe(ultimoId, 3)).isEmpty()) {
+            paginadas.addAll(pagina);
+            ultimoId = pagina.get(pagina.size() - 1).getIdCita();
+        }
+
+        assertEquals(ids(repository.getAllCitas()), ids(paginadas));
+        assertEquals(4, paginadas.size());
+    }
+
+    @Test
+    public void guardarCita_neverReusesRenumberedIds() throws Exception {
+        new FileStorageManager(context).saveList(ARCHIVO, Arrays.asList(
+                cita(1, "a@x.com", DayOfWeek.MONDAY, 8),
+                cita(1, "b@x.com", DayOfWeek.MONDAY, 9)), BinaryCodecs.CITA);
+        CitaRepository repository = abrir();
+
+        assertTrue(repository.guardarCita(cita(0, "c@x.com", DayOfWeek.FRIDAY, 8)));
+
+        assertEquals(3, ids(repository.getAllCitas()).size());
+    }
+
+    @Test
+    public void horarioOcupado_followsEditedSchedule() {
+        MedicoRepository medicos = new MedicoRepository(context);
+        assertTrue(medicos.guardarMedico(new Medico(0, "Luis", "Pérez", "medico@x.com", "0102030405",
+                horario(30), "M", "Cardiología", true)));
+        CitaRepository repository = new CitaRepository(context, medicos);
+        assertEquals(CitaRepository.ResultadoReserva.RESERVADA,
+                repository.reservarCita(new Cita(0, LocalTime.of(9, 30), DayOfWeek.MONDAY, "ana@x.com", "medico@x.com")));
+        assertFalse(repository.horarioOcupado("medico@x.com", DayOfWeek.MONDAY, LocalTime.of(9, 0), 0));
+
+        // Con turnos de una hora la cita de las 9:30 queda en el turno de las 9:00
+        Medico medico = medicos.getMedicoPorCorreo("medico@x.com").get();
+        assertTrue(medicos.actualizarMedico(new Medico(medico.getId(), "Luis", "Pérez", "medico@x.com",
+                "0102030405", horario(60), "M", "Cardiología", true)));
+
+        assertTrue(repository.horarioOcupado("medico@x.com", DayOfWeek.MONDAY, LocalTime.of(9, 0), 0));
+        assertEquals(CitaRepository.ResultadoReserva.OCUPADA,
+                repository.reservarCita(new Cita(0, LocalTime.of(9, 0), DayOfWeek.MONDAY, "luis@x.com", "medico@x.com")));
+        assertFalse(repository.horarioOcupado("medico@x.com", DayOfWeek.MONDAY, LocalTime.of(10, 0), 0));
+
+        // Y al volver a turnos de media hora las 9:00 quedan libres otra vez
+        assertTrue(medicos.actualizarMedico(new Medico(medico.getId(), "Luis", "Pérez", "medico@x.com",
+                "0102030405", horario(30), "M", "Cardiología", true)));
+        assertFalse(repository.horarioOcupado("medico@x.com", DayOfWeek.MONDAY, LocalTime.of(9, 0), 0));
+        assertTrue(repository.horarioOcupado("medico@x.com", DayOfWeek.MONDAY, LocalTime.of(9, 30), 0));
+    }
+
+    private static HorarioAtencion horario(int duracionCita) {
+        return new HorarioAtencion(LocalTime.of(8, 0), LocalTime.of(12, 0), EnumSet.of(DayOfWeek.MONDAY), duracionCita);
+    }
+
+    private CitaRepository abrir() {
+        CitaRepository repository = new CitaRepository(context, new MedicoRepository(context));
+        assertTrue(repository.flush());
+        return repository;
+    }
+
+    private static Cita cita(int id, String paciente, DayOfWeek dia, int hora) {
+        return new Cita(id, LocalTime.of(hora, 0), dia, paciente, "medico@x.com");
+    }
+
+    private static Set<Integer> ids(List<Cita> citas) {
+        Set<Integer> ids = new HashSet<>();
+        for (Cita cita : citas) {
+            ids.add(cita.getIdCita());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.hospital.data.repository;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IndiceTrigramasTest {
+    private IndiceTrigramas<String> indice;
+
+    @Before
+    public void setUp() {
+        indice = new IndiceTrigramas<>();
+    }
+
+    @Test
+    public void normalizar_foldsAccentsAndCase() {
+        assertEquals("jose nunez", IndiceTrigramas.normalizar("José NÚÑEZ"));
+        assertEquals("", IndiceTrigramas.normalizar(null));
+    }
+
+    @Test
+    public void buscar_ignoresAccentsOnBothSides() {
+        indice.agregar("a", "María Pérez");
+        indice.agregar("b", "Mario Perales");
+
+        assertEquals(Collections.singletonList("a"), indice.buscar("maria"));
+        assertEquals(Arrays.asList("a", "b"), indice.buscar("PÉR"));
+    }
+
+    @Test
+    public void buscar_requiresEveryTrigram() {
+        // Ambos tienen "gon" y "ale", solo uno tiene la subcadena completa
+        indice.agregar("a", "gonzalez");
+        indice.agregar("b", "gonzalo alegria");
+        indice.agregar("c", "paredes");
+
+        assertEquals(Collections.singletonList("a"), indice.buscar("gonzalez"));
+        assertEquals(Arrays.asList("a", "b"), indice.buscar("gonza"));
+        assertTrue(indice.buscar("zzz").isEmpty());
+    }
+
+    @Test
+    public void buscar_shortTermScansTexts() {
+        indice.agregar("a", "Ana");
+        indice.agregar("b", "Juan");
+        indice.agregar("c", "Luis");
+
+        assertEquals(Arrays.asList("a", "b"), indice.buscar("an"));
+        assertEquals(Arrays.asList("a", "b"), indice.buscar("Á"));
+        assertEquals(Arrays.asList("a", "b", "c"), indice.buscar(""));
+    }
+
+    @Test
+    public void buscar_ordersByRelevance() {
+        indice.agregar("cualquierParte", "cardiologia");
+        indice.agregar("inicioPalabra", "medicina logica");
+        indice.agregar("inicioTexto", "logistica");
+        indice.agregar("exacta", "log");
+
+        assertEquals(Arrays.asList("exacta", "inicioTexto", "inicioPalabra", "cualquierParte"),
+                indice.buscar("log"));
+    }
+
+    @Test
+    public void agregar_replacesPreviousText() {
+        indice.agregar("a", "Pérez");
+        indice.agregar("a", "Gómez");
+
+        assertTrue(indice.buscar("perez").isEmpty());
+        assertEquals(Collections.singletonList("a"), indice.buscar("gomez"));
+    }
+
+    @Test
+    public void quitar_usesIndexedText() {
+        StringBuilder documento = new StringBuilder("a");
+        IndiceTrigramas<StringBuilder> porInstancia = new IndiceTrigramas<>();
+        porInstancia.agregar(documento, "Pérez");
+        // El objeto cambia después de indexarse; quitar no depende del texto actual
+        documento.append("-cambiado");
+        porInstancia.quitar(documento);
+
+        assertTrue(porInstancia.buscar("perez").isEmpty());
+        assertTrue(porInstancia.buscar("pe").isEmpty());
+    }
+
+    @Test
+    public void limpiar_removesEverything() {
+        indice.agregar("a", "Pérez");
+        indice.limpiar();
+
+        assertTrue(indice.buscar("perez").isEmpty());
+        indice.agregar("b", "Pérez");
+        assertEquals(Collections.singletonList("b"), indice.buscar("perez"));
+    }
+
+    @Test
+    public void quitar_rebuildsAfterManyRemovals() {
+        List<String> documentos = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String documento = "doc" + i;
+            documentos.add(documento);
+            indice.agregar(documento, "paciente " + i + (i % 2 == 0 ? " par" : " impar"));
+        }
+        // Pasa el mínimo de 1024 eliminados con más eliminados que vivos
+        List<String> esperados = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            if (i % 4 == 0) {
+                esperados.add(documentos.get(i));
+            } else {
+                indice.quitar(documentos.get(i));
+            }
+        }
+
+        // Tras reconstruir se conserva el orden de indexación y siguen funcionando altas y bajas
+        assertEquals(esperados, indice.buscar("paciente"));
+        assertEquals(esperados.size(), indice.buscar(" par").size());
+        assertTrue(indice.buscar("impar").isEmpty());
+
+        indice.quitar(documentos.get(0));
+        indice.agregar("nuevo", "paciente nuevo");
+        List<String> resultado = indice.buscar("paciente");
+        assertEquals(esperados.size(), resultado.size());
+        assertEquals("doc4", resultado.get(0));
+        assertEquals("nuevo", resultado.get(resultado.size() - 1));
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.hospital.data.repository;
+
+import com.example.hospital.data.models.Cirugia;
+import com.example.hospital.data.models.Medicacion;
+import com.example.hospital.data.models.Paciente;
+import com.example.hospital.data.models.TipoSeguro;
+import com.example.hospital.data.models.Tratamiento;
+import com.example.hospital.data.models.TratamientoPaciente;
+import com.example.hospital.data.storage.TestFilesContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TratamientoPacienteRepositoryTest {
+    private TestFilesContext context;
+    private PacienteRepository pacientes;
+    private TratamientoRepository tratamientos;
+    private TratamientoPacienteRepository asignaciones;
+
+    @Before
+    public void setUp() throws IOException {
+        context = new TestFilesContext();
+        abrir();
+    }
+
+    @After
+    public void tearDown() {
+        context.delete();
+    }
+
+    @Test
+    public void guardar_keepsAdHocTreatmentOutOfCatalog() {
+        Paciente paciente = registrarPaciente();
+
+        assertNotNull(asignaciones.guardar(new TratamientoPaciente(paciente, new Medicacion("Ibuprofeno", 7, 12.5))));
+
+        assertEquals(0, tratamientos.getTotalTratamientos());
+        cerrarYAbrir();
+        List<TratamientoPaciente> cargadas = asignaciones.cargarTodos();
+        assertEquals(1, cargadas.size());
+        assertEquals("Ibuprofeno", cargadas.get(0).getTratamiento().getNombre());
+        assertEquals(0, tratamientos.getTotalTratamientos());
+    }
+
+    @Test
+    public void guardar_resolvesEquivalentCatalogTreatment() {
+        Paciente paciente = registrarPaciente();
+        Tratamiento cirugia = new Cirugia("Apendicectomía", 2, 1500.0);
+        assertTrue(tratamientos.guardarTratamiento(cirugia));
+
+        TratamientoPaciente tp = asignaciones.guardar(
+                new TratamientoPaciente(paciente, new Cirugia("Apendicectomía", 2, 1500.0)));
+
+        assertSame(cirugia, tp.getTratamiento());
+        assertEquals(1, tratamientos.getTotalTratamientos());
+    }
+
+    @Test
+    public void eliminarPaciente_keepsAssignmentsAfterRestart() {
+        Paciente paciente = registrarPaciente();
+        asignaciones.guardar(new TratamientoPaciente(paciente, new Medicacion("Ibuprofeno", 7, 12.5)));
+        asignaciones.guardar(new TratamientoPaciente(paciente, new Medicacion("Paracetamol", 3, 4.0)));
+        double ingresos = asignaciones.getResumen().ingresos;
+
+        assertTrue(asignaciones.eliminarPaciente(paciente.getId()));
+        assertFalse(pacientes.getPacientePorId(paciente.getId()).isPresent());
+        cerrarYAbrir();
+
+        assertEquals(2, asignaciones.cargarTodos().size());
+        assertEquals(2, asignaciones.cargarPorPaciente("ana@x.com").size());
+        assertEquals("Ana", asignaciones.cargarTodos().get(0).getPaciente().getNombre());
+        assertEquals(1, asignaciones.getResumen().pacientes);
+        assertEquals(ingresos, asignaciones.getResumen().ingresos, 0.0);
+    }
+
+    @Test
+    public void eliminarTratamiento_keepsAssignmentsAfterRestart() {
+        Paciente paciente = registrarPaciente();
+        Tratamiento cirugia = new Cirugia("Apendicectomía", 2, 1500.0);
+        tratamientos.guardarTratamiento(cirugia);
+        asignaciones.guardar(new TratamientoPaciente(paciente, cirugia));
+        double ingresos = asignaciones.getResumen().ingresos;
+
+        assertTrue(asignaciones.eliminarTratamiento(cirugia));
+        assertEquals(0, tratamientos.getTotalTratamientos());
+        cerrarYAbrir();
+
+        List<TratamientoPaciente> cargadas = asignaciones.cargarTodos();
+        assertEquals(1, cargadas.size());
+        assertTrue(cargadas.get(0).getTratamiento() instanceof Cirugia);
+        assertEquals("Apendicectomía", cargadas.get(0).getTratamiento().getNombre());
+        assertEquals(ingresos, asignaciones.getResumen().ingresos, 0.0);
+        // Sigue fuera del catálogo
+        assertEquals(0, tratamientos.getTotalTratamientos());
+    }
+
+    private Paciente registrarPaciente() {
+        assertTrue(pacientes.guardarPaciente("Ana", "Mora", "ana@x.com", "0101010101", TipoSeguro.IESS));
+        return pacientes.getPacientePorCorreo("ana@x.com").get();
+    }
+
+    private void abrir() {
+        tratamientos = new TratamientoRepository(context);
+        pacientes = new PacienteRepository(context, tratamientos);
+        asignaciones = new TratamientoPacienteRepository(context, pacientes, tratamientos);
+    }
+
+    private void cerrarYAbrir() {
+        assertTrue(tratamientos.flush());
+        assertTrue(pacientes.flush());
+        assertTrue(asignaciones.flush());
+        abrir();
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.hospital.data.storage;
+
+import com.example.hospital.data.models.Cirugia;
+import com.example.hospital.data.models.Cita;
+import com.example.hospital.data.models.EstadoCita;
+import com.example.hospital.data.models.Factura;
+import com.example.hospital.data.models.HorarioAtencion;
+import com.example.hospital.data.models.Medicacion;
+import com.example.hospital.data.models.Medico;
+import com.example.hospital.data.models.Paciente;
+import com.example.hospital.data.models.Terapia;
+import com.example.hospital.data.models.TipoSeguro;
+import com.example.hospital.data.models.Tratamiento;
+import com.example.hospital.data.models.TratamientoPaciente;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.Optional;
+
+import static com.example.hospital.data.storage.BinaryIO.writeTime;
+import static com.example.hospital.data.storage.BinaryIO.writeVarInt;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryCodecsTest {
+    private static final BinaryCodecs.CatalogoTratamientos CATALOGO_VACIO = (tipo, id) -> Optional.empty();
+
+    @Test
+    public void cita_roundTrip() throws IOException {
+        Cita cita = new Cita(7, LocalTime.of(10, 30), DayOfWeek.FRIDAY, "ana@x.com", "luis@x.com");
+        cita.setEstadoCita(EstadoCita.ATENDIDA);
+
+        Cita leida = roundTrip(BinaryCodecs.CITA, cita);
+
+        assertEquals(7, leida.getIdCita());
+        assertEquals(LocalTime.of(10, 30), leida.getHora());
+        assertEquals(DayOfWeek.FRIDAY, leida.getDia());
+        assertEquals("ana@x.com", leida.getPaciente());
+        assertEquals("luis@x.com", leida.getMedico());
+        assertEquals(EstadoCita.ATENDIDA, leida.getEstadoCita());
+    }
+
+    @Test
+    public void medico_roundTripKeepsOccupiedTurnos() throws IOException {
+        HorarioAtencion horario = new HorarioAtencion(LocalTime.of(8, 0), LocalTime.of(12, 0),
+                EnumSet.of(DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY), 30);
+        horario.registrarCita(DayOfWeek.MONDAY, LocalTime.of(8, 30));
+        horario.registrarCita(DayOfWeek.WEDNESDAY, LocalTime.of(11, 30));
+        Medico medico = new Medico(3, "Luis", "Pérez", "luis@x.com", "0102030405", horario,
+                "M", "Cardiología", false);
+
+        Medico leido = roundTrip(BinaryCodecs.MEDICO, medico);
+
+        assertEquals(3, leido.getId());
+        assertEquals("Pérez", leido.getApellido());
+        assertEquals("0102030405", leido.getCedulaString());
+        assertEquals("Cardiología", leido.getEspecialidad());
+        assertFalse(leido.isActivo());
+        HorarioAtencion leidoHorario = leido.getHorarioAtencion();
+        assertEquals(LocalTime.of(8, 0), leidoHorario.getHoraInicio());
+        assertEquals(LocalTime.of(12, 0), leidoHorario.getHoraFin());
+        assertEquals(EnumSet.of(DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY), leidoHorario.getDias());
+        assertEquals(30, leidoHorario.getDuracionCita());
+        assertEquals(horario.getTurnosOcupados(DayOfWeek.MONDAY), leidoHorario.getTurnosOcupados(DayOfWeek.MONDAY));
+        assertEquals(horario.getTurnosOcupados(DayOfWeek.WEDNESDAY),
+                leidoHorario.getTurnosOcupados(DayOfWeek.WEDNESDAY));
+    }
+
+    @Test
+    public void medico_roundTripWithoutHorario() throws IOException {
+        Medico medico = new Medico(4, "Eva", "Ruiz", "eva@x.com", "0999999999", null, "F", "Pediatría", true);
+
+        Medico leido = roundTrip(BinaryCodecs.MEDICO, medico);
+
+        assertNull(leido.getHorarioAtencion());
+        assertTrue(leido.isActivo());
+    }
+
+    @Test
+    public void tratamiento_roundTripKeepsSubtype() throws IOException {
+        Tratamiento[] tratamientos = {
+                conId(new Cirugia("Apendicectomía", 2, 1500.0), 1),
+                conId(new Medicacion("Ibuprofeno", 7, 12.5), 2),
+                conId(new Terapia("Fisioterapia", 10, 40.0), 3)
+        };
+        for (Tratamiento tratamiento : tratamientos) {
+            Tratamiento leido = roundTrip(BinaryCodecs.TRATAMIENTO, tratamiento);
+
+            assertSame(tratamiento.getClass(), leido.getClass());
+            assertEquals(tratamiento.getId(), leido.getId());
+            assertEquals(tratamiento.getNombre(), leido.getNombre());
+            assertEquals(tratamiento.getDuracion(), leido.getDuracion());
+            assertEquals(tratamiento.getPrecio(), leido.getPrecio(), 0.0);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void subtipo_rejectsOtherSubtype() throws IOException {
+        byte[] bytes = encode(BinaryCodecs.TRATAMIENTO, new Terapia("Fisioterapia", 10, 40.0));
+        decode(BinaryCodecs.CIRUGIA, bytes, BinaryCodecs.CIRUGIA.getVersion());
+    }
+
+    @Test
+    public void factura_roundTrip() throws IOException {
+        LocalDateTime fecha = LocalDateTime.of(2024, 5, 17, 14, 5, 9);
+        Factura factura = new Factura(11, "ana@x.com", "Ibuprofeno, Fisioterapia", 52.5, fecha);
+
+        Factura leida = roundTrip(BinaryCodecs.FACTURA, factura);
+
+        assertEquals(11, leida.getId());
+        assertEquals("ana@x.com", leida.getPaciente());
+        assertEquals("Ibuprofeno, Fisioterapia", leida.getTratamientos());
+        assertEquals(52.5, leida.getTotal(), 0.0);
+        assertEquals(fecha, leida.getFecha());
+    }
+
+    @Test
+    public void paciente_resolvesCatalogReferences() throws IOException {
+        Tratamiento cirugia = conId(new Cirugia("Apendicectomía", 2, 1500.0), 5);
+        Tratamiento terapia = conId(new Terapia("Fisioterapia", 10, 40.0), 5);
+        BinaryCodecs.CatalogoTratamientos catalogo = (tipo, id) -> {
+            if (tipo == Cirugia.class && id == 5) {
+                return Optional.of(cirugia);
+            } else if (tipo == Terapia.class && id == 5) {
+                return Optional.of(terapia);
+            }
+            return Optional.empty();
+        };
+        Paciente paciente = new Paciente(1, "Ana", "Mora", "ana@x.com", "0101010101", TipoSeguro.IESS);
+        paciente.getHistorialCitas().add("cita-1");
+        paciente.agregarTratamiento(new TratamientoPaciente(1, paciente, cirugia,
+                LocalDateTime.of(2024, 1, 2, 9, 0), "ACTIVO", "ayuno"));
+        paciente.agregarTratamiento(new TratamientoPaciente(2, paciente, terapia,
+                LocalDateTime.of(2024, 1, 3, 9, 0), "COMPLETADO", ""));
+        // Sin id no está en el catálogo: va embebido
+        paciente.agregarTratamiento(new TratamientoPaciente(3, paciente, new Medicacion("Ibuprofeno", 7, 12.5),
+                LocalDateTime.of(2024, 1, 4, 9, 0), "ACTIVO", ""));
+
+        Paciente leido = roundTrip(BinaryCodecs.paciente(catalogo), paciente);
+
+        assertEquals("ana@x.com", leido.getCorreo());
+        assertEquals(TipoSeguro.IESS, leido.getTipoSeguro());
+        assertEquals(1, leido.getHistorialCitas().size());
+        assertEquals(3, leido.getHistorialTratamientos().size());
+        TratamientoPaciente primero = leido.getHistorialTratamientos().get(0);
+        assertSame(cirugia, primero.getTratamiento());
+        assertSame(leido, primero.getPaciente());
+        assertEquals("ayuno", primero.getObservaciones());
+        assertSame(terapia, leido.getHistorialTratamientos().get(1).getTratamiento());
+        Tratamiento embebido = leido.getHistorialTratamientos().get(2).getTratamiento();
+        assertTrue(embebido instanceof Medicacion);
+        assertEquals("Ibuprofeno", embebido.getNombre());
+    }
+
+    @Test
+    public void paciente_dropsReferenceMissingFromCatalog() throws IOException {
+        Paciente paciente = new Paciente(1, "Ana", "Mora", "ana@x.com", "0101010101", TipoSeguro.PRIVADO);
+        paciente.agregarTratamiento(new TratamientoPaciente(1, paciente,
+                conId(new Cirugia("Apendicectomía", 2, 1500.0), 9), LocalDateTime.of(2024, 1, 2, 9, 0),
+                "ACTIVO", ""));
+
+        Paciente leido = roundTrip(BinaryCodecs.paciente(CATALOGO_VACIO), paciente);
+
+        assertTrue(leido.getHistorialTratamientos().isEmpty());
+    }
+
+    @Test
+    public void horario_v1SkipsNullTimes() throws IOException {
+        // Formato v1: por día, la cantidad de horas ocupadas y cada hora (nula si se escribió así)
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeTime(out, LocalTime.of(8, 0));
+        writeTime(out, LocalTime.of(12, 0));
+        writeVarInt(out, 1 << DayOfWeek.TUESDAY.ordinal());
+        writeVarInt(out, 60);
+        writeVarInt(out, 2);
+        writeTime(out, null);
+        writeTime(out, LocalTime.of(10, 0));
+        out.flush();
+
+        HorarioAtencion horario = decode(BinaryCodecs.HORARIO_ATENCION, bytes.toByteArray(), 1);
+
+        BitSet esperado = new BitSet();
+        esperado.set(2);
+        assertEquals(esperado, horario.getTurnosOcupados(DayOfWeek.TUESDAY));
+    }
+
+    private static Tratamiento conId(Tratamiento tratamiento, int id) {
+        tratamiento.setnuevoId(id);
+        return tratamiento;
+    }
+
+    private static <T> T roundTrip(RecordCodec<T> codec, T value) throws IOException {
+        return decode(codec, encode(codec, value), codec.getVersion());
+    }
+
+    private static <T> byte[] encode(RecordCodec<? super T> codec, T value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        codec.write(out, value);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static <T> T decode(RecordCodec<T> codec, byte[] bytes, int version) throws IOException {
+        return codec.read(new DataInputStream(new ByteArrayInputStream(bytes)), version);
+    }
+}
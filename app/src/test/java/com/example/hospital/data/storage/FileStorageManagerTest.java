@@ -0,0 +1,293 @@
+package com.example.hospital.data.storage;
+
+import com.example.hospital.data.models.Cita;
+import com.example.hospital.data.models.EstadoCita;
+import com.example.hospital.data.storage.FileStorageManager.JournalOp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FileStorageManagerTest {
+    private static final String ARCHIVO = "citas.dat";
+    // Umbral de compactación de FileStorageManager
+    private static final int UMBRAL = 256;
+
+    private TestFilesContext context;
+    private FileStorageManager storage;
+
+    @Before
+    public void setUp() throws IOException {
+        context = new TestFilesContext();
+        storage = new FileStorageManager(context);
+    }
+
+    @After
+    public void tearDown() {
+        context.delete();
+    }
+
+    @Test
+    public void loadJournaled_appliesJournalOverSnapshot() throws Exception {
+        List<Cita> citas = new ArrayList<>(Arrays.asList(cita(1, "a@x.com"), cita(2, "b@x.com")));
+        storage.saveList(ARCHIVO, citas, BinaryCodecs.CITA);
+
+        Cita modificada = cita(2, "c@x.com");
+        modificada.setEstadoCita(EstadoCita.ATENDIDA);
+        storage.appendRecord(ARCHIVO, JournalOp.UPSERT, 2, modificada, citas, BinaryCodecs.CITA);
+        storage.appendRecord(ARCHIVO, JournalOp.DELETE, 1, citas.get(0), citas, BinaryCodecs.CITA);
+        storage.appendRecord(ARCHIVO, JournalOp.UPSERT, 3, cita(3, "d@x.com"), citas, BinaryCodecs.CITA);
+
+        List<Cita> cargadas = recargar();
+
+        // El reemplazo conserva la posición del registro y el alta va al final
+        assertEquals(Arrays.asList(resumen(modificada), resumen(cita(3, "d@x.com"))), resumenes(cargadas));
+    }
+
+    @Test
+    public void loadJournaled_truncatesTornTail() throws Exception {
+        List<Cita> citas = new ArrayList<>();
+        storage.appendRecord(ARCHIVO, JournalOp.UPSERT, 1, cita(1, "a@x.com"), citas, BinaryCodecs.CITA);
+        storage.appendRecord(ARCHIVO, JournalOp.UPSERT, 2, cita(2, "b@x.com"), citas, BinaryCodecs.CITA);
+        File journal = context.file(ARCHIVO + ".log");
+        long largoValido = journal.length();
+
+        // Registro cortado a mitad del payload, como si el proceso muriera escribiendo
+        agregarBytes(journal, new byte[]{0x10, 0, 0, 0, 3, 0, 0, 0, 40, 1, 2});
+
+        assertEquals(2, recargar().size());
+        assertEquals(largoValido, journal.length());
+
+        // Lo que se agrega después no queda pegado a los bytes descartados
+        storage.appendRecord(ARCHIVO, JournalOp.UPSERT, 3, cita(3, "c@x.com"), citas, BinaryCodecs.CITA);
+        assertEquals(3, recargar().size());
+    }
+
+    @Test
+    public void loadJournaled_rejectsRecordLongerThanFile() throws Exception {
+        List<Cita> citas = new ArrayList<>();
+        storage.appendRecord(ARCHIVO, JournalOp.UPSERT, 1, cita(1, "a@x.com"), citas, BinaryCodecs.CITA);
+        File journal = context.file(ARCHIVO + ".log");
+        long largoValido = journal.length();
+
+        // Un largo dañado no debe llegar a reservar un arreglo de ese tamaño
+        agregarBytes(journal, new byte[]{0x10, 0, 0, 0, 2, 0x7F, (byte) 0xFF, (byte) 0xFF, (byte) 0xF0, 1});
+
+        assertEquals(1, recargar().size());
+        assertEquals(largoValido, journal.length());
+    }
+
+    @Test
+    public void loadJournaled_marksUnreadableOnCorruptRecordInTheMiddle() throws Exception {
+        List<Cita> citas = new ArrayList<>(Collections.singletonList(cita(1, "a@x.com")));
+        storage.saveList(ARCHIVO, citas, BinaryCodecs.CITA);
+        byte[] snapshot = Files.readAllBytes(context.file(ARCHIVO).toPath());
+        storage.appendRecord(ARCHIVO, JournalOp.UPSERT, 2, cita(2, "b@x.com"), citas, BinaryCodecs.CITA);
+        // Registro completo cuyo payload binario termina después de la versión
+        agregarBytes(context.file(ARCHIVO + ".log"), new byte[]{0x10, 0, 0, 0, 3, 0, 0, 0, 1, 3});
+        storage.appendRecord(ARCHIVO, JournalOp.UPSERT, 4, cita(4, "d@x.com"), citas, BinaryCodecs.CITA);
+
+        FileStorageManager recuperado = new FileStorageManager(context);
+        try {
+            recuperado.loadJournaled(ARCHIVO, Cita::getIdCita, BinaryCodecs.CITA);
+            fail("Se esperaba IOException");
+        } catch (IOException esperada) {
+            // No se confunde con un registro cortado al final
+        }
+        assertTrue(recuperado.isUnreadable(ARCHIVO));
+
+        // Con el cache vacío, llegar al umbral no reescribe el snapshot
+        List<Cita> nuevas = new ArrayList<>();
+        for (int id = 10; id < 10 + UMBRAL; id++) {
+            Cita cita = cita(id, "p" + id + "@x.com");
+            nuevas.add(cita);
+            recuperado.appendRecord(ARCHIVO, JournalOp.UPSERT, id, cita, nuevas, BinaryCodecs.CITA);
+        }
+        assertArrayEquals(snapshot, Files.readAllBytes(context.file(ARCHIVO).toPath()));
+        assertTrue(context.file(ARCHIVO + ".log").exists());
+    }
+
+    @Test
+    public void appendEncoded_rollsBackPartialBatch() throws Exception {
+        boolean[] fallar = {false};
+        TestFilesContext fallaAMitad = new TestFilesContext() {
+            @Override
+            public FileOutputStream openFileOutput(String name, int mode) throws FileNotFoundException {
+                return new FileOutputStream(file(name), (mode & MODE_APPEND) != 0) {
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        if (!fallar[0]) {
+                            super.write(b, off, len);
+                            return;
+                        }
+                        super.write(b, off, len / 2);
+                        throw new IOException("Disco lleno");
+                    }
+                };
+            }
+        };
+        try {
+            FileStorageManager conFallas = new FileStorageManager(fallaAMitad);
+            conFallas.appendRecord(ARCHIVO, JournalOp.UPSERT, 1, cita(1, "a@x.com"), Collections.<Cita>emptyList(),
+                    BinaryCodecs.CITA);
+            File journal = fallaAMitad.file(ARCHIVO + ".log");
+            long largoValido = journal.length();
+            fallar[0] = true;
+            List<byte[]> lote = Arrays.asList(
+                    conFallas.encodeJournalRecord(JournalOp.UPSERT, 2, cita(2, "b@x.com"), BinaryCodecs.CITA),
+                    conFallas.encodeJournalRecord(JournalOp.UPSERT, 3, cita(3, "c@x.com"), BinaryCodecs.CITA));
+            try {
+                conFallas.appendEncoded(ARCHIVO, lote);
+                fail("Se esperaba IOException");
+            } catch (IOException esperada) {
+                // El lote vuelve a la cola completo
+            }
+            assertEquals(largoValido, journal.length());
+
+            // El reintento queda pegado al último registro completo y se lee entero
+            fallar[0] = false;
+            conFallas.appendEncoded(ARCHIVO, lote);
+            assertEquals(3, new FileStorageManager(fallaAMitad)
+                    .loadJournaled(ARCHIVO, Cita::getIdCita, BinaryCodecs.CITA).size());
+        } finally {
+            fallaAMitad.delete();
+        }
+    }
+
+    @Test
+    public void appendRecord_compactsAtThreshold() throws Exception {
+        List<Cita> citas = new ArrayList<>();
+        for (int id = 1; id <= UMBRAL; id++) {
+            Cita cita = cita(id, "p" + id + "@x.com");
+            citas.add(cita);
+            storage.appendRecord(ARCHIVO, JournalOp.UPSERT, id, cita, citas, BinaryCodecs.CITA);
+        }
+
+        assertFalse(context.file(ARCHIVO + ".log").exists());
+        assertTrue(context.file(ARCHIVO).exists());
+        assertEquals(resumenes(citas), resumenes(recargar()));
+    }
+
+    @Test
+    public void loadJournaled_migratesJavaSerialization() throws Exception {
+        List<Cita> citas = new ArrayList<>(Arrays.asList(cita(1, "a@x.com"), cita(2, "b@x.com")));
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(context.file(ARCHIVO)))) {
+            out.writeObject(new ArrayList<>(citas));
+        }
+        // Registro del journal también en el formato anterior
+        Cita nueva = cita(3, "c@x.com");
+        storage.appendEncoded(ARCHIVO, Collections.singletonList(
+                storage.encodeJournalRecord(JournalOp.UPSERT, 3, nueva, null)));
+        citas.add(nueva);
+
+        assertEquals(resumenes(citas), resumenes(recargar()));
+
+        // La carga reescribe todo en binario con CRC y vacía el journal
+        assertFalse(context.file(ARCHIVO + ".log").exists());
+        try (DataInputStream in = new DataInputStream(new FileInputStream(context.file(ARCHIVO)))) {
+            assertEquals(0x48535043, in.readInt());
+        }
+        assertEquals(resumenes(citas), resumenes(recargar()));
+    }
+
+    @Test
+    public void loadJournaled_fallsBackToPreviousGenerationOnChecksumFailure() throws Exception {
+        List<Cita> anteriores = new ArrayList<>(Collections.singletonList(cita(1, "a@x.com")));
+        storage.saveList(ARCHIVO, anteriores, BinaryCodecs.CITA);
+        storage.saveList(ARCHIVO, Arrays.asList(cita(1, "a@x.com"), cita(2, "b@x.com")), BinaryCodecs.CITA);
+        alterarUltimoByte(context.file(ARCHIVO));
+
+        FileStorageManager recuperado = new FileStorageManager(context);
+        List<Cita> cargadas = recuperado.loadJournaled(ARCHIVO, Cita::getIdCita, BinaryCodecs.CITA);
+
+        assertEquals(resumenes(anteriores), resumenes(cargadas));
+        assertFalse(recuperado.isUnreadable(ARCHIVO));
+        // La generación recuperada vuelve a ser el snapshot actual
+        assertEquals(resumenes(anteriores), resumenes(recargar()));
+    }
+
+    @Test
+    public void loadJournaled_refusesToRewriteWhenNoGenerationIsReadable() throws Exception {
+        storage.saveList(ARCHIVO, Collections.singletonList(cita(1, "a@x.com")), BinaryCodecs.CITA);
+        storage.saveList(ARCHIVO, Arrays.asList(cita(1, "a@x.com"), cita(2, "b@x.com")), BinaryCodecs.CITA);
+        File anterior = context.file(ARCHIVO + ".bak");
+        alterarUltimoByte(context.file(ARCHIVO));
+        alterarUltimoByte(anterior);
+        byte[] contenidoAnterior = Files.readAllBytes(anterior.toPath());
+
+        FileStorageManager recuperado = new FileStorageManager(context);
+        try {
+            recuperado.loadJournaled(ARCHIVO, Cita::getIdCita, BinaryCodecs.CITA);
+            fail("Se esperaba IOException");
+        } catch (IOException esperada) {
+            // Ninguna generación pasa el checksum
+        }
+        assertTrue(recuperado.isUnreadable(ARCHIVO));
+
+        try {
+            recuperado.compact(ARCHIVO, Collections.<Cita>emptyList(), BinaryCodecs.CITA);
+            fail("Se esperaba IOException");
+        } catch (IOException esperada) {
+            // Reescribir convertiría el archivo dañado en la única generación anterior
+        }
+        assertArrayEquals(contenidoAnterior, Files.readAllBytes(anterior.toPath()));
+    }
+
+    private List<Cita> recargar() throws Exception {
+        return new FileStorageManager(context).loadJournaled(ARCHIVO, Cita::getIdCita, BinaryCodecs.CITA);
+    }
+
+    private static void agregarBytes(File file, byte[] bytes) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(bytes);
+        }
+    }
+
+    private static void alterarUltimoByte(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length() - 1);
+            int ultimo = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(ultimo ^ 0xFF);
+        }
+    }
+
+    private static Cita cita(int id, String paciente) {
+        return new Cita(id, LocalTime.of(9, 0), DayOfWeek.MONDAY, paciente, "medico@x.com");
+    }
+
+    private static String resumen(Cita cita) {
+        return cita.getIdCita() + "|" + cita.getHora() + "|" + cita.getDia() + "|" + cita.getPaciente()
+                + "|" + cita.getMedico() + "|" + cita.getEstadoCita();
+    }
+
+    private static List<String> resumenes(List<Cita> citas) {
+        List<String> resultado = new ArrayList<>();
+        for (Cita cita : citas) {
+            resultado.add(resumen(cita));
+        }
+        return resultado;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.hospital.data.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.IntSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SecuenciaIdsTest {
+    // Con la secuencia ya en disco no se debe consultar el mayor id de los datos
+    private static final IntSupplier SIN_CONSULTAR = () -> {
+        throw new AssertionError("Se consultó el mayor id existente");
+    };
+
+    private TestFilesContext context;
+
+    @Before
+    public void setUp() throws IOException {
+        context = new TestFilesContext();
+    }
+
+    @After
+    public void tearDown() {
+        context.delete();
+    }
+
+    @Test
+    public void siguiente_startsAfterExistingIds() throws IOException {
+        SecuenciaIds secuencia = new SecuenciaIds(context, "citas", () -> 41);
+
+        assertEquals(42, secuencia.siguiente());
+        assertEquals(43, secuencia.siguiente());
+        assertTrue(context.file("citas.seq").exists());
+    }
+
+    @Test
+    public void siguiente_neverReissuesAfterRestart() throws IOException {
+        Set<Integer> entregados = new HashSet<>();
+        int mayor = 0;
+        SecuenciaIds secuencia = new SecuenciaIds(context, "citas", () -> 0);
+        // Atraviesa varios bloques y reinicia a mitad de uno
+        for (int reinicio = 0; reinicio < 3; reinicio++) {
+            for (int i = 0; i < 100; i++) {
+                int id = secuencia.siguiente();
+                assertTrue(id > mayor);
+                assertTrue(entregados.add(id));
+                mayor = id;
+            }
+            // Aunque ya no haya datos guardados, la secuencia sigue desde su tope
+            secuencia = new SecuenciaIds(context, "citas", SIN_CONSULTAR);
+        }
+        assertTrue(secuencia.siguiente() > mayor);
+    }
+
+    @Test
+    public void siguiente_keepsSequencesApart() throws IOException {
+        SecuenciaIds citas = new SecuenciaIds(context, "citas", () -> 10);
+        SecuenciaIds medicos = new SecuenciaIds(context, "medicos", () -> 0);
+
+        assertEquals(11, citas.siguiente());
+        assertEquals(1, medicos.siguiente());
+    }
+
+    @Test
+    public void constructor_fallsBackToExistingIdsOnCorruptFile() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(context.file("citas.seq"))) {
+            out.write(new byte[]{1, 2, 3});
+        }
+
+        SecuenciaIds secuencia = new SecuenciaIds(context, "citas", () -> 7);
+
+        assertEquals(8, secuencia.siguiente());
+    }
+}
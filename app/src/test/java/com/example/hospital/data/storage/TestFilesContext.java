@@ -0,0 +1,49 @@
+package com.example.hospital.data.storage;
+
+import android.content.ContextWrapper;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Context para pruebas locales: los archivos de la app van a un directorio temporal propio
+ * de cada prueba. Solo implementa lo que usan FileStorageManager y SecuenciaIds.
+ */
+public class TestFilesContext extends ContextWrapper {
+    private final File filesDir;
+
+    public TestFilesContext() throws IOException {
+        super(null);
+        this.filesDir = Files.createTempDirectory("hospital-test").toFile();
+    }
+
+    @Override
+    public File getFilesDir() {
+        return filesDir;
+    }
+
+    @Override
+    public FileOutputStream openFileOutput(String name, int mode) throws FileNotFoundException {
+        return new FileOutputStream(new File(filesDir, name), (mode & MODE_APPEND) != 0);
+    }
+
+    public File file(String name) {
+        return new File(filesDir, name);
+    }
+
+    /**
+     * Borra el directorio temporal con todo su contenido
+     */
+    public void delete() {
+        File[] files = filesDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        filesDir.delete();
+    }
+}
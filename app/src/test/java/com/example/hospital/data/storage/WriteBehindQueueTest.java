@@ -0,0 +1,110 @@
+package com.example.hospital.data.storage;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WriteBehindQueueTest {
+    private final Object lock = new Object();
+    private final List<List<String>> escritos = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void enqueue_coalescesById() {
+        WriteBehindQueue<String> cola = new WriteBehindQueue<>(lock, escritos::add);
+        cola.enqueue(1, "a");
+        cola.enqueue(2, "b");
+        cola.enqueue(1, "c");
+
+        assertTrue(cola.flush());
+
+        assertEquals(Collections.singletonList(Arrays.asList("c", "b")), escritos);
+        // Sin pendientes no se escribe nada más
+        assertTrue(cola.flush());
+        assertEquals(1, escritos.size());
+    }
+
+    @Test
+    public void enqueue_writesBatchWithoutFlush() throws InterruptedException {
+        CountDownLatch escrito = new CountDownLatch(1);
+        WriteBehindQueue<String> cola = new WriteBehindQueue<>(lock, lote -> {
+            escritos.add(lote);
+            escrito.countDown();
+        });
+        cola.enqueue(1, "a");
+        cola.enqueue(2, "b");
+
+        assertTrue(escrito.await(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList(Arrays.asList("a", "b")), escritos);
+    }
+
+    @Test
+    public void flush_keepsFailedBatchWithoutOverwritingNewerOperations() {
+        AtomicBoolean fallar = new AtomicBoolean(true);
+        AtomicReference<WriteBehindQueue<String>> cola = new AtomicReference<>();
+        cola.set(new WriteBehindQueue<>(lock, lote -> {
+            if (fallar.getAndSet(false)) {
+                // Llega una operación más nueva del mismo registro mientras se escribía
+                cola.get().enqueue(1, "nuevo");
+                throw new IOException("disco lleno");
+            }
+            escritos.add(lote);
+        }));
+        cola.get().enqueue(1, "viejo");
+        cola.get().enqueue(2, "b");
+
+        assertFalse(cola.get().flush());
+        assertTrue(escritos.isEmpty());
+
+        assertTrue(cola.get().flush());
+        assertEquals(Collections.singletonList(Arrays.asList("nuevo", "b")), escritos);
+    }
+
+    @Test
+    public void failedBatch_isRetriedAutomatically() throws InterruptedException {
+        AtomicBoolean fallar = new AtomicBoolean(true);
+        CountDownLatch escrito = new CountDownLatch(1);
+        WriteBehindQueue<String> cola = new WriteBehindQueue<>(lock, lote -> {
+            if (fallar.getAndSet(false)) {
+                throw new IOException("disco lleno");
+            }
+            escritos.add(lote);
+            escrito.countDown();
+        });
+        cola.enqueue(1, "a");
+
+        boolean[] resultado = new boolean[1];
+        CountDownLatch avisado = new CountDownLatch(1);
+        cola.flush(ok -> {
+            resultado[0] = ok;
+            avisado.countDown();
+        });
+        assertTrue(avisado.await(5, TimeUnit.SECONDS));
+        assertFalse(resultado[0]);
+
+        // El reintento programado escribe el lote sin otro flush
+        assertTrue(escrito.await(10, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList(Collections.singletonList("a")), escritos);
+    }
+
+    @Test
+    public void discardPending_dropsQueuedOperations() {
+        WriteBehindQueue<String> cola = new WriteBehindQueue<>(lock, escritos::add);
+        cola.enqueue(1, "a");
+        cola.discardPending();
+
+        assertTrue(cola.flush());
+        assertTrue(escritos.isEmpty());
+    }
+}